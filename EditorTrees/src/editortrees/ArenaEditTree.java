@@ -0,0 +1,846 @@
+package editortrees;
+
+// A height-balanced binary tree with rank, like EditTree, whose nodes are
+// indices into the parallel arrays of a NodeArena instead of Node objects.
+// Traversals read primitive arrays rather than chasing object references, and
+// a document of N characters costs the garbage collector a few arrays instead
+// of N small objects.
+
+public class ArenaEditTree {
+	private static final int NIL = NodeArena.NIL;
+
+	private final NodeArena arena;
+	// The root of this tree. While split() and concatenate() are joining
+	// pieces together it holds the root of the piece being rebalanced, since
+	// rotations at the top of a piece replace it.
+	private int root;
+	private int size;
+	private int totalRotationCount;
+
+	// split() builds two trees at once, so each level of the recursion hands
+	// its two halves (and their heights) back through these fields.
+	private int splitLeft;
+	private int splitLeftHeight;
+	private int splitRight;
+	private int splitRightHeight;
+	// the height of the tree returned by the last call to join().
+	private int joinedHeight;
+
+	/**
+	 * Construct an empty tree with its own arena.
+	 */
+	public ArenaEditTree() {
+		this(new NodeArena());
+	}
+
+	/**
+	 * Construct an empty tree whose nodes are allocated from arena. Trees that
+	 * share an arena can be concatenated without copying.
+	 *
+	 * @param arena
+	 */
+	public ArenaEditTree(NodeArena arena) {
+		this.arena = arena;
+		this.root = NIL;
+		this.size = 0;
+		this.totalRotationCount = 0;
+	}
+
+	/**
+	 * Construct a single-node tree whose element is c
+	 *
+	 * @param c
+	 */
+	public ArenaEditTree(char c) {
+		this();
+		this.add(c);
+	}
+
+	/**
+	 * Create a tree whose toString is s, in O(N) time, with a perfectly
+	 * balanced shape.
+	 *
+	 * @param s
+	 */
+	public ArenaEditTree(String s) {
+		this(new NodeArena(s.length()));
+		this.root = this.build(s, 0, s.length(), NIL);
+		this.size = s.length();
+	}
+
+	/**
+	 * Make this tree be a copy of e, in a new arena, with the same shape and
+	 * contents.
+	 *
+	 * @param e
+	 */
+	public ArenaEditTree(ArenaEditTree e) {
+		this(new NodeArena(e.size));
+		this.root = this.copy(e.arena, e.root, NIL);
+		this.size = e.size;
+		this.totalRotationCount = e.totalRotationCount;
+	}
+
+	/**
+	 *
+	 * builds a balanced subtree holding the characters of s in [from, to).
+	 *
+	 * @param s
+	 * @param from
+	 * @param to
+	 * @param parent
+	 * @return the index of the subtree's root.
+	 */
+	private int build(String s, int from, int to, int parent) {
+		if (from >= to)
+			return NIL;
+		int leftSize = (to - from) / 2;
+		int rightSize = to - from - 1 - leftSize;
+		int n = this.arena.allocate(s.charAt(from + leftSize));
+		this.arena.parent[n] = parent;
+		this.arena.rank[n] = leftSize;
+		// a subtree built this way with k nodes has height floor(log2(k)).
+		this.arena.balance[n] = (byte) (floorLog2(rightSize) - floorLog2(leftSize));
+		int l = this.build(s, from, from + leftSize, n);
+		int r = this.build(s, from + leftSize + 1, to, n);
+		this.arena.left[n] = l;
+		this.arena.right[n] = r;
+		return n;
+	}
+
+	private static int floorLog2(int k) {
+		return 31 - Integer.numberOfLeadingZeros(k);
+	}
+
+	/**
+	 *
+	 * copies the subtree rooted at n in the arena from into this tree's arena.
+	 *
+	 * @param from
+	 * @param n
+	 * @param parent
+	 * @return the index of the copy of n.
+	 */
+	private int copy(NodeArena from, int n, int parent) {
+		if (n == NIL)
+			return NIL;
+		int newNode = this.arena.allocate(from.element[n]);
+		this.arena.parent[newNode] = parent;
+		this.arena.rank[newNode] = from.rank[n];
+		this.arena.balance[newNode] = from.balance[n];
+		int l = this.copy(from, from.left[n], newNode);
+		int r = this.copy(from, from.right[n], newNode);
+		this.arena.left[newNode] = l;
+		this.arena.right[newNode] = r;
+		return newNode;
+	}
+
+	/**
+	 * @return the arena this tree's nodes live in.
+	 */
+	public NodeArena getArena() {
+		return this.arena;
+	}
+
+	/**
+	 *
+	 * @return the height of this tree
+	 */
+	public int height() {
+		NodeArena a = this.arena;
+		int height = -1;
+		int current = this.root;
+		while (current != NIL) {
+			height++;
+			// follow the taller side, as told by the balance code.
+			current = a.balance[current] < 0 ? a.left[current] : a.right[current];
+		}
+		return height;
+	}
+
+	/**
+	 * The height computed from the shape alone, without trusting the balance
+	 * codes. O(N); only meant for checking the tree.
+	 *
+	 * @return the height of this tree
+	 */
+	int slowHeight() {
+		return this.slowHeight(this.root);
+	}
+
+	private int slowHeight(int n) {
+		if (n == NIL)
+			return -1;
+		return Math.max(this.slowHeight(this.arena.left[n]), this.slowHeight(this.arena.right[n])) + 1;
+	}
+
+	/**
+	 *
+	 * @return the number of nodes in this tree
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 *
+	 * returns the total number of rotations done in this tree since it was
+	 * created. A double rotation counts as two.
+	 *
+	 * @return number of rotations since tree was created.
+	 */
+	public int totalRotationCount() {
+		return this.totalRotationCount;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		NodeArena a = this.arena;
+		int current = this.root;
+		while (pos != a.rank[current]) {
+			if (pos < a.rank[current]) {
+				current = a.left[current];
+			} else {
+				pos -= a.rank[current] + 1;
+				current = a.right[current];
+			}
+		}
+		return a.element[current];
+	}
+
+	/**
+	 * This method operates in O(length + log N), where N is the size of this
+	 * tree.
+	 *
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || pos + length > this.size)
+			throw new IndexOutOfBoundsException();
+		char[] result = new char[length];
+		this.copyRange(this.root, pos, pos + length, result, -pos);
+		return new String(result);
+	}
+
+	/**
+	 *
+	 * copies the characters of the subtree rooted at n whose positions fall in
+	 * [from, to) into dst, where position p goes to dst[p + shift].
+	 *
+	 * @param n
+	 * @param from
+	 * @param to
+	 * @param dst
+	 * @param shift
+	 */
+	private void copyRange(int n, int from, int to, char[] dst, int shift) {
+		NodeArena a = this.arena;
+		while (n != NIL && from < to) {
+			int r = a.rank[n];
+			if (from < r)
+				this.copyRange(a.left[n], from, Math.min(to, r), dst, shift);
+			if (from <= r && r < to)
+				dst[r + shift] = a.element[n];
+			from = Math.max(from - r - 1, 0);
+			to -= r + 1;
+			shift += r + 1;
+			n = a.right[n];
+		}
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		this.add(c, this.size);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		NodeArena a = this.arena;
+		int newNode = a.allocate(c);
+		this.size++;
+		if (this.root == NIL) {
+			this.root = newNode;
+			return;
+		}
+		int current = this.root;
+		while (true) {
+			if (pos <= a.rank[current]) {
+				a.rank[current]++;
+				if (a.left[current] == NIL) {
+					a.left[current] = newNode;
+					break;
+				}
+				current = a.left[current];
+			} else {
+				pos -= a.rank[current] + 1;
+				if (a.right[current] == NIL) {
+					a.right[current] = newNode;
+					break;
+				}
+				current = a.right[current];
+			}
+		}
+		a.parent[newNode] = current;
+		this.retraceGrowth(newNode);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		// As in EditTree, a node with two children is replaced by its
+		// successor.
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		NodeArena a = this.arena;
+		int current = this.root;
+		while (pos != a.rank[current]) {
+			if (pos < a.rank[current]) {
+				a.rank[current]--;
+				current = a.left[current];
+			} else {
+				pos -= a.rank[current] + 1;
+				current = a.right[current];
+			}
+		}
+		char deleted = a.element[current];
+		if (a.left[current] != NIL && a.right[current] != NIL) {
+			int successor = a.right[current];
+			while (a.left[successor] != NIL) {
+				a.rank[successor]--;
+				successor = a.left[successor];
+			}
+			a.element[current] = a.element[successor];
+			current = successor;
+		}
+		this.unlink(current);
+		a.release(current);
+		this.size--;
+		return deleted;
+	}
+
+	/**
+	 * Runs in time proportional to the log of the size of this tree, by
+	 * splitting it twice and concatenating the outer parts.
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 *
+	 * @param length
+	 *            length of string to delete
+	 * @return an ArenaEditTree, sharing this tree's arena, containing the
+	 *         deleted string. Its slots are only reused once it is released
+	 *         or concatenated back.
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public ArenaEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size)
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		ArenaEditTree t2 = this.split(start);
+		ArenaEditTree t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Append (in time proportional to the log of the size of the larger tree)
+	 * the contents of the other tree to this one. Other should be made empty
+	 * after this operation. If other lives in a different arena its nodes
+	 * have to be copied over first, which takes time proportional to its
+	 * size.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(ArenaEditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		if (other.size == 0)
+			return;
+		int otherRoot = other.root;
+		int otherHeight = other.height();
+		if (other.arena != this.arena) {
+			otherRoot = this.copy(other.arena, other.root, NIL);
+			other.release(other.root);
+		}
+		int otherSize = other.size;
+		other.root = NIL;
+		other.size = 0;
+		if (this.size == 0) {
+			this.root = otherRoot;
+			this.size = otherSize;
+			return;
+		}
+		// the last node of this tree becomes the node that joins the two.
+		NodeArena a = this.arena;
+		int last = this.root;
+		while (a.right[last] != NIL)
+			last = a.right[last];
+		this.unlink(last);
+		this.size--;
+		this.root = this.join(this.root, this.height(), this.size, last, otherRoot, otherHeight, otherSize);
+		this.size += otherSize + 1;
+	}
+
+	/**
+	 * Returns every node of this tree to its arena and leaves this tree empty.
+	 * The trees returned by split() and delete(int, int) share the arena of
+	 * the tree they came from, and a slot cannot be reused while a tree might
+	 * still hold it, so a tree that is cut off and dropped keeps its slots
+	 * for as long as the arena lives, unless it is released first.
+	 */
+	public void release() {
+		this.release(this.root);
+		this.root = NIL;
+		this.size = 0;
+	}
+
+	/**
+	 *
+	 * returns every node of the subtree rooted at n to this tree's arena.
+	 *
+	 * @param n
+	 */
+	private void release(int n) {
+		if (n == NIL)
+			return;
+		int l = this.arena.left[n];
+		int r = this.arena.right[n];
+		this.arena.release(n);
+		this.release(l);
+		this.release(r);
+	}
+
+	/**
+	 * This operation must be done in time proportional to the height of this
+	 * tree.
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree, sharing this tree's arena, containing all of the
+	 *         elements of this tree whose positions are >= position. Their
+	 *         nodes are removed from this tree, and only reused once the new
+	 *         tree is released or concatenated back.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public ArenaEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size)
+			throw new IndexOutOfBoundsException();
+		this.split(this.root, this.height(), this.size, pos);
+		ArenaEditTree rightTree = new ArenaEditTree(this.arena);
+		rightTree.root = this.splitRight;
+		rightTree.size = this.size - pos;
+		this.root = this.splitLeft;
+		this.size = pos;
+		return rightTree;
+	}
+
+	/**
+	 *
+	 * splits the subtree rooted at n, of the given height and size, into the
+	 * nodes before pos (splitLeft) and the rest (splitRight).
+	 *
+	 * @param n
+	 * @param height
+	 * @param size
+	 * @param pos
+	 */
+	private void split(int n, int height, int size, int pos) {
+		NodeArena a = this.arena;
+		int l = a.left[n];
+		int r = a.right[n];
+		int leftHeight = a.balance[n] > 0 ? height - 2 : height - 1;
+		int rightHeight = a.balance[n] < 0 ? height - 2 : height - 1;
+		int leftSize = a.rank[n];
+		int rightSize = size - leftSize - 1;
+		if (pos <= leftSize) {
+			int lowLeft = l;
+			int lowLeftHeight = leftHeight;
+			int lowRight = NIL;
+			int lowRightHeight = -1;
+			if (pos < leftSize) {
+				this.split(l, leftHeight, leftSize, pos);
+				lowLeft = this.splitLeft;
+				lowLeftHeight = this.splitLeftHeight;
+				lowRight = this.splitRight;
+				lowRightHeight = this.splitRightHeight;
+			}
+			this.splitRight = this.join(lowRight, lowRightHeight, leftSize - pos, n, r, rightHeight, rightSize);
+			this.splitRightHeight = this.joinedHeight;
+			this.splitLeft = lowLeft;
+			this.splitLeftHeight = lowLeftHeight;
+			if (lowLeft != NIL)
+				a.parent[lowLeft] = NIL;
+		} else {
+			this.split(r, rightHeight, rightSize, pos - leftSize - 1);
+			int lowRight = this.splitRight;
+			int lowRightHeight = this.splitRightHeight;
+			this.splitLeft = this.join(l, leftHeight, leftSize, n, this.splitLeft, this.splitLeftHeight,
+					pos - leftSize - 1);
+			this.splitLeftHeight = this.joinedHeight;
+			this.splitRight = lowRight;
+			this.splitRightHeight = lowRightHeight;
+			if (lowRight != NIL)
+				a.parent[lowRight] = NIL;
+		}
+	}
+
+	/**
+	 *
+	 * joins the tree l, the single node k and the tree r (in that order) into
+	 * one tree, in time proportional to the difference in their heights. k is
+	 * hung off the side of the taller tree where the heights match, and the
+	 * tree is then rebalanced as if k had just been inserted there.
+	 *
+	 * @return the root of the joined tree; its height is left in joinedHeight.
+	 */
+	private int join(int l, int leftHeight, int leftSize, int k, int r, int rightHeight, int rightSize) {
+		NodeArena a = this.arena;
+		if (l != NIL)
+			a.parent[l] = NIL;
+		if (r != NIL)
+			a.parent[r] = NIL;
+		if (leftHeight > rightHeight + 1) {
+			// walk down the right spine of l to a subtree no taller than
+			// rightHeight + 1.
+			int p = NIL;
+			int c = l;
+			int h = leftHeight;
+			int cSize = leftSize;
+			while (h > rightHeight + 1) {
+				h -= a.balance[c] < 0 ? 2 : 1;
+				cSize -= a.rank[c] + 1;
+				p = c;
+				c = a.right[c];
+			}
+			this.hang(k, c, cSize, r, (byte) (rightHeight - h));
+			a.right[p] = k;
+			a.parent[k] = p;
+			this.root = l;
+			this.joinedHeight = this.retraceGrowth(k) ? leftHeight + 1 : leftHeight;
+			return this.root;
+		}
+		if (rightHeight > leftHeight + 1) {
+			// walk down the left spine of r, whose left subtrees all gain l
+			// and k.
+			int p = NIL;
+			int c = r;
+			int h = rightHeight;
+			while (h > leftHeight + 1) {
+				h -= a.balance[c] > 0 ? 2 : 1;
+				a.rank[c] += leftSize + 1;
+				p = c;
+				c = a.left[c];
+			}
+			this.hang(k, l, leftSize, c, (byte) (h - leftHeight));
+			a.left[p] = k;
+			a.parent[k] = p;
+			this.root = r;
+			this.joinedHeight = this.retraceGrowth(k) ? rightHeight + 1 : rightHeight;
+			return this.root;
+		}
+		this.hang(k, l, leftSize, r, (byte) (rightHeight - leftHeight));
+		a.parent[k] = NIL;
+		this.joinedHeight = Math.max(leftHeight, rightHeight) + 1;
+		return k;
+	}
+
+	/**
+	 *
+	 * makes l and r the children of k.
+	 *
+	 * @param k
+	 * @param l
+	 * @param leftSize
+	 * @param r
+	 * @param balance
+	 */
+	private void hang(int k, int l, int leftSize, int r, byte balance) {
+		NodeArena a = this.arena;
+		a.left[k] = l;
+		a.right[k] = r;
+		if (l != NIL)
+			a.parent[l] = k;
+		if (r != NIL)
+			a.parent[r] = k;
+		a.rank[k] = leftSize;
+		a.balance[k] = balance;
+	}
+
+	/**
+	 *
+	 * walks up from child, whose subtree just got one taller, updating balance
+	 * codes and rotating at the first node that becomes unbalanced.
+	 *
+	 * @param child
+	 * @return true if the growth reached the top of the tree.
+	 */
+	private boolean retraceGrowth(int child) {
+		NodeArena a = this.arena;
+		int p = a.parent[child];
+		while (p != NIL) {
+			a.balance[p] += (a.left[p] == child) ? -1 : 1;
+			int b = a.balance[p];
+			if (b == 0)
+				return false;
+			if (b == 2 || b == -2) {
+				child = this.rotate(p);
+				// a rotation normally restores the old height. It does not
+				// when a join hung a balanced subtree there.
+				if (a.balance[child] == 0)
+					return false;
+			} else {
+				child = p;
+			}
+			p = a.parent[child];
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * removes node n, which has at most one child, from the tree and walks up
+	 * from its parent updating balance codes and rotating where needed.
+	 *
+	 * @param n
+	 */
+	private void unlink(int n) {
+		NodeArena a = this.arena;
+		int child = a.left[n] != NIL ? a.left[n] : a.right[n];
+		int p = a.parent[n];
+		boolean fromLeft = p != NIL && a.left[p] == n;
+		if (child != NIL)
+			a.parent[child] = p;
+		this.replaceChild(p, n, child);
+		while (p != NIL) {
+			a.balance[p] += fromLeft ? 1 : -1;
+			int b = a.balance[p];
+			if (b == 1 || b == -1)
+				return; // the subtree kept its height.
+			int top = p;
+			if (b == 2 || b == -2) {
+				top = this.rotate(p);
+				if (a.balance[top] != 0)
+					return;
+			}
+			p = a.parent[top];
+			fromLeft = p != NIL && a.left[p] == top;
+		}
+	}
+
+	/**
+	 *
+	 * does the single or double rotation that fixes the imbalance at x.
+	 *
+	 * @param x
+	 * @return the node that took x's place.
+	 */
+	private int rotate(int x) {
+		NodeArena a = this.arena;
+		if (a.balance[x] > 0) {
+			if (a.balance[a.right[x]] < 0)
+				this.rotateRight(a.right[x]);
+			return this.rotateLeft(x);
+		}
+		if (a.balance[a.left[x]] > 0)
+			this.rotateLeft(a.left[x]);
+		return this.rotateRight(x);
+	}
+
+	private int rotateLeft(int x) {
+		NodeArena a = this.arena;
+		int y = a.right[x];
+		int p = a.parent[x];
+		a.right[x] = a.left[y];
+		if (a.left[y] != NIL)
+			a.parent[a.left[y]] = x;
+		a.left[y] = x;
+		a.parent[x] = y;
+		a.parent[y] = p;
+		this.replaceChild(p, x, y);
+		a.rank[y] += a.rank[x] + 1;
+		// balance codes after a rotation, in terms of the ones before.
+		int bx = a.balance[x] - 1 - Math.max(a.balance[y], 0);
+		int by = a.balance[y] - 1 + Math.min(bx, 0);
+		a.balance[x] = (byte) bx;
+		a.balance[y] = (byte) by;
+		this.totalRotationCount++;
+		return y;
+	}
+
+	private int rotateRight(int x) {
+		NodeArena a = this.arena;
+		int y = a.left[x];
+		int p = a.parent[x];
+		a.left[x] = a.right[y];
+		if (a.right[y] != NIL)
+			a.parent[a.right[y]] = x;
+		a.right[y] = x;
+		a.parent[x] = y;
+		a.parent[y] = p;
+		this.replaceChild(p, x, y);
+		a.rank[x] -= a.rank[y] + 1;
+		int bx = a.balance[x] + 1 - Math.min(a.balance[y], 0);
+		int by = a.balance[y] + 1 + Math.max(bx, 0);
+		a.balance[x] = (byte) bx;
+		a.balance[y] = (byte) by;
+		this.totalRotationCount++;
+		return y;
+	}
+
+	/**
+	 *
+	 * makes replacement take the place of the child old of p; p == NIL means
+	 * old was the root.
+	 *
+	 */
+	private void replaceChild(int p, int old, int replacement) {
+		if (p == NIL) {
+			this.root = replacement;
+		} else if (this.arena.left[p] == old) {
+			this.arena.left[p] = replacement;
+		} else {
+			this.arena.right[p] = replacement;
+		}
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		// en empty string always returns 0.
+		if (s.isEmpty())
+			return 0;
+		pos = Math.max(pos, 0);
+		if (pos >= this.size)
+			return -1;
+		// feed the characters from pos on to a matcher straight out of the
+		// arena, walking from each node to its successor.
+		NodeArena a = this.arena;
+		int current = this.root;
+		int k = pos;
+		while (k != a.rank[current]) {
+			if (k < a.rank[current]) {
+				current = a.left[current];
+			} else {
+				k -= a.rank[current] + 1;
+				current = a.right[current];
+			}
+		}
+		KmpMatcher matcher = new KmpMatcher(s, false);
+		for (int i = pos; i < this.size; i++) {
+			if (matcher.next(a.element[current]))
+				return i - s.length() + 1;
+			current = this.successor(current);
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 * returns the node after n, or NIL if n is the last.
+	 *
+	 * @param n
+	 */
+	private int successor(int n) {
+		NodeArena a = this.arena;
+		if (a.right[n] != NIL) {
+			n = a.right[n];
+			while (a.left[n] != NIL)
+				n = a.left[n];
+			return n;
+		}
+		while (a.parent[n] != NIL && a.right[a.parent[n]] == n)
+			n = a.parent[n];
+		return a.parent[n];
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		char[] result = new char[this.size];
+		this.copyRange(this.root, 0, this.size, result, 0);
+		return new String(result);
+	}
+
+	/**
+	 * The same format as EditTree.toDebugString(): the elements, ranks and
+	 * balance codes in a pre-order traversal.
+	 *
+	 * @return The string of elements, ranks, and balance codes, given in a
+	 *         pre-order traversal of the tree.
+	 */
+	public String toDebugString() {
+		StringBuilder sb = new StringBuilder("[");
+		this.toDebugString(this.root, sb);
+		return sb.append(']').toString();
+	}
+
+	private void toDebugString(int n, StringBuilder sb) {
+		if (n == NIL)
+			return;
+		NodeArena a = this.arena;
+		if (sb.length() > 1)
+			sb.append(", ");
+		sb.append(a.element[n]).append(a.rank[n]);
+		sb.append(a.balance[n] < 0 ? "/" : a.balance[n] == 0 ? "=" : "\\");
+		this.toDebugString(a.left[n], sb);
+		this.toDebugString(a.right[n], sb);
+	}
+}
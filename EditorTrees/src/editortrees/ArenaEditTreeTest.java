@@ -0,0 +1,238 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests for ArenaEditTree. Where EditTree's shape is known to be right, the
+ * arena tree is expected to produce the same debug strings.
+ *
+ */
+public class ArenaEditTreeTest {
+
+	@Test
+	public void testEmpty() {
+		ArenaEditTree t = new ArenaEditTree();
+		assertEquals("", t.toString());
+		assertEquals(-1, t.height());
+		assertEquals("[]", t.toDebugString());
+		assertEquals(0, t.totalRotationCount());
+	}
+
+	@Test
+	public void testTwoLevelsNoRotations() {
+		ArenaEditTree t = new ArenaEditTree();
+		t.add('b');
+		t.add('a', 0);
+		t.add('c');
+		assertEquals(0, t.totalRotationCount());
+		assertEquals("abc", t.toString());
+		assertEquals("[b1=, a0=, c0=]", t.toDebugString());
+		assertEquals(1, t.height());
+	}
+
+	@Test
+	public void testAddMatchesEditTree() {
+		EditTree expected = new EditTree();
+		ArenaEditTree t = new ArenaEditTree();
+		for (char c = 'a'; c <= 'z'; c++) {
+			expected.add(c);
+			t.add(c);
+			assertEquals(expected.toDebugString(), t.toDebugString());
+		}
+		for (char c = 'A'; c <= 'Z'; c++) {
+			expected.add(c, 0);
+			t.add(c, 0);
+			assertEquals(expected.toDebugString(), t.toDebugString());
+		}
+		assertEquals(expected.totalRotationCount(), t.totalRotationCount());
+		assertEquals(expected.height(), t.height());
+	}
+
+	@Test
+	public void testDoubleRotations() {
+		ArenaEditTree t = new ArenaEditTree();
+		t.add('a');
+		t.add('c');
+		t.add('b', 1);
+		assertEquals("[b1=, a0=, c0=]", t.toDebugString());
+		assertEquals(2, t.totalRotationCount());
+		t = new ArenaEditTree();
+		t.add('c');
+		t.add('a', 0);
+		t.add('b', 1);
+		assertEquals("[b1=, a0=, c0=]", t.toDebugString());
+		assertEquals(2, t.totalRotationCount());
+	}
+
+	@Test
+	public void testDeleteReplacesWithSuccessor() {
+		ArenaEditTree t = new ArenaEditTree();
+		t.add('b');
+		t.add('a', 0);
+		t.add('d');
+		t.add('c', 2);
+		t.add('e');
+		assertEquals('b', t.delete(1));
+		assertEquals("acde", t.toString());
+		assertEquals("[c1\\, a0=, d0\\, e0=]", t.toDebugString());
+	}
+
+	@Test
+	public void testStringConstructor() {
+		for (int n = 0; n < 70; n++) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < n; i++)
+				sb.append((char) ('!' + i));
+			ArenaEditTree t = new ArenaEditTree(sb.toString());
+			assertEquals(sb.toString(), t.toString());
+			assertEquals(t.slowHeight(), t.height());
+			assertEquals(n, t.size());
+		}
+	}
+
+	@Test
+	public void testCopyConstructor() {
+		ArenaEditTree t = new ArenaEditTree("abcdefgh");
+		ArenaEditTree copy = new ArenaEditTree(t);
+		assertEquals(t.toDebugString(), copy.toDebugString());
+		t.add('x', 3);
+		assertEquals("abcxdefgh", t.toString());
+		assertEquals("abcdefgh", copy.toString());
+	}
+
+	@Test
+	public void testSplitSharesArena() {
+		ArenaEditTree t = new ArenaEditTree("abcdefghijklmnopqrstuvwxyz");
+		ArenaEditTree right = t.split(10);
+		assertSame(t.getArena(), right.getArena());
+		assertEquals("abcdefghij", t.toString());
+		assertEquals("klmnopqrstuvwxyz", right.toString());
+		assertEquals(t.slowHeight(), t.height());
+		assertEquals(right.slowHeight(), right.height());
+		t.concatenate(right);
+		assertEquals("abcdefghijklmnopqrstuvwxyz", t.toString());
+		assertEquals(t.slowHeight(), t.height());
+		assertEquals(0, right.size());
+	}
+
+	@Test
+	public void testConcatenateAcrossArenas() {
+		ArenaEditTree t = new ArenaEditTree("abc");
+		ArenaEditTree other = new ArenaEditTree("defghijklmnop");
+		t.concatenate(other);
+		assertEquals("abcdefghijklmnop", t.toString());
+		assertEquals(t.slowHeight(), t.height());
+		assertEquals("", other.toString());
+	}
+
+	@Test
+	public void testDeleteRange() {
+		ArenaEditTree t = new ArenaEditTree("abcdefghijklmnop");
+		ArenaEditTree removed = t.delete(4, 7);
+		assertEquals("efghijk", removed.toString());
+		assertEquals("abcdlmnop", t.toString());
+	}
+
+	@Test
+	public void testFreedSlotsAreReused() {
+		ArenaEditTree t = new ArenaEditTree();
+		for (int i = 0; i < 100; i++)
+			t.add('x');
+		int capacity = t.getArena().capacity();
+		for (int round = 0; round < 1000; round++) {
+			t.delete(round % 50);
+			t.add('y', round % 70);
+		}
+		assertEquals(capacity, t.getArena().capacity());
+	}
+
+	@Test
+	public void testCutSlotsAreReused() {
+		// cut ranges that are released, and ones pasted back, give their
+		// slots back to the arena.
+		ArenaEditTree t = new ArenaEditTree("abcdefghijklmnopqrstuvwxyz0123456789");
+		for (int round = 0; round < 200000; round++) {
+			ArenaEditTree cut = t.delete(5, 10);
+			if (round % 2 == 0) {
+				cut.release();
+				assertEquals(0, cut.size());
+				for (int i = 0; i < 10; i++)
+					t.add((char) ('a' + i), 5 + i);
+			} else {
+				ArenaEditTree rest = t.split(5);
+				t.concatenate(cut);
+				t.concatenate(rest);
+			}
+		}
+		assertEquals(36, t.size());
+		assertEquals(t.slowHeight(), t.height());
+		assertTrue(t.getArena().capacity() <= 64);
+	}
+
+	@Test
+	public void testFind() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+			sb.append((char) ('a' + i % 26));
+		String s = sb + "needle" + "aabaabaaab";
+		ArenaEditTree t = new ArenaEditTree(s);
+		assertEquals(10000, t.find("needle"));
+		assertEquals(10000, t.find("needle", 10000));
+		assertEquals(-1, t.find("needle", 10001));
+		assertEquals(27, t.find("bc", 2));
+		assertEquals(s.indexOf("aabaaab"), t.find("aabaaab", -5));
+		assertEquals(-1, t.find("x", 20000));
+		assertEquals(0, t.find(""));
+		// after edits, which move nodes around.
+		ArenaEditTree right = t.split(5000);
+		right.delete(0, 4000).release();
+		t.concatenate(right);
+		assertEquals(6000, t.find("needle"));
+	}
+
+	@Test
+	public void testOutOfBounds() {
+		ArenaEditTree t = new ArenaEditTree("abc");
+		try {
+			t.get(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.add('x', -1);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.split(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testRandomEditsMatchStringBuilder() {
+		RandomEditsTest<ArenaEditTree> edits = new RandomEditsTest<ArenaEditTree>(new ArenaEditTree(),
+				ArenaEditTree::add, ArenaEditTree::delete, ArenaEditTree::delete, ArenaEditTree::split,
+				ArenaEditTree::concatenate) {
+			@Override
+			void check(ArenaEditTree t) {
+				assertEquals(t.slowHeight(), t.height());
+			}
+		};
+		edits.run(20000);
+		ArenaEditTree t = edits.tree;
+		StringBuilder expected = edits.expected;
+		assertEquals(expected.length(), t.size());
+		assertEquals(expected.substring(100, 300), t.get(100, 200));
+		assertTrue(t.height() <= 1.44 * Math.log(expected.length() + 2) / Math.log(2));
+	}
+}
@@ -0,0 +1,96 @@
+package editortrees;
+
+/**
+ * AVL balance for a BalancedEditTree: balance is the height of the node, 1
+ * for a leaf.
+ *
+ */
+final class AvlStrategy extends BalancingStrategy {
+
+	AvlStrategy() {
+		super("AVL");
+	}
+
+	private static int height(BalancedNode n) {
+		return n == null ? 0 : n.balance;
+	}
+
+	@Override
+	void initialize(BalancedNode leaf, BalancedEditTree tree) {
+		leaf.balance = 1;
+	}
+
+	@Override
+	void update(BalancedNode n) {
+		super.update(n);
+		n.balance = Math.max(height(n.left), height(n.right)) + 1;
+	}
+
+	@Override
+	BalancedNode join(BalancedNode left, BalancedNode middle, BalancedNode right, BalancedEditTree tree) {
+		if (height(left) > height(right) + 1)
+			return this.joinRight(left, middle, right, tree);
+		if (height(right) > height(left) + 1)
+			return this.joinLeft(left, middle, right, tree);
+		middle.left = left;
+		middle.right = right;
+		this.update(middle);
+		return middle;
+	}
+
+	/**
+	 *
+	 * joins down the right spine of left, the taller tree, until it reaches a
+	 * subtree no more than one taller than right.
+	 *
+	 */
+	private BalancedNode joinRight(BalancedNode left, BalancedNode middle, BalancedNode right,
+			BalancedEditTree tree) {
+		tree.rotated();
+		BalancedNode spine = left.right;
+		if (height(spine) <= height(right) + 1) {
+			middle.left = spine;
+			middle.right = right;
+			this.update(middle);
+			left.right = middle;
+			if (height(middle) <= height(left.left) + 1) {
+				this.update(left);
+				return left;
+			}
+			left.right = this.rotateRight(middle, tree);
+			return this.rotateLeft(left, tree);
+		}
+		BalancedNode joined = this.joinRight(spine, middle, right, tree);
+		left.right = joined;
+		if (height(joined) <= height(left.left) + 1) {
+			this.update(left);
+			return left;
+		}
+		return this.rotateLeft(left, tree);
+	}
+
+	private BalancedNode joinLeft(BalancedNode left, BalancedNode middle, BalancedNode right,
+			BalancedEditTree tree) {
+		tree.rotated();
+		BalancedNode spine = right.left;
+		if (height(spine) <= height(left) + 1) {
+			middle.left = left;
+			middle.right = spine;
+			this.update(middle);
+			right.left = middle;
+			if (height(middle) <= height(right.right) + 1) {
+				this.update(right);
+				return right;
+			}
+			right.left = this.rotateLeft(middle, tree);
+			return this.rotateRight(right, tree);
+		}
+		BalancedNode joined = this.joinLeft(left, middle, spine, tree);
+		right.left = joined;
+		if (height(joined) <= height(right.right) + 1) {
+			this.update(right);
+			return right;
+		}
+		return this.rotateRight(right, tree);
+	}
+}
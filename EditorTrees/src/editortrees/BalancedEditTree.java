@@ -0,0 +1,320 @@
+package editortrees;
+
+import java.util.SplittableRandom;
+
+/**
+ *
+ * An EditTree kept balanced by a BalancingStrategy chosen when it is made.
+ * Every change is a split or a join, so all strategies share add, delete,
+ * split and concatenate, and differ only in the shapes they allow and the
+ * rotations they make. EditTree itself stays a hand-tuned AVL tree and
+ * cannot be given a strategy; this one is for comparing strategies on the
+ * same edits. There is no splay strategy: a splay tree reshapes itself on
+ * reads and is not kept O(log n) deep, so it does not fit a join.
+ *
+ */
+public class BalancedEditTree {
+	private final BalancingStrategy strategy;
+	// where a strategy that needs them, like TREAP, draws random numbers.
+	private final SplittableRandom random;
+	private BalancedNode root;
+	private int totalRotationCount;
+	// receives the two halves from BalancingStrategy.split().
+	private final BalancedNode[] parts = new BalancedNode[2];
+	// receives the last node from BalancingStrategy.removeLast().
+	BalancedNode last;
+	// how many characters find() reads out of the tree at a time.
+	private static final int SEARCH_CHUNK_SIZE = 4096;
+
+	/**
+	 * Construct an empty tree balanced by strategy
+	 *
+	 * @param strategy
+	 */
+	public BalancedEditTree(BalancingStrategy strategy) {
+		this(strategy, new SplittableRandom());
+	}
+
+	/**
+	 * Construct an empty tree balanced by strategy, whose random numbers, and
+	 * so whose shape, are the same every time for the same seed and edits.
+	 *
+	 * @param strategy
+	 * @param seed
+	 */
+	public BalancedEditTree(BalancingStrategy strategy, long seed) {
+		this(strategy, new SplittableRandom(seed));
+	}
+
+	private BalancedEditTree(BalancingStrategy strategy, SplittableRandom random) {
+		if (strategy == null)
+			throw new IllegalArgumentException();
+		this.strategy = strategy;
+		this.random = random;
+	}
+
+	/**
+	 * Create a tree balanced by strategy whose toString is s, in O(N) time.
+	 *
+	 * @param s
+	 * @param strategy
+	 */
+	public BalancedEditTree(String s, BalancingStrategy strategy) {
+		this(strategy);
+		this.build(s);
+	}
+
+	/**
+	 * Create a tree balanced by strategy whose toString is s, in O(N) time,
+	 * drawing its random numbers from seed.
+	 *
+	 * @param s
+	 * @param strategy
+	 * @param seed
+	 */
+	public BalancedEditTree(String s, BalancingStrategy strategy, long seed) {
+		this(strategy, seed);
+		this.build(s);
+	}
+
+	private void build(String s) {
+		this.root = this.strategy.build(s, 0, s.length(), this);
+		// building is not editing.
+		this.totalRotationCount = 0;
+	}
+
+	/**
+	 * @return the strategy that keeps this tree balanced
+	 */
+	public BalancingStrategy getStrategy() {
+		return this.strategy;
+	}
+
+	/**
+	 *
+	 * @return the height of this tree, in O(N) time
+	 */
+	public int height() {
+		return BalancedNode.height(this.root);
+	}
+
+	/**
+	 *
+	 * @return the number of nodes in this tree
+	 */
+	public int size() {
+		return BalancedNode.size(this.root);
+	}
+
+	/**
+	 * @return the number of rotations since this tree was created, counting a
+	 *         double rotation as two, and each level a join walks its middle
+	 *         node down into the taller tree as one, since that moves a node
+	 *         below another as a rotation does.
+	 */
+	public int totalRotationCount() {
+		return this.totalRotationCount;
+	}
+
+	void rotated() {
+		this.totalRotationCount++;
+	}
+
+	SplittableRandom random() {
+		return this.random;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		BalancedNode n = this.root;
+		int rank = BalancedNode.size(n.left);
+		while (pos != rank) {
+			if (pos < rank) {
+				n = n.left;
+			} else {
+				pos -= rank + 1;
+				n = n.right;
+			}
+			rank = BalancedNode.size(n.left);
+		}
+		return n.element;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (length == 0)
+			return "";
+		if (pos < 0 || length < 0 || pos + length > this.size())
+			throw new IndexOutOfBoundsException();
+		char[] chars = new char[length];
+		BalancedNode.getChars(this.root, pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size())
+			throw new IndexOutOfBoundsException();
+		BalancedNode leaf = new BalancedNode(c);
+		this.strategy.initialize(leaf, this);
+		this.root = this.strategy.insert(this.root, pos, leaf, this);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		char deleted = this.get(pos);
+		this.root = this.strategy.remove(this.root, pos, this);
+		this.last = null;
+		return deleted;
+	}
+
+	/**
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 * @param length
+	 *            length of string to delete
+	 * @return a tree containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public BalancedEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size())
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		BalancedEditTree t2 = this.split(start);
+		BalancedEditTree t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Append (in time proportional to the log of the size of the larger tree)
+	 * the contents of the other tree to this one. Other is made empty after
+	 * this operation.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other, or other is balanced by another strategy
+	 */
+	public void concatenate(BalancedEditTree other) throws IllegalArgumentException {
+		if (this == other || this.strategy != other.strategy)
+			throw new IllegalArgumentException();
+		this.root = this.strategy.concatenate(this.root, other.root, this);
+		this.last = null;
+		other.root = null;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= position. Their nodes are removed from this
+	 *         tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public BalancedEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		this.strategy.split(this.root, pos, this.parts, this);
+		this.root = this.parts[0];
+		BalancedEditTree rightTree = new BalancedEditTree(this.strategy, this.random.split());
+		rightTree.root = this.parts[1];
+		this.parts[0] = null;
+		this.parts[1] = null;
+		return rightTree;
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		if (s.isEmpty())
+			return 0;
+		int size = this.size();
+		KmpMatcher matcher = new KmpMatcher(s, false);
+		char[] window = new char[Math.min(size, SEARCH_CHUNK_SIZE)];
+		for (int start = Math.max(pos, 0); start < size; start += window.length) {
+			int length = Math.min(window.length, size - start);
+			BalancedNode.getChars(this.root, start, length, window, 0);
+			for (int i = 0; i < length; i++)
+				if (matcher.next(window[i]))
+					return start + i - s.length() + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size()];
+		BalancedNode.getChars(this.root, 0, chars.length, chars, 0);
+		return new String(chars);
+	}
+
+	BalancedNode getRoot() {
+		return this.root;
+	}
+}
@@ -0,0 +1,218 @@
+package editortrees;
+
+import static editortrees.RandomEditsTest.text;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests for BalancedEditTree under every BalancingStrategy, against a
+ * StringBuilder edited the same way, checking each strategy's invariant after
+ * every change.
+ *
+ */
+public class BalancedEditTreeTest {
+	private static final BalancingStrategy[] STRATEGIES = { BalancingStrategy.AVL, BalancingStrategy.RED_BLACK,
+			BalancingStrategy.WEIGHT_BALANCED, BalancingStrategy.TREAP };
+	// so that treaps get the same priorities, and shapes, on every run.
+	private static final long SEED = 230;
+
+	// checks the sizes, and whatever the strategy keeps, of every node.
+	private static void check(BalancedEditTree t) {
+		BalancedNode root = t.getRoot();
+		BalancingStrategy strategy = t.getStrategy();
+		if (strategy == BalancingStrategy.AVL)
+			checkAvl(root);
+		else if (strategy == BalancingStrategy.RED_BLACK)
+			checkRedBlack(root);
+		else if (strategy == BalancingStrategy.WEIGHT_BALANCED)
+			checkWeights(root);
+		else
+			checkPriorities(root);
+	}
+
+	private static int checkSize(BalancedNode n) {
+		assertEquals(BalancedNode.size(n.left) + 1 + BalancedNode.size(n.right), n.size);
+		return n.size;
+	}
+
+	private static int checkAvl(BalancedNode n) {
+		if (n == null)
+			return 0;
+		checkSize(n);
+		int left = checkAvl(n.left);
+		int right = checkAvl(n.right);
+		assertTrue(Math.abs(left - right) <= 1);
+		assertEquals(Math.max(left, right) + 1, n.balance);
+		return n.balance;
+	}
+
+	private static int checkRedBlack(BalancedNode n) {
+		if (n == null)
+			return 1;
+		checkSize(n);
+		boolean red = (n.balance & 1) == 1;
+		if (red) {
+			assertFalse(n.left != null && (n.left.balance & 1) == 1);
+			assertFalse(n.right != null && (n.right.balance & 1) == 1);
+		}
+		int left = checkRedBlack(n.left);
+		assertEquals(left, checkRedBlack(n.right));
+		assertEquals(left + (red ? 0 : 1), n.balance >> 1);
+		return n.balance >> 1;
+	}
+
+	private static void checkWeights(BalancedNode n) {
+		if (n == null)
+			return;
+		checkSize(n);
+		double weight = n.size + 1;
+		assertTrue(BalancedNode.size(n.left) + 1 >= 0.29 * weight);
+		assertTrue(BalancedNode.size(n.right) + 1 >= 0.29 * weight);
+		checkWeights(n.left);
+		checkWeights(n.right);
+	}
+
+	private static void checkPriorities(BalancedNode n) {
+		if (n == null)
+			return;
+		checkSize(n);
+		assertTrue(n.left == null || n.left.balance <= n.balance);
+		assertTrue(n.right == null || n.right.balance <= n.balance);
+		checkPriorities(n.left);
+		checkPriorities(n.right);
+	}
+
+	// the deepest a tree of n nodes may get under strategy: what each
+	// invariant guarantees, and for a treap twice the expected height of a
+	// random binary search tree, 4.311 ln n, which it passes with vanishing
+	// probability.
+	private static double maxHeight(BalancingStrategy strategy, int n) {
+		if (strategy == BalancingStrategy.AVL)
+			return 1.4405 * Math.log(n + 2) / Math.log(2);
+		if (strategy == BalancingStrategy.RED_BLACK)
+			return 2 * Math.log(n + 1) / Math.log(2);
+		if (strategy == BalancingStrategy.WEIGHT_BALANCED)
+			return Math.log((n + 1) / 2.0) / Math.log(1 / 0.71);
+		return 2 * 4.311 * Math.log(n);
+	}
+
+	@Test
+	public void testBuild() {
+		for (BalancingStrategy strategy : STRATEGIES) {
+			for (int length : new int[] { 0, 1, 2, 3, 10, 1000, 4097 }) {
+				BalancedEditTree t = new BalancedEditTree(text(length), strategy, SEED);
+				check(t);
+				assertEquals(text(length), t.toString());
+				assertEquals(0, t.totalRotationCount());
+			}
+		}
+		assertEquals(-1, new BalancedEditTree(BalancingStrategy.AVL).height());
+	}
+
+	@Test
+	public void testAddInOrder() {
+		for (BalancingStrategy strategy : STRATEGIES) {
+			BalancedEditTree t = new BalancedEditTree(strategy, SEED);
+			for (int i = 0; i < 1000; i++)
+				t.add((char) ('a' + i % 26));
+			check(t);
+			assertEquals(text(1000), t.toString());
+			assertTrue(strategy + ": " + t.height(), t.height() <= maxHeight(strategy, 1000));
+			assertTrue(t.totalRotationCount() > 0);
+		}
+	}
+
+	@Test
+	public void testSeed() {
+		// the same seed and edits make the same treap, splits included.
+		BalancedEditTree[] trees = new BalancedEditTree[2];
+		for (int k = 0; k < trees.length; k++) {
+			trees[k] = new BalancedEditTree(text(100), BalancingStrategy.TREAP, SEED);
+			for (int i = 0; i < 1000; i++)
+				trees[k].add('x', i % 50);
+			BalancedEditTree right = trees[k].split(500);
+			for (int i = 0; i < 100; i++)
+				right.add('y', 0);
+			trees[k].concatenate(right);
+		}
+		assertEquals(trees[0].toString(), trees[1].toString());
+		assertEquals(trees[0].height(), trees[1].height());
+		assertEquals(trees[0].totalRotationCount(), trees[1].totalRotationCount());
+	}
+
+	@Test
+	public void testRandomEdits() {
+		for (BalancingStrategy strategy : STRATEGIES) {
+			RandomEditsTest<BalancedEditTree> edits = new RandomEditsTest<BalancedEditTree>(
+					new BalancedEditTree(strategy, SEED), BalancedEditTree::add, BalancedEditTree::delete,
+					BalancedEditTree::delete, BalancedEditTree::split, BalancedEditTree::concatenate) {
+				@Override
+				void check(BalancedEditTree t) {
+					BalancedEditTreeTest.check(t);
+				}
+			};
+			edits.run(5000);
+			BalancedEditTree t = edits.tree;
+			StringBuilder expected = edits.expected;
+			assertEquals(expected.length(), t.size());
+			int pos = edits.random.nextInt(expected.length());
+			assertEquals(expected.substring(pos, pos + 1), t.get(pos, 1));
+		}
+	}
+
+	@Test
+	public void testConcatenateUnevenTrees() {
+		for (BalancingStrategy strategy : STRATEGIES) {
+			for (int small = 0; small < 40; small++) {
+				BalancedEditTree big = new BalancedEditTree(text(1000), strategy, SEED);
+				BalancedEditTree little = new BalancedEditTree(text(small), strategy, SEED);
+				big.concatenate(little);
+				check(big);
+				assertEquals(text(1000) + text(small), big.toString());
+				little = new BalancedEditTree(text(small), strategy, SEED);
+				little.concatenate(new BalancedEditTree(text(1000), strategy, SEED));
+				check(little);
+				assertEquals(text(small) + text(1000), little.toString());
+			}
+		}
+	}
+
+	@Test
+	public void testFind() {
+		for (BalancingStrategy strategy : STRATEGIES) {
+			BalancedEditTree t = new BalancedEditTree(text(10000) + "needle" + text(100), strategy, SEED);
+			assertEquals(10000, t.find("needle"));
+			assertEquals(-1, t.find("needle", 10001));
+			assertEquals(27, t.find("bc", 2));
+		}
+	}
+
+	@Test
+	public void testErrors() {
+		BalancedEditTree t = new BalancedEditTree("abc", BalancingStrategy.RED_BLACK);
+		try {
+			t.concatenate(new BalancedEditTree("def", BalancingStrategy.AVL));
+			fail("did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			t.get(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.add('x', 4);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		assertEquals("abc", t.toString());
+		assertEquals("red-black", t.getStrategy().toString());
+	}
+}
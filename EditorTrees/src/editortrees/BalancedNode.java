@@ -0,0 +1,64 @@
+package editortrees;
+
+/**
+ *
+ * A node of a BalancedEditTree. Which shapes are allowed, and what balance
+ * holds, is up to the tree's BalancingStrategy. The empty tree is null.
+ *
+ */
+final class BalancedNode {
+	char element;
+	BalancedNode left, right;
+	int size; // number of nodes in this whole subtree.
+	// kept by the strategy: the height for AVL, the black height and colour
+	// for red-black, the priority for a treap. Weight balance uses size.
+	int balance;
+
+	BalancedNode(char element) {
+		this.element = element;
+		this.size = 1;
+	}
+
+	static int size(BalancedNode n) {
+		return n == null ? 0 : n.size;
+	}
+
+	static int height(BalancedNode n) {
+		if (n == null)
+			return -1;
+		return Math.max(height(n.left), height(n.right)) + 1;
+	}
+
+	/**
+	 *
+	 * copies the elements at positions pos to pos + length - 1 of n into dst,
+	 * starting at dstBegin.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param length
+	 * @param dst
+	 * @param dstBegin
+	 */
+	static void getChars(BalancedNode n, int pos, int length, char[] dst, int dstBegin) {
+		while (n != null && length > 0) {
+			int rank = size(n.left);
+			if (pos < rank) {
+				int fromLeft = Math.min(length, rank - pos);
+				getChars(n.left, pos, fromLeft, dst, dstBegin);
+				dstBegin += fromLeft;
+				length -= fromLeft;
+				pos = rank;
+				if (length == 0)
+					return;
+			}
+			if (pos == rank) {
+				dst[dstBegin++] = n.element;
+				length--;
+				pos++;
+			}
+			pos -= rank + 1;
+			n = n.right;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package editortrees;
+
+/**
+ *
+ * How a BalancedEditTree keeps itself balanced. Every strategy is one join:
+ * making a node the root of a tree holding a left tree, then the node, then a
+ * right tree, whatever their sizes. Adding, deleting, splitting and
+ * concatenating are all written here in terms of that join, so a strategy
+ * only has to say how it joins and what it keeps in BalancedNode.balance.
+ *
+ */
+public abstract class BalancingStrategy {
+	/**
+	 * Height-balanced: the heights of the two sides of a node differ by at
+	 * most one.
+	 */
+	public static final BalancingStrategy AVL = new AvlStrategy();
+	/**
+	 * Red-black: no red node has a red child, and every path down has as many
+	 * black nodes. Shallower balance than AVL, so fewer rotations.
+	 */
+	public static final BalancingStrategy RED_BLACK = new RedBlackStrategy();
+	/**
+	 * Weight-balanced: neither side of a node holds much more than twice as
+	 * many nodes as the other.
+	 */
+	public static final BalancingStrategy WEIGHT_BALANCED = new WeightBalancedStrategy();
+	/**
+	 * Treap: a random priority per node, heap-ordered, so the tree has the
+	 * shape of one built in random order.
+	 */
+	public static final BalancingStrategy TREAP = new TreapStrategy();
+
+	private final String name;
+
+	BalancingStrategy(String name) {
+		this.name = name;
+	}
+
+	/**
+	 *
+	 * sets what this strategy keeps in a new node, before it is first joined.
+	 *
+	 * @param leaf
+	 * @param tree
+	 *            the tree leaf is for
+	 */
+	abstract void initialize(BalancedNode leaf, BalancedEditTree tree);
+
+	/**
+	 *
+	 * returns the root of a tree holding left, then middle, then right. The
+	 * children middle had are ignored.
+	 *
+	 * @param left
+	 * @param middle
+	 * @param right
+	 * @param tree
+	 *            counts the rotations
+	 * @return the root of the joined tree.
+	 */
+	abstract BalancedNode join(BalancedNode left, BalancedNode middle, BalancedNode right, BalancedEditTree tree);
+
+	/**
+	 *
+	 * brings n's size, and whatever else this strategy keeps, up to date with
+	 * its children.
+	 *
+	 * @param n
+	 */
+	void update(BalancedNode n) {
+		n.size = BalancedNode.size(n.left) + 1 + BalancedNode.size(n.right);
+	}
+
+	final BalancedNode rotateLeft(BalancedNode n, BalancedEditTree tree) {
+		BalancedNode child = n.right;
+		n.right = child.left;
+		child.left = n;
+		this.update(n);
+		this.update(child);
+		tree.rotated();
+		return child;
+	}
+
+	final BalancedNode rotateRight(BalancedNode n, BalancedEditTree tree) {
+		BalancedNode child = n.left;
+		n.left = child.right;
+		child.right = n;
+		this.update(n);
+		this.update(child);
+		tree.rotated();
+		return child;
+	}
+
+	/**
+	 *
+	 * builds a tree holding the characters of s from begin up to, but not
+	 * including, end.
+	 *
+	 * @param s
+	 * @param begin
+	 * @param end
+	 * @param tree
+	 * @return the root of the tree, or null if the range is empty.
+	 */
+	final BalancedNode build(String s, int begin, int end, BalancedEditTree tree) {
+		if (begin == end)
+			return null;
+		int middle = begin + (end - begin) / 2;
+		BalancedNode node = new BalancedNode(s.charAt(middle));
+		this.initialize(node, tree);
+		return this.join(this.build(s, begin, middle, tree), node, this.build(s, middle + 1, end, tree), tree);
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param pos
+	 * @param leaf
+	 *            an initialized node
+	 * @param tree
+	 * @return the root of n with leaf inserted at pos.
+	 */
+	final BalancedNode insert(BalancedNode n, int pos, BalancedNode leaf, BalancedEditTree tree) {
+		if (n == null)
+			return leaf;
+		BalancedNode left = n.left;
+		BalancedNode right = n.right;
+		int rank = BalancedNode.size(left);
+		if (pos <= rank)
+			return this.join(this.insert(left, pos, leaf, tree), n, right, tree);
+		return this.join(left, n, this.insert(right, pos - (rank + 1), leaf, tree), tree);
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param pos
+	 * @param tree
+	 * @return the root of n without the node at pos.
+	 */
+	final BalancedNode remove(BalancedNode n, int pos, BalancedEditTree tree) {
+		BalancedNode left = n.left;
+		BalancedNode right = n.right;
+		int rank = BalancedNode.size(left);
+		if (pos < rank)
+			return this.join(this.remove(left, pos, tree), n, right, tree);
+		if (pos > rank)
+			return this.join(left, n, this.remove(right, pos - (rank + 1), tree), tree);
+		return this.concatenate(left, right, tree);
+	}
+
+	/**
+	 *
+	 * @param left
+	 * @param right
+	 * @param tree
+	 * @return the root of a tree holding left, then right.
+	 */
+	final BalancedNode concatenate(BalancedNode left, BalancedNode right, BalancedEditTree tree) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		// the last node of the left tree joins the two trees together.
+		BalancedNode rest = this.removeLast(left, tree);
+		return this.join(rest, tree.last, right, tree);
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param tree
+	 *            receives the last node in last
+	 * @return the root of n without its last node.
+	 */
+	private BalancedNode removeLast(BalancedNode n, BalancedEditTree tree) {
+		if (n.right == null) {
+			tree.last = n;
+			return n.left;
+		}
+		BalancedNode left = n.left;
+		return this.join(left, n, this.removeLast(n.right, tree), tree);
+	}
+
+	/**
+	 *
+	 * splits n before pos, leaving the nodes before it in parts[0] and the
+	 * rest in parts[1].
+	 *
+	 * @param n
+	 * @param pos
+	 * @param parts
+	 * @param tree
+	 */
+	final void split(BalancedNode n, int pos, BalancedNode[] parts, BalancedEditTree tree) {
+		if (n == null) {
+			parts[0] = null;
+			parts[1] = null;
+			return;
+		}
+		BalancedNode left = n.left;
+		BalancedNode right = n.right;
+		int rank = BalancedNode.size(left);
+		if (pos <= rank) {
+			this.split(left, pos, parts, tree);
+			parts[1] = this.join(parts[1], n, right, tree);
+		} else {
+			this.split(right, pos - (rank + 1), parts, tree);
+			parts[0] = this.join(left, n, parts[0], tree);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
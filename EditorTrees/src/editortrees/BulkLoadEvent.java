@@ -0,0 +1,27 @@
+package editortrees;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by the EditTree constructors that build a tree from a string or
+ * an array, and by add(String, int).
+ *
+ */
+@Name("editortrees.BulkLoad")
+@Label("Bulk Load")
+@Threshold("20 ms")
+final class BulkLoadEvent extends EditTreeEvent {
+	@Label("Length")
+	@Description("Characters loaded")
+	int length;
+
+	@Label("Position")
+	@Description("Where the characters were added; 0 when a tree is built")
+	int position;
+
+	@Label("Parallel")
+	boolean parallel;
+}
@@ -0,0 +1,118 @@
+package editortrees;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ *
+ * Encodes the text of a tree, handed over a run of characters at a time, into
+ * a channel. Each save has its own encoder and buffer, used over and over, so
+ * saving takes no more memory however long the text is. The buffer is on the
+ * heap: encoders copy array to array far faster than into a direct buffer,
+ * and channels write a heap buffer through a direct one of their own, which
+ * they reuse. Characters that cannot be encoded are replaced, as
+ * String.getBytes() does.
+ *
+ */
+final class ChannelWriter {
+	static final int BUFFER_BYTES = 1 << 16;
+
+	private final WritableByteChannel out;
+	private final CharsetEncoder encoder;
+	private final ByteBuffer buffer;
+	// a high surrogate left at the end of the last run, whose low surrogate
+	// starts the next one; 0 if there is none.
+	private char carried;
+	private final char[] pair = new char[2];
+
+	ChannelWriter(WritableByteChannel out, Charset charset) {
+		this.out = out;
+		this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buffer = ByteBuffer.allocate(BUFFER_BYTES);
+	}
+
+	/**
+	 *
+	 * encodes chars[offset] to chars[offset + length - 1].
+	 *
+	 * @param chars
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 *             if the channel does
+	 */
+	void write(char[] chars, int offset, int length) throws IOException {
+		if (length == 0)
+			return;
+		CharBuffer in = CharBuffer.wrap(chars, offset, length);
+		while (this.carried != 0 && in.hasRemaining()) {
+			this.pair[0] = this.carried;
+			this.pair[1] = in.get();
+			this.carried = 0;
+			CharBuffer both = CharBuffer.wrap(this.pair);
+			this.encode(both, false);
+			// if the second is a high surrogate too, it waits for the next.
+			if (both.hasRemaining())
+				this.carried = both.get();
+		}
+		this.encode(in, false);
+		// only half of a surrogate pair is ever left over.
+		if (in.hasRemaining())
+			this.carried = in.get();
+	}
+
+	/**
+	 *
+	 * writes bytes as they are, after everything encoded so far.
+	 *
+	 * @param bytes
+	 * @throws IOException
+	 *             if the channel does
+	 */
+	void write(ByteBuffer bytes) throws IOException {
+		this.finish();
+		this.encoder.reset();
+		while (bytes.hasRemaining())
+			this.out.write(bytes);
+	}
+
+	/**
+	 *
+	 * encodes whatever is left, and writes out the buffer.
+	 *
+	 * @throws IOException
+	 *             if the channel does
+	 */
+	void finish() throws IOException {
+		this.pair[0] = this.carried;
+		CharBuffer rest = CharBuffer.wrap(this.pair, 0, this.carried == 0 ? 0 : 1);
+		this.carried = 0;
+		this.encode(rest, true);
+		while (this.encoder.flush(this.buffer).isOverflow())
+			this.drain();
+		this.drain();
+	}
+
+	private void encode(CharBuffer in, boolean last) throws IOException {
+		while (true) {
+			CoderResult result = this.encoder.encode(in, this.buffer, last);
+			if (!result.isOverflow())
+				return;
+			this.drain();
+		}
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining())
+			this.out.write(this.buffer);
+		this.buffer.clear();
+	}
+}
@@ -0,0 +1,202 @@
+package editortrees;
+
+/**
+ *
+ * A node in a ChunkedEditTree. Instead of a single character, each node holds
+ * a block of up to capacity characters, so rank and size count characters
+ * rather than nodes.
+ *
+ * The block is a gap buffer: the unused part of chars is a gap that sits
+ * wherever the last insert or remove was, so a run of them at one place only
+ * moves the gap once, and then costs O(1) each.
+ *
+ */
+class ChunkNode extends SpanNode<ChunkNode> {
+	char[] chars;
+	// the characters are chars[0, gap) and then the last length - gap of
+	// chars.
+	int gap;
+
+	ChunkNode(int capacity) {
+		this.chars = new char[capacity];
+		this.length = 0;
+		this.height = 0;
+	}
+
+	/**
+	 *
+	 * creates a chunk holding the characters of s in [from, to).
+	 *
+	 * @param s
+	 * @param from
+	 * @param to
+	 * @param capacity
+	 */
+	ChunkNode(String s, int from, int to, int capacity) {
+		this(capacity);
+		s.getChars(from, to, this.chars, 0);
+		this.length = to - from;
+		this.gap = this.length;
+		this.size = this.length;
+	}
+
+	/**
+	 * @return true if no more characters fit in this chunk.
+	 */
+	boolean isFull() {
+		return this.length == this.chars.length;
+	}
+
+	/**
+	 * @param i
+	 * @return the character at offset i within this chunk.
+	 */
+	char charAt(int i) {
+		return i < this.gap ? this.chars[i] : this.chars[i + this.chars.length - this.length];
+	}
+
+	/**
+	 * @return the index in chars just past the gap.
+	 */
+	private int gapEnd() {
+		return this.gap + this.chars.length - this.length;
+	}
+
+	/**
+	 *
+	 * moves the gap to offset i, by moving the characters between there and
+	 * the gap to its other side.
+	 *
+	 * @param i
+	 */
+	private void moveGap(int i) {
+		if (i < this.gap) {
+			System.arraycopy(this.chars, i, this.chars, this.gapEnd() - (this.gap - i), this.gap - i);
+		} else if (i > this.gap) {
+			System.arraycopy(this.chars, this.gapEnd(), this.chars, this.gap, i - this.gap);
+		}
+		this.gap = i;
+	}
+
+	/**
+	 *
+	 * inserts c at offset i within this chunk, which must not be full.
+	 *
+	 * @param c
+	 * @param i
+	 */
+	void insert(char c, int i) {
+		this.moveGap(i);
+		this.chars[this.gap++] = c;
+		this.length++;
+	}
+
+	/**
+	 *
+	 * removes the character at offset i within this chunk.
+	 *
+	 * @param i
+	 * @return the removed character.
+	 */
+	char remove(int i) {
+		this.moveGap(i);
+		char removed = this.chars[this.gapEnd()];
+		this.length--;
+		return removed;
+	}
+
+	/**
+	 *
+	 * moves the characters from offset i onwards into a new chunk, which is
+	 * returned detached from the tree.
+	 *
+	 * @param i
+	 * @return a chunk with the characters that used to follow offset i.
+	 */
+	@Override
+	ChunkNode cut(int i) {
+		ChunkNode tail = new ChunkNode(this.chars.length);
+		this.copyTo(i, this.length, tail.chars, 0);
+		tail.length = this.length - i;
+		tail.gap = tail.length;
+		tail.size = tail.length;
+		// with the gap at i, everything after it is dropped.
+		this.moveGap(i);
+		this.length = i;
+		return tail;
+	}
+
+	/**
+	 *
+	 * moves the first count characters of next, the chunk after this one, to
+	 * the end of this chunk.
+	 *
+	 * @param next
+	 * @param count
+	 */
+	void takeFirst(ChunkNode next, int count) {
+		this.moveGap(this.length);
+		next.copyTo(0, count, this.chars, this.gap);
+		this.gap += count;
+		this.length += count;
+		// with the gap at count, the characters before it are dropped.
+		next.moveGap(count);
+		next.gap = 0;
+		next.length -= count;
+	}
+
+	/**
+	 *
+	 * moves the last count characters of this chunk to the start of next, the
+	 * chunk after this one.
+	 *
+	 * @param next
+	 * @param count
+	 */
+	void giveLast(ChunkNode next, int count) {
+		next.moveGap(0);
+		this.copyTo(this.length - count, this.length, next.chars, next.gapEnd() - count);
+		next.length += count;
+		this.moveGap(this.length - count);
+		this.length -= count;
+	}
+
+	/**
+	 *
+	 * copies the characters in [from, to) of this chunk into dst.
+	 *
+	 * @param from
+	 * @param to
+	 * @param dst
+	 * @param dstBegin
+	 */
+	@Override
+	void copyTo(int from, int to, char[] dst, int dstBegin) {
+		if (from < this.gap) {
+			int end = Math.min(to, this.gap);
+			System.arraycopy(this.chars, from, dst, dstBegin, end - from);
+			dstBegin += end - from;
+			from = end;
+		}
+		if (from < to)
+			System.arraycopy(this.chars, from + this.chars.length - this.length, dst, dstBegin, to - from);
+	}
+
+	/**
+	 * @return a copy of this subtree, with all new nodes.
+	 */
+	ChunkNode copy() {
+		ChunkNode newNode = new ChunkNode(this.chars.length);
+		this.copyTo(0, this.length, newNode.chars, 0);
+		newNode.length = this.length;
+		newNode.gap = this.length;
+		newNode.rank = this.rank;
+		newNode.size = this.size;
+		newNode.height = this.height;
+		if (this.left != null)
+			newNode.left = this.left.copy();
+		if (this.right != null)
+			newNode.right = this.right.copy();
+		return newNode;
+	}
+}
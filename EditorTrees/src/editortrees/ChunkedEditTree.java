@@ -0,0 +1,662 @@
+package editortrees;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+// A height-balanced binary tree of character blocks (a rope) with the same
+// operations as EditTree. Each node stores up to capacity characters, so the
+// per-character overhead of a Node and the number of levels to walk through
+// are both divided by the block size. Each chunk is a gap buffer, and the
+// tree remembers the chunk it last added to or deleted from: more adds and
+// deletes in that chunk change only the chunk, and the sizes and ranks of the
+// chunks above it are brought up to date once, when the edits move elsewhere
+// or the tree is next read. Once there is more than one chunk, every chunk is
+// at least half full: a chunk that a delete, split or concatenate leaves with
+// less is merged with a neighbour, or the two are evened out, so the chunks
+// never outnumber twice the characters over the capacity.
+
+public class ChunkedEditTree {
+
+	/**
+	 * The number of characters a chunk holds unless another capacity is given.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private ChunkNode root;
+	private final int capacity;
+	// receives the character removed by delete(int), so that no container
+	// needs to be created per call.
+	private final DropBox box = new DropBox('`');
+	// the chunk the last add or delete went into, and the position of its
+	// first character, or null. The sizes and ranks on the path down to it are
+	// pending characters short until flush().
+	private ChunkNode hot;
+	private int hotStart;
+	private int pending;
+
+	/**
+	 * Construct an empty tree
+	 */
+	public ChunkedEditTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct an empty tree whose chunks hold up to capacity characters.
+	 *
+	 * @param capacity
+	 * @throws IllegalArgumentException
+	 *             if capacity is less than 2
+	 */
+	public ChunkedEditTree(int capacity) {
+		if (capacity < 2)
+			throw new IllegalArgumentException("chunk capacity must be at least 2");
+		this.root = null;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Construct a single-character tree whose element is c
+	 *
+	 * @param c
+	 */
+	public ChunkedEditTree(char c) {
+		this();
+		this.add(c);
+	}
+
+	/**
+	 * Create a tree whose toString is s in O(N) time, by cutting s into full
+	 * chunks and arranging them as a perfectly balanced tree.
+	 *
+	 * @param s
+	 */
+	public ChunkedEditTree(String s) {
+		this(s, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a tree whose toString is s and whose chunks hold up to capacity
+	 * characters.
+	 *
+	 * @param s
+	 * @param capacity
+	 */
+	public ChunkedEditTree(String s, int capacity) {
+		this(capacity);
+		int chunks = (s.length() + capacity - 1) / capacity;
+		this.root = this.build(s, 0, chunks);
+		// only the last chunk can be short.
+		this.repair(s.length() - 1);
+	}
+
+	/**
+	 * Make this tree be a copy of e, with all new nodes, but the same shape and
+	 * contents.
+	 *
+	 * @param e
+	 */
+	public ChunkedEditTree(ChunkedEditTree e) {
+		e.flush();
+		this.capacity = e.capacity;
+		this.root = e.root == null ? null : e.root.copy();
+	}
+
+	/**
+	 *
+	 * builds a balanced subtree from the chunks numbered [lo, hi) of s.
+	 *
+	 * @param s
+	 * @param lo
+	 * @param hi
+	 * @return the root of the subtree.
+	 */
+	private ChunkNode build(String s, int lo, int hi) {
+		if (lo >= hi)
+			return null;
+		int mid = (lo + hi) >>> 1;
+		int from = mid * this.capacity;
+		ChunkNode newNode = new ChunkNode(s, from, Math.min(from + this.capacity, s.length()), this.capacity);
+		newNode.left = this.build(s, lo, mid);
+		newNode.right = this.build(s, mid + 1, hi);
+		newNode.update();
+		return newNode;
+	}
+
+	/**
+	 *
+	 * @return the height of this tree, counted in chunks.
+	 */
+	public int height() {
+		return ChunkNode.height(this.root);
+	}
+
+	/**
+	 *
+	 * @return the number of characters in this tree
+	 */
+	public int size() {
+		return ChunkNode.size(this.root) + this.pending;
+	}
+
+	/**
+	 * @return the number of characters a new chunk of this tree can hold.
+	 */
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		this.flush();
+		ChunkNode current = this.root;
+		while (true) {
+			if (pos < current.rank) {
+				current = current.left;
+			} else {
+				pos -= current.rank;
+				if (pos < current.length)
+					return current.charAt(pos);
+				pos -= current.length;
+				current = current.right;
+			}
+		}
+	}
+
+	/**
+	 * This method operates in O(length + log N), where N is the size of this
+	 * tree.
+	 *
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || pos + length > this.size())
+			throw new IndexOutOfBoundsException();
+		this.flush();
+		char[] result = new char[length];
+		SpanTree.copyRange(this.root, pos, pos + length, result, 0);
+		return new String(result);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size())
+			throw new IndexOutOfBoundsException();
+		if (this.root == null) {
+			this.root = new ChunkNode(this.capacity);
+			this.root.insert(c, 0);
+			this.root.update();
+			return;
+		}
+		if (this.hot == null || pos < this.hotStart || pos > this.hotStart + this.hot.length) {
+			this.flush();
+			this.locate(pos, true);
+		}
+		if (!this.hot.isFull()) {
+			this.hot.insert(c, pos - this.hotStart);
+			this.pending++;
+		} else {
+			this.settle();
+			this.root = this.add(this.root, c, pos);
+		}
+	}
+
+	/**
+	 *
+	 * brings the sizes and ranks on the path down to the hot chunk up to date.
+	 *
+	 */
+	private void flush() {
+		if (this.pending != 0) {
+			refresh(this.root, this.hotStart, this.hot);
+			this.pending = 0;
+		}
+	}
+
+	/**
+	 *
+	 * flushes, and forgets the hot chunk, before the shape of the tree
+	 * changes.
+	 *
+	 */
+	private void settle() {
+		this.flush();
+		this.hot = null;
+	}
+
+	/**
+	 *
+	 * updates the chunks on the path from n down to hot, which starts at
+	 * position pos of n's subtree, from the bottom up. Only hot's length has
+	 * changed, and it still holds a character, so the positions of the
+	 * characters before it, and the ranks the path is found by, still lead to
+	 * it.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param hot
+	 */
+	private static void refresh(ChunkNode n, int pos, ChunkNode hot) {
+		if (n != hot) {
+			if (pos < n.rank)
+				refresh(n.left, pos, hot);
+			else
+				refresh(n.right, pos - n.rank - n.length, hot);
+		}
+		n.update();
+	}
+
+	/**
+	 *
+	 * makes the chunk holding position pos the hot chunk. When adding, that is
+	 * the chunk add(ChunkNode, char, int) would add to, which may end at pos.
+	 *
+	 * @param pos
+	 * @param adding
+	 */
+	private void locate(int pos, boolean adding) {
+		ChunkNode n = this.root;
+		int start = 0;
+		while (true) {
+			int end = n.rank + n.length;
+			if (pos < n.rank) {
+				n = n.left;
+			} else if (pos < end || adding && pos == end) {
+				this.hot = n;
+				this.hotStart = start + n.rank;
+				return;
+			} else {
+				start += end;
+				pos -= end;
+				n = n.right;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * inserts c at position pos of the subtree rooted at n.
+	 *
+	 * @param n
+	 * @param c
+	 * @param pos
+	 * @return the root of the subtree after rebalancing.
+	 */
+	private ChunkNode add(ChunkNode n, char c, int pos) {
+		if (pos < n.rank) {
+			n.left = this.add(n.left, c, pos);
+		} else if (pos <= n.rank + n.length) {
+			int offset = pos - n.rank;
+			if (n.isFull()) {
+				// move the second half of a full chunk into a new chunk that
+				// becomes the first one of the right subtree, then insert into
+				// whichever half the position falls in.
+				ChunkNode tail = n.cut(n.length / 2);
+				if (offset <= n.length) {
+					n.insert(c, offset);
+				} else {
+					tail.insert(c, offset - n.length);
+				}
+				n.right = SpanTree.insertFirst(n.right, tail);
+			} else {
+				n.insert(c, offset);
+			}
+		} else {
+			n.right = this.add(n.right, c, pos - n.rank - n.length);
+		}
+		return SpanTree.rebalance(n);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		if (this.hot == null || pos < this.hotStart || pos >= this.hotStart + this.hot.length) {
+			this.flush();
+			this.locate(pos, false);
+		}
+		// the last character of a chunk goes with the chunk, and a chunk that
+		// would be less than half full has to be merged.
+		if (this.hot.length > 1 && (this.hot.length > this.capacity / 2 || this.hot == this.root
+				&& this.root.left == null && this.root.right == null)) {
+			this.pending--;
+			return this.hot.remove(pos - this.hotStart);
+		}
+		this.settle();
+		this.root = this.delete(this.root, pos);
+		// the character was in the chunk that now holds pos - 1 or pos.
+		this.repair(pos - 1);
+		this.repair(Math.min(pos, this.size() - 1));
+		return this.box.getElement();
+	}
+
+	/**
+	 *
+	 * removes the character at position pos of the subtree rooted at n, and
+	 * the chunk that held it if it becomes empty.
+	 *
+	 * @param n
+	 * @param pos
+	 * @return the root of the subtree after rebalancing.
+	 */
+	private ChunkNode delete(ChunkNode n, int pos) {
+		if (pos < n.rank) {
+			n.left = this.delete(n.left, pos);
+		} else if (pos < n.rank + n.length) {
+			this.box.setElement(n.remove(pos - n.rank));
+			if (n.length == 0)
+				return SpanTree.unlink(n);
+		} else {
+			n.right = this.delete(n.right, pos - n.rank - n.length);
+		}
+		return SpanTree.rebalance(n);
+	}
+
+	/**
+	 * Runs in time proportional to the log of the size of this tree, by
+	 * splitting it twice and concatenating the outer parts.
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 *
+	 * @param length
+	 *            length of string to delete
+	 * @return a ChunkedEditTree containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public ChunkedEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size())
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		ChunkedEditTree t2 = this.split(start);
+		ChunkedEditTree t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Append (in time proportional to the log of the size of the larger tree)
+	 * the contents of the other tree to this one. Other should be made empty
+	 * after this operation.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(ChunkedEditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		this.settle();
+		other.settle();
+		if (other.root == null)
+			return;
+		if (this.root == null) {
+			this.root = other.root;
+		} else {
+			// the first chunk of the other tree joins the two trees together.
+			ChunkNode first = other.root;
+			while (first.left != null)
+				first = first.left;
+			int seam = this.root.size;
+			this.root = SpanTree.join(this.root, first, SpanTree.removeFirst(other.root));
+			this.repair(seam - 1);
+			this.repair(seam);
+		}
+		other.root = null;
+	}
+
+	/**
+	 * This operation is done in time proportional to the height of this tree.
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= position. Their nodes are removed from this
+	 *         tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public ChunkedEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		this.settle();
+		ChunkNode[] parts = new ChunkNode[2];
+		SpanTree.split(this.root, pos, parts);
+		this.root = parts[0];
+		ChunkedEditTree rightTree = new ChunkedEditTree(this.capacity);
+		rightTree.root = parts[1];
+		// a chunk cut in two leaves a piece at the end of one tree and the
+		// start of the other.
+		this.repair(pos - 1);
+		rightTree.repair(0);
+		return rightTree;
+	}
+
+	/**
+	 *
+	 * merges the chunk holding position pos, if it is less than half full and
+	 * is not the only one, with the chunk after it, or the one before it if it
+	 * is the last. The tree must be settled.
+	 *
+	 * @param pos
+	 */
+	private void repair(int pos) {
+		if (this.root == null || pos < 0)
+			return;
+		ChunkNode n = this.root;
+		int start = 0;
+		while (true) {
+			if (pos < n.rank) {
+				n = n.left;
+			} else if (pos < n.rank + n.length) {
+				start += n.rank;
+				break;
+			} else {
+				start += n.rank + n.length;
+				pos -= n.rank + n.length;
+				n = n.right;
+			}
+		}
+		if (n.length >= this.capacity / 2 || n.length == this.root.size)
+			return;
+		int end = start + n.length;
+		this.root = merge(this.root, end < this.root.size ? end : start, this.capacity);
+	}
+
+	/**
+	 *
+	 * merges the chunks on either side of position seam of the subtree rooted
+	 * at n into one, if they fit in one, and otherwise moves characters from
+	 * one to the other until they hold half each, as RopeNode does with its
+	 * children. Both are taken out of the tree and joined back in, so the
+	 * sizes and ranks above them are brought up to date on the way.
+	 *
+	 * @param n
+	 * @param seam
+	 *            the position where one chunk ends and the next starts
+	 * @param capacity
+	 * @return the root of the subtree after merging and rebalancing.
+	 */
+	private static ChunkNode merge(ChunkNode n, int seam, int capacity) {
+		ChunkNode[] parts = new ChunkNode[2];
+		SpanTree.split(n, seam, parts);
+		ChunkNode a = parts[0];
+		while (a.right != null)
+			a = a.right;
+		ChunkNode b = parts[1];
+		while (b.left != null)
+			b = b.left;
+		ChunkNode l = SpanTree.removeLast(parts[0]);
+		ChunkNode r = SpanTree.removeFirst(parts[1]);
+		if (a.length + b.length <= capacity) {
+			a.takeFirst(b, b.length);
+			return SpanTree.join(l, a, r);
+		}
+		int half = (a.length + b.length) / 2;
+		if (a.length < half)
+			a.takeFirst(b, half - a.length);
+		else
+			a.giveLast(b, a.length - half);
+		return SpanTree.join(l, a, SpanTree.insertFirst(r, b));
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		// en empty string always returns 0.
+		if (s.isEmpty())
+			return 0;
+		pos = Math.max(pos, 0);
+		if (pos >= this.size())
+			return -1;
+		this.flush();
+		return find(this.root, pos, 0, new KmpMatcher(s, false), s.length());
+	}
+
+	/**
+	 *
+	 * feeds matcher the characters of the subtree rooted at n from position pos
+	 * on, straight out of the chunks, on either side of each gap.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param first
+	 *            the position of the first character of n's subtree in the
+	 *            tree
+	 * @param matcher
+	 * @param length
+	 *            of the pattern
+	 * @return the position in the tree of the first occurrence, or -1.
+	 */
+	private static int find(ChunkNode n, int pos, int first, KmpMatcher matcher, int length) {
+		while (n != null) {
+			if (pos < n.rank) {
+				int found = find(n.left, pos, first, matcher, length);
+				if (found >= 0)
+					return found;
+			}
+			int start = first + n.rank;
+			int shift = n.chars.length - n.length;
+			for (int i = Math.max(pos - n.rank, 0); i < n.length; i++)
+				if (matcher.next(n.chars[i < n.gap ? i : i + shift]))
+					return start + i - length + 1;
+			pos -= n.rank + n.length;
+			first = start + n.length;
+			n = n.right;
+		}
+		return -1;
+	}
+
+	/**
+	 * Encodes the contents of this tree in charset and writes them to out,
+	 * chunk by chunk, straight from the chunks through one reused
+	 * buffer. Characters that charset cannot encode are replaced, as
+	 * String.getBytes() does. out is left open.
+	 *
+	 * @param out
+	 * @param charset
+	 * @throws IOException
+	 *             if out does
+	 */
+	public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+		ChannelWriter writer = new ChannelWriter(out, charset);
+		writeChunks(this.root, writer);
+		writer.finish();
+	}
+
+	/**
+	 *
+	 * writes the chunks of n's subtree in order, the characters before the gap
+	 * of each and then those after it.
+	 *
+	 * @param n
+	 * @param writer
+	 * @throws IOException
+	 *             if the channel of writer does
+	 */
+	private static void writeChunks(ChunkNode n, ChannelWriter writer) throws IOException {
+		while (n != null) {
+			writeChunks(n.left, writer);
+			writer.write(n.chars, 0, n.gap);
+			writer.write(n.chars, n.gap + n.chars.length - n.length, n.length - n.gap);
+			n = n.right;
+		}
+	}
+
+	/**
+	 * @return the root chunk, with the sizes and ranks up to date.
+	 */
+	ChunkNode getRoot() {
+		this.flush();
+		return this.root;
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		this.flush();
+		char[] result = new char[this.size()];
+		SpanTree.copyRange(this.root, 0, result.length, result, 0);
+		return new String(result);
+	}
+}
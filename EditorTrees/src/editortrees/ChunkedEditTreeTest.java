@@ -0,0 +1,281 @@
+package editortrees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for ChunkedEditTree. Small chunk capacities are used so that chunk
+ * splitting and removal happen often.
+ *
+ */
+public class ChunkedEditTreeTest {
+
+	@Test
+	public void testEmpty() {
+		ChunkedEditTree t = new ChunkedEditTree();
+		assertEquals("", t.toString());
+		assertEquals(0, t.size());
+		assertEquals(-1, t.height());
+	}
+
+	@Test
+	public void testAddAtEnd() {
+		ChunkedEditTree t = new ChunkedEditTree(4);
+		for (char c = 'a'; c <= 'z'; c++)
+			t.add(c);
+		assertEquals("abcdefghijklmnopqrstuvwxyz", t.toString());
+		assertEquals(26, t.size());
+		assertEquals('m', t.get(12));
+	}
+
+	@Test
+	public void testAddAtFront() {
+		ChunkedEditTree t = new ChunkedEditTree(3);
+		for (char c = 'a'; c <= 'j'; c++)
+			t.add(c, 0);
+		assertEquals("jihgfedcba", t.toString());
+	}
+
+	@Test
+	public void testStringConstructor() {
+		ChunkedEditTree t = new ChunkedEditTree("the quick brown fox", 5);
+		assertEquals("the quick brown fox", t.toString());
+		assertEquals(19, t.size());
+		assertEquals('q', t.get(4));
+		assertEquals("brown", t.get(10, 5));
+		assertEquals(2, t.height());
+	}
+
+	@Test
+	public void testCopyConstructor() {
+		ChunkedEditTree t = new ChunkedEditTree("abcdefgh", 2);
+		ChunkedEditTree copy = new ChunkedEditTree(t);
+		t.add('x', 3);
+		assertEquals("abcxdefgh", t.toString());
+		assertEquals("abcdefgh", copy.toString());
+	}
+
+	@Test
+	public void testDelete() {
+		ChunkedEditTree t = new ChunkedEditTree("abcdefgh", 2);
+		assertEquals('d', t.delete(3));
+		assertEquals('c', t.delete(2));
+		assertEquals('a', t.delete(0));
+		assertEquals("befgh", t.toString());
+		assertEquals(5, t.size());
+	}
+
+	@Test
+	public void testDeleteRange() {
+		ChunkedEditTree t = new ChunkedEditTree("abcdefghijklmnop", 3);
+		ChunkedEditTree removed = t.delete(4, 7);
+		assertEquals("efghijk", removed.toString());
+		assertEquals("abcdlmnop", t.toString());
+	}
+
+	@Test
+	public void testSplitAndConcatenate() {
+		ChunkedEditTree t = new ChunkedEditTree("abcdefghijklmnop", 4);
+		ChunkedEditTree right = t.split(6);
+		assertEquals("abcdef", t.toString());
+		assertEquals("ghijklmnop", right.toString());
+		t.concatenate(right);
+		assertEquals("abcdefghijklmnop", t.toString());
+		assertEquals(0, right.size());
+	}
+
+	@Test
+	public void testOutOfBounds() {
+		ChunkedEditTree t = new ChunkedEditTree("abc");
+		try {
+			t.get(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.add('x', 4);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.delete(-1);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testConcatenateSelf() {
+		ChunkedEditTree t = new ChunkedEditTree("abc");
+		try {
+			t.concatenate(t);
+			fail("did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testFind() {
+		ChunkedEditTree t = new ChunkedEditTree("abcabcabd", 2);
+		assertEquals(0, t.find("abc"));
+		assertEquals(3, t.find("abc", 1));
+		assertEquals(6, t.find("abd"));
+		assertEquals(-1, t.find("abe"));
+		assertEquals(-1, t.find("abc", 9));
+		assertEquals(0, t.find("abc", -3));
+		// across chunks whose gaps are in the middle.
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+			sb.append((char) ('a' + i % 26));
+		t = new ChunkedEditTree(sb + "needle" + sb, 8);
+		for (int i = 0; i < 200; i++)
+			t.add('#', 3 + i * 50);
+		t.delete(4000);
+		String expected = t.toString();
+		assertEquals(expected.indexOf("needle"), t.find("needle"));
+		assertEquals(expected.indexOf("#d", 100), t.find("#d", 100));
+		assertEquals(-1, t.find("needle", expected.indexOf("needle") + 1));
+	}
+
+	@Test
+	public void testRandomEditsMatchStringBuilder() {
+		RandomEditsTest<ChunkedEditTree> edits = new RandomEditsTest<ChunkedEditTree>(new ChunkedEditTree(8),
+				ChunkedEditTree::add, ChunkedEditTree::delete, ChunkedEditTree::delete, ChunkedEditTree::split,
+				ChunkedEditTree::concatenate) {
+			@Override
+			void check(ChunkedEditTree t) {
+				assertFill(t);
+			}
+		};
+		edits.run(20000);
+		ChunkedEditTree t = edits.tree;
+		StringBuilder expected = edits.expected;
+		assertEquals(expected.length(), t.size());
+		for (int i = 0; i < expected.length(); i += 7)
+			assertEquals(expected.charAt(i), t.get(i));
+	}
+
+	// checks that every chunk is at least half full, unless it is the only
+	// one, and that the tree is balanced.
+	private static void assertFill(ChunkedEditTree t) {
+		ChunkNode root = t.getRoot();
+		if (root != null && root.length != root.size)
+			assertFill(root, t.capacity());
+	}
+
+	private static int assertFill(ChunkNode n, int capacity) {
+		if (n == null)
+			return -1;
+		assertTrue(n.length >= capacity / 2);
+		int hl = assertFill(n.left, capacity);
+		int hr = assertFill(n.right, capacity);
+		assertTrue(Math.abs(hl - hr) <= 1);
+		return Math.max(hl, hr) + 1;
+	}
+
+	@Test
+	public void testChunksStayHalfFull() {
+		// the round that used to leave a chunk for every few characters.
+		Random random = new Random(230);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			sb.append((char) ('a' + random.nextInt(26)));
+		String s = sb.toString();
+		ChunkedEditTree t = new ChunkedEditTree(s);
+		assertFill(t);
+		for (int i = 0; i < 50000; i++) {
+			int pos = 1 + random.nextInt(s.length() - 1);
+			ChunkedEditTree right = t.split(pos);
+			assertFill(t);
+			assertFill(right);
+			t.concatenate(right);
+		}
+		assertFill(t);
+		assertEquals(s, t.toString());
+		// no more than twice as many chunks as when full, so at most about
+		// 1.44 times as tall as the AVL tree of those.
+		assertTrue(t.height() <= 1.44 * Math.log(2 * s.length() / t.capacity() + 2) / Math.log(2));
+		// deleting most of it, a character at a time and in ranges.
+		StringBuilder expected = new StringBuilder(s);
+		while (expected.length() > 1000) {
+			int pos = random.nextInt(expected.length() - 100);
+			if (random.nextBoolean()) {
+				t.delete(pos, 50);
+				expected.delete(pos, pos + 50);
+			} else {
+				for (int i = 0; i < 50; i++)
+					t.delete(pos);
+				expected.delete(pos, pos + 50);
+			}
+		}
+		assertFill(t);
+		assertEquals(expected.toString(), t.toString());
+	}
+
+	@Test
+	public void testTypingBurstsWithReads() {
+		Random random = new Random(230);
+		ChunkedEditTree t = new ChunkedEditTree("the quick brown fox jumps over the lazy dog", 8);
+		StringBuilder expected = new StringBuilder(t.toString());
+		int caret = 10;
+		for (int i = 0; i < 20000; i++) {
+			int op = random.nextInt(20);
+			if (op < 12) {
+				char c = (char) ('a' + random.nextInt(26));
+				t.add(c, caret);
+				expected.insert(caret++, c);
+			} else if (op < 16 && caret > 0) {
+				// backspace, then sometimes the delete key.
+				assertEquals(expected.charAt(--caret), t.delete(caret));
+				expected.deleteCharAt(caret);
+				if (op == 15 && caret < expected.length()) {
+					assertEquals(expected.charAt(caret), t.delete(caret));
+					expected.deleteCharAt(caret);
+				}
+			} else if (op < 18) {
+				caret = Math.max(0, Math.min(expected.length(), caret + random.nextInt(11) - 5));
+			} else if (op < 19) {
+				caret = random.nextInt(expected.length() + 1);
+			} else if (expected.length() > 0) {
+				int pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), t.get(pos));
+			}
+			assertEquals(expected.length(), t.size());
+		}
+		assertEquals(expected.toString(), t.toString());
+		ChunkedEditTree copy = new ChunkedEditTree(t);
+		assertEquals(expected.toString(), copy.toString());
+		ChunkedEditTree right = t.split(expected.length() / 2);
+		assertEquals(expected.substring(expected.length() / 2), right.toString());
+	}
+
+	@Test
+	public void testWriteToChannel() throws IOException {
+		// a surrogate pair cut in two by the end of a chunk.
+		String s = "ab\u00E9\uD83D\uDE00\u20ACcd\uD83D\uDE00efg";
+		ChunkedEditTree t = new ChunkedEditTree(s, 5);
+		t.add('x', 3);
+		t.delete(9);
+		String expected = t.toString();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		t.writeTo(Channels.newChannel(out), StandardCharsets.UTF_8);
+		assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+		out.reset();
+		new ChunkedEditTree().writeTo(Channels.newChannel(out), StandardCharsets.UTF_8);
+		assertEquals(0, out.size());
+	}
+}
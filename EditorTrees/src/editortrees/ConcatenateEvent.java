@@ -0,0 +1,17 @@
+package editortrees;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by EditTree.concatenate().
+ *
+ */
+@Name("editortrees.Concatenate")
+@Label("Concatenate")
+@Threshold("20 ms")
+final class ConcatenateEvent extends EditTreeEvent {
+	@Label("Size Appended")
+	int appended;
+}
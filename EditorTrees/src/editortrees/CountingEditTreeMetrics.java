@@ -0,0 +1,155 @@
+package editortrees;
+
+import java.util.Arrays;
+
+/**
+ * EditTreeMetrics that counts rotations, joins and operations, and keeps for
+ * each kind of operation its total and greatest depth and a histogram of its
+ * latencies. Bucket i of a histogram counts the operations that took from
+ * 2^i up to 2^(i+1) nanoseconds; bucket 0 also counts those that took none.
+ *
+ * Not thread-safe, like EditTree itself; trees edited from different threads
+ * need a CountingEditTreeMetrics each.
+ *
+ */
+public class CountingEditTreeMetrics implements EditTreeMetrics {
+	public static final int BUCKETS = 64;
+
+	private long singleRotations;
+	private long doubleRotations;
+	private long joins;
+	private final long[] counts = new long[Operation.values().length];
+	private final long[] totalDepths = new long[Operation.values().length];
+	private final int[] maxDepths = new int[Operation.values().length];
+	private final long[][] latencies = new long[Operation.values().length][BUCKETS];
+
+	@Override
+	public void singleRotation() {
+		this.singleRotations++;
+	}
+
+	@Override
+	public void doubleRotation() {
+		this.doubleRotations++;
+	}
+
+	@Override
+	public void join() {
+		this.joins++;
+	}
+
+	@Override
+	public long start() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void finish(Operation operation, int depth, long start) {
+		long elapsed = System.nanoTime() - start;
+		int i = operation.ordinal();
+		this.counts[i]++;
+		this.totalDepths[i] += depth;
+		this.maxDepths[i] = Math.max(this.maxDepths[i], depth);
+		this.latencies[i][bucket(elapsed)]++;
+	}
+
+	private static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+	}
+
+	/**
+	 * @return the number of single rotations.
+	 */
+	public long singleRotations() {
+		return this.singleRotations;
+	}
+
+	/**
+	 * @return the number of double rotations.
+	 */
+	public long doubleRotations() {
+		return this.doubleRotations;
+	}
+
+	/**
+	 * @return the number of joins.
+	 */
+	public long joins() {
+		return this.joins;
+	}
+
+	/**
+	 * @param operation
+	 * @return how many times operation was done.
+	 */
+	public long count(Operation operation) {
+		return this.counts[operation.ordinal()];
+	}
+
+	/**
+	 * @param operation
+	 * @return the mean depth operation walked to, or 0 if it was never done.
+	 */
+	public double meanDepth(Operation operation) {
+		long count = this.count(operation);
+		return count == 0 ? 0 : this.totalDepths[operation.ordinal()] / (double) count;
+	}
+
+	/**
+	 * @param operation
+	 * @return the greatest depth operation walked to.
+	 */
+	public int maxDepth(Operation operation) {
+		return this.maxDepths[operation.ordinal()];
+	}
+
+	/**
+	 * @param operation
+	 * @return a copy of the latency histogram of operation.
+	 */
+	public long[] latencyHistogram(Operation operation) {
+		return this.latencies[operation.ordinal()].clone();
+	}
+
+	/**
+	 * @param operation
+	 * @param fraction
+	 *            between 0 and 1, e.g. 0.99 for the 99th percentile
+	 * @return a latency, in nanoseconds, that at least fraction of the times
+	 *         operation was done took no longer than, rounded up to the end
+	 *         of its histogram bucket; 0 if it was never done.
+	 * @throws IllegalArgumentException
+	 *             if fraction is not between 0 and 1
+	 */
+	public long latencyAtMost(Operation operation, double fraction) throws IllegalArgumentException {
+		if (!(fraction >= 0 && fraction <= 1))
+			throw new IllegalArgumentException();
+		long count = this.count(operation);
+		if (count == 0)
+			return 0;
+		long wanted = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		long[] histogram = this.latencies[operation.ordinal()];
+		for (int i = 0; i < BUCKETS - 1; i++) {
+			seen += histogram[i];
+			if (seen >= wanted)
+				return (1L << (i + 1)) - 1;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * sets every count back to zero.
+	 */
+	public void reset() {
+		this.singleRotations = 0;
+		this.doubleRotations = 0;
+		this.joins = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			this.counts[i] = 0;
+			this.totalDepths[i] = 0;
+			this.maxDepths[i] = 0;
+			Arrays.fill(this.latencies[i], 0);
+		}
+	}
+}
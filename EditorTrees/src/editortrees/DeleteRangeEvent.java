@@ -0,0 +1,20 @@
+package editortrees;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by EditTree.delete(int, int).
+ *
+ */
+@Name("editortrees.DeleteRange")
+@Label("Delete Range")
+@Threshold("20 ms")
+final class DeleteRangeEvent extends EditTreeEvent {
+	@Label("Start")
+	int start;
+
+	@Label("Length")
+	int length;
+}
@@ -1,15 +1,50 @@
 package editortrees;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+
+import editortrees.EditTreeMetrics.Operation;
+import editortrees.Node.Code;
 
 // A height-balanced binary tree with rank that could be the basis for a text editor.
+// Its balancing is always AVL; BalancedEditTree is the tree that takes a BalancingStrategy.
 
 public class EditTree {
 
 	private Node root;
 	public final Node NULL_NODE = new NullNode(this);
 	private int totalRotationCount;
+	// kept up to date by every operation, so that neither has to be measured.
+	private int size;
+	private int height;
+	// the height of the tree most recently built by Node.join().
+	int joinedHeight;
+	// how many nodes the most recent Node.add(), Node.delete() or Node.join()
+	// walked through on its way down.
+	int depth;
+	// told about rotations and joins by the nodes, and about operations here.
+	EditTreeMetrics metrics = EditTreeMetrics.NONE;
+	// counts the changes to this tree, so that a cursor can tell whether the
+	// tree was changed by anything but itself.
+	int modCount;
+	// receives the element removed by delete(int), so that no container has to
+	// be created per call.
+	private final DropBox box = new DropBox('`');
+	// nodes removed by delete(int), chained through their parent fields, kept
+	// so that the next add can reuse them instead of allocating.
+	private Node spare;
+	private int spareCount;
+	private static final int MAX_SPARE_NODES = 64;
+	// how many characters writeTo() copies out of the tree at a time.
+	private static final int EXPORT_CHUNK_SIZE = 8192;
+	// how many characters the find methods read out of the tree at a time.
+	private static final int SEARCH_CHUNK_SIZE = 4096;
 
 	/**
 	 * Construct an empty tree
@@ -17,6 +52,8 @@ public class EditTree {
 	public EditTree() {
 		this.root = this.NULL_NODE;
 		this.totalRotationCount = 0;
+		this.size = 0;
+		this.height = -1;
 	}
 
 	/**
@@ -28,6 +65,8 @@ public class EditTree {
 		this();
 		this.root = new Node(c, this);
 		this.totalRotationCount = 0;
+		this.size = 1;
+		this.height = 0;
 	}
 
 	/**
@@ -40,7 +79,75 @@ public class EditTree {
 	public EditTree(String s) {
 		// calling another constructor to create an empty tree.
 		this();
-		this.root = this.root.forConstructorUsingString(s);
+		BulkLoadEvent event = new BulkLoadEvent();
+		event.begin();
+		this.build(s);
+		this.loaded(event, this.size, 0, false);
+	}
+
+	/**
+	 * Create an EditTree whose toString is the characters of chars, in O(N)
+	 * time. The array is read in place, not copied, and is not kept.
+	 * 
+	 * @param chars
+	 */
+	public EditTree(char[] chars) {
+		this();
+		BulkLoadEvent event = new BulkLoadEvent();
+		event.begin();
+		this.build(CharBuffer.wrap(chars));
+		this.loaded(event, this.size, 0, false);
+	}
+
+	/**
+	 * Create an EditTree whose toString is s, building the two halves of each
+	 * large enough range as separate tasks of pool. The tree has the same
+	 * shape as one built by EditTree(String).
+	 * 
+	 * @param s
+	 * @param pool
+	 */
+	public EditTree(CharSequence s, ForkJoinPool pool) {
+		this();
+		BulkLoadEvent event = new BulkLoadEvent();
+		event.begin();
+		this.root = pool.invoke(new ParallelBuild(s, 0, s.length(), this));
+		this.size = s.length();
+		this.height = heightOfBuilt(this.size);
+		this.loaded(event, this.size, 0, true);
+	}
+
+	/**
+	 * 
+	 * builds s into this tree, which is empty, without recording an event, so
+	 * that an operation that builds a tree as one of its steps records only
+	 * its own.
+	 *
+	 * @param s
+	 */
+	private void build(CharSequence s) {
+		this.root = this.root.forConstructorUsingString(s, 0, s.length());
+		this.size = s.length();
+		this.height = heightOfBuilt(this.size);
+	}
+
+	/**
+	 * 
+	 * commits event, if the recording wants it, once length characters have
+	 * been loaded at pos.
+	 *
+	 * @param event
+	 * @param length
+	 * @param pos
+	 * @param parallel
+	 */
+	private void loaded(BulkLoadEvent event, int length, int pos, boolean parallel) {
+		if (!event.shouldCommit())
+			return;
+		event.length = length;
+		event.position = pos;
+		event.parallel = parallel;
+		event.report(this, 0);
 	}
 
 	/**
@@ -50,8 +157,23 @@ public class EditTree {
 	 * @param e
 	 */
 	public EditTree(EditTree e) {
+		this.metrics = e.metrics;
 		this.root = e.root.copy(this, this.NULL_NODE);
 		this.totalRotationCount = e.totalRotationCount;
+		this.size = e.size;
+		this.height = e.height;
+	}
+
+	/**
+	 * 
+	 * returns the height of a tree of n nodes built by splitting the string in
+	 * the middle, which is floor(log2(n)), or -1 when n is 0.
+	 *
+	 * @param n
+	 * @return the height of the built tree.
+	 */
+	static int heightOfBuilt(int n) {
+		return 31 - Integer.numberOfLeadingZeros(n);
 	}
 
 	/**
@@ -59,7 +181,7 @@ public class EditTree {
 	 * @return the height of this tree
 	 */
 	public int height() {
-		return this.root.height();
+		return this.height;
 	}
 
 	/**
@@ -73,6 +195,28 @@ public class EditTree {
 		return this.totalRotationCount;
 	}
 
+	/**
+	 * 
+	 * makes this tree report what it does to metrics. Copies of this tree and
+	 * the trees split off it report to the same metrics.
+	 *
+	 * @param metrics
+	 *            EditTreeMetrics.NONE to stop reporting
+	 */
+	public void setMetrics(EditTreeMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException();
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 
+	 * @return the metrics this tree reports to.
+	 */
+	public EditTreeMetrics getMetrics() {
+		return this.metrics;
+	}
+
 	/**
 	 * 
 	 * increase the totalRotationCount by 1.
@@ -82,13 +226,133 @@ public class EditTree {
 		this.totalRotationCount++;
 	}
 
+	/**
+	 * 
+	 * returns a single-node tree whose element is c, reusing a node removed
+	 * from this tree when one is available.
+	 *
+	 * @param c
+	 * @return the new node.
+	 */
+	Node newNode(char c) {
+		if (this.spare == null)
+			return new Node(c, this);
+		Node reused = this.spare;
+		this.spare = reused.parent;
+		this.spareCount--;
+		reused.reuse(c, this);
+		return reused;
+	}
+
+	/**
+	 * 
+	 * keeps a node that was just removed from the tree for newNode() to hand
+	 * out again.
+	 *
+	 * @param removed
+	 */
+	void recycle(Node removed) {
+		if (this.spareCount == MAX_SPARE_NODES)
+			return;
+		removed.left = null;
+		removed.right = null;
+		removed.parent = this.spare;
+		this.spare = removed;
+		this.spareCount++;
+	}
+
 	/**
 	 * return the string produced by an inorder traversal of this tree
 	 */
 	@Override
 	public String toString() {
-		return this.root.toString();
+		char[] chars = new char[this.size];
+		this.root.getChars(0, this.size, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Writes the contents of this tree to out, a chunk at a time, so that no
+	 * second copy of the whole text is made.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 *             if out does
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		char[] chunk = new char[Math.min(this.size, EXPORT_CHUNK_SIZE)];
+		CharBuffer view = CharBuffer.wrap(chunk);
+		for (int pos = 0; pos < this.size; pos += chunk.length) {
+			int length = Math.min(chunk.length, this.size - pos);
+			this.root.getChars(pos, length, chunk, 0);
+			out.append(view, 0, length);
+		}
+	}
 
+	/**
+	 * Writes the contents of this tree to out, a chunk at a time, so that no
+	 * second copy of the whole text is made.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 *             if out does
+	 */
+	public void writeTo(Writer out) throws IOException {
+		char[] chunk = new char[Math.min(this.size, EXPORT_CHUNK_SIZE)];
+		for (int pos = 0; pos < this.size; pos += chunk.length) {
+			int length = Math.min(chunk.length, this.size - pos);
+			this.root.getChars(pos, length, chunk, 0);
+			out.write(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * Encodes the contents of this tree in charset and writes them to out, a
+	 * chunk at a time through one reused buffer, so that neither a
+	 * second copy of the text nor its bytes are ever held whole. Characters
+	 * that charset cannot encode are replaced, as String.getBytes() does. out
+	 * is left open.
+	 * 
+	 * @param out
+	 * @param charset
+	 * @throws IOException
+	 *             if out does
+	 */
+	public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+		ChannelWriter writer = new ChannelWriter(out, charset);
+		char[] chunk = new char[Math.min(this.size, EXPORT_CHUNK_SIZE)];
+		for (int pos = 0; pos < this.size; pos += chunk.length) {
+			int length = Math.min(chunk.length, this.size - pos);
+			this.root.getChars(pos, length, chunk, 0);
+			writer.write(chunk, 0, length);
+		}
+		writer.finish();
+	}
+
+	/**
+	 * Puts the contents of this tree into out at its position, and advances
+	 * the position past them. When out is backed by an array the characters
+	 * are copied straight into it.
+	 * 
+	 * @param out
+	 * @throws BufferOverflowException
+	 *             if out does not have room for the whole tree; nothing is
+	 *             written then.
+	 */
+	public void writeTo(CharBuffer out) throws BufferOverflowException {
+		if (out.remaining() < this.size)
+			throw new BufferOverflowException();
+		if (out.hasArray()) {
+			this.root.getChars(0, this.size, out.array(), out.arrayOffset() + out.position());
+			out.position(out.position() + this.size);
+			return;
+		}
+		char[] chunk = new char[Math.min(this.size, EXPORT_CHUNK_SIZE)];
+		for (int pos = 0; pos < this.size; pos += chunk.length) {
+			int length = Math.min(chunk.length, this.size - pos);
+			this.root.getChars(pos, length, chunk, 0);
+			out.put(chunk, 0, length);
+		}
 	}
 
 	/**
@@ -139,11 +403,9 @@ public class EditTree {
 		// you!
 		// 2. Unit tests are cumulative, and many things are based on add(), so
 		// make sure that you get this one correct.
-		if (this.root.equals(this.NULL_NODE)) {
-			this.root = new Node(c, this);
-		} else {
-			this.root = this.root.add(c);
-		}
+		long start = this.metrics.start();
+		this.insert(c, this.size);
+		this.metrics.finish(Operation.ADD, this.depth, start);
 	}
 
 	/**
@@ -158,19 +420,85 @@ public class EditTree {
 	public void add(char c, int pos) throws IndexOutOfBoundsException {
 		if (pos < 0 || pos > this.size())
 			throw new IndexOutOfBoundsException();
-		if (this.root.equals(this.NULL_NODE)) {
-			this.root = new Node(c, this);
+		long start = this.metrics.start();
+		this.insert(c, pos);
+		this.metrics.finish(Operation.ADD, this.depth, start);
+	}
+
+	private void insert(char c, int pos) {
+		this.modCount++;
+		if (this.size == 0) {
+			this.root = this.newNode(c);
+			this.size = 1;
+			this.height = 0;
+			this.depth = 0;
 		} else {
+			Node oldRoot = this.root;
+			Code oldBalance = oldRoot.balance;
 			this.root = this.root.add(c, pos);
+			this.grown(oldRoot, oldBalance);
+		}
+	}
+
+	/**
+	 * Inserts all of s so that its first character ends up at position pos,
+	 * in O(length of s + log N): s is built into a balanced tree of its own,
+	 * which is then spliced in with split and concatenate.
+	 * 
+	 * @param s
+	 *            characters to add
+	 * @param pos
+	 *            position of the first of them once added
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or too large for this tree
+	 */
+	public void add(String s, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		if (s.isEmpty())
+			return;
+		BulkLoadEvent event = new BulkLoadEvent();
+		event.begin();
+		int rotations = this.totalRotationCount;
+		EditTree inserted = new EditTree();
+		inserted.build(s);
+		if (pos == this.size) {
+			this.concatenate(inserted);
+		} else {
+			EditTree rest = this.split(pos);
+			this.concatenate(inserted);
+			this.concatenate(rest);
+			// the joins that built rest counted their rotations on rest.
+			rotations -= rest.totalRotationCount;
+		}
+		if (event.shouldCommit()) {
+			event.length = s.length();
+			event.position = pos;
+			event.report(this, this.totalRotationCount - rotations);
 		}
 	}
 
+	/**
+	 * 
+	 * updates size and height after one node was added. A rotation after an
+	 * insertion restores the old height, so the tree only got taller if the
+	 * root is unchanged and was tipped by the insertion.
+	 *
+	 * @param oldRoot
+	 * @param oldBalance
+	 */
+	private void grown(Node oldRoot, Code oldBalance) {
+		this.size++;
+		if (this.root == oldRoot && oldBalance.equals(Code.SAME) && !this.root.balance.equals(Code.SAME))
+			this.height++;
+	}
+
 	/**
 	 * 
 	 * @return the number of nodes in this tree
 	 */
 	public int size() {
-		return this.root.size(); // replace by a real calculation.
+		return this.size;
 	}
 
 	/**
@@ -188,13 +516,88 @@ public class EditTree {
 		// *successor*.
 		if (pos < 0 || pos + 1 > this.size() || this.size() == 0)
 			throw new IndexOutOfBoundsException();
-		DropBox box = new DropBox('`');
-		this.root = this.root.delete(pos, box);
-		return box.getElement(); // replace by a real calculation.
+		long start = this.metrics.start();
+		char deleted = this.remove(pos);
+		this.metrics.finish(Operation.DELETE, this.depth, start);
+		return deleted;
 	}
 
 	/**
-	 * This method operates in O(length*log N), where N is the size of this
+	 * 
+	 * deletes the character at pos, which is known to be in the tree, without
+	 * reporting it to the metrics.
+	 *
+	 * @param pos
+	 * @return the character that is deleted
+	 */
+	private char remove(int pos) {
+		Node oldRoot = this.root;
+		Code oldBalance = oldRoot.balance;
+		this.root = this.root.delete(pos, this.box);
+		return this.shrunk(oldRoot, oldBalance);
+	}
+
+	/**
+	 * 
+	 * adds c right before next, or right after it if after is true and next is
+	 * the last node, for a cursor at next.
+	 *
+	 * @param next
+	 * @param c
+	 * @param after
+	 */
+	void add(Node next, char c, boolean after) {
+		long start = this.metrics.start();
+		this.modCount++;
+		Node oldRoot = this.root;
+		Code oldBalance = oldRoot.balance;
+		this.root = this.root.add(next, c, after);
+		this.grown(oldRoot, oldBalance);
+		this.metrics.finish(Operation.ADD, this.depth, start);
+	}
+
+	/**
+	 * 
+	 * deletes the node target, for a cursor at it.
+	 *
+	 * @param target
+	 * @return the character that is deleted
+	 */
+	char delete(Node target) {
+		long start = this.metrics.start();
+		Node oldRoot = this.root;
+		Code oldBalance = oldRoot.balance;
+		this.root = this.root.delete(target, this.box);
+		char deleted = this.shrunk(oldRoot, oldBalance);
+		this.metrics.finish(Operation.DELETE, this.depth, start);
+		return deleted;
+	}
+
+	/**
+	 * 
+	 * updates size and height after one node was deleted.
+	 *
+	 * @param oldRoot
+	 * @param oldBalance
+	 * @return the character that was deleted.
+	 */
+	private char shrunk(Node oldRoot, Code oldBalance) {
+		this.modCount++;
+		this.size--;
+		// the tree got shorter if its root was tipped and is now balanced, or
+		// if the root was replaced, by its only child or by a rotation, and
+		// the new root is balanced.
+		if (this.size == 0) {
+			this.root = this.NULL_NODE;
+			this.height = -1;
+		} else if (this.root.balance.equals(Code.SAME) && (this.root != oldRoot || !oldBalance.equals(Code.SAME))) {
+			this.height--;
+		}
+		return this.box.getElement();
+	}
+
+	/**
+	 * This method operates in O(length + log N), where N is the size of this
 	 * tree.
 	 * 
 	 * @param pos
@@ -207,13 +610,181 @@ public class EditTree {
 	 *             within this tree.
 	 */
 	public String get(int pos, int length) throws IndexOutOfBoundsException {
-		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < length; i++) {
-			// can directly call get(pos) which return the element at each
-			// position.
-			sb.append(this.get(pos + i));
-		}
-		return sb.toString();
+		if (length == 0)
+			return "";
+		if (pos < 0 || length < 0 || pos + length > this.size)
+			throw new IndexOutOfBoundsException();
+		char[] chars = new char[length];
+		this.root.getChars(pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Copies the characters at positions srcBegin to srcEnd - 1 into dst,
+	 * starting at dstBegin, like String.getChars(). This operates in
+	 * O(srcEnd - srcBegin + log N) and creates nothing on the heap.
+	 * 
+	 * @param srcBegin
+	 *            position of the first character to copy
+	 * @param srcEnd
+	 *            position after the last character to copy
+	 * @param dst
+	 *            the array to copy into
+	 * @param dstBegin
+	 *            where in dst the first character goes
+	 * @throws IndexOutOfBoundsException
+	 *             if srcBegin is negative or greater than srcEnd, srcEnd is
+	 *             greater than the size of this tree, or the characters do
+	 *             not fit in dst from dstBegin.
+	 */
+	public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) throws IndexOutOfBoundsException {
+		if (srcBegin < 0 || srcBegin > srcEnd || srcEnd > this.size || dstBegin < 0
+				|| dstBegin + (srcEnd - srcBegin) > dst.length)
+			throw new IndexOutOfBoundsException();
+		this.root.getChars(srcBegin, srcEnd - srcBegin, dst, dstBegin);
+	}
+
+	/**
+	 * Lines are separated by '\n', so a tree holding k of them has k + 1
+	 * lines, the last of which may be empty. This operates in O(1), from the
+	 * newline count each node keeps for its subtree.
+	 * 
+	 * @return the number of lines in this tree
+	 */
+	public int lineCount() {
+		return this.root.newlines + 1;
+	}
+
+	/**
+	 * This operates in O(log N).
+	 * 
+	 * @param line
+	 *            number of the line, counting from 0
+	 * @return the position of the first character of the line, which is the
+	 *         size of this tree for an empty last line
+	 * @throws IndexOutOfBoundsException
+	 *             if line is negative or not less than lineCount()
+	 */
+	public int lineStartOffset(int line) throws IndexOutOfBoundsException {
+		if (line < 0 || line >= this.lineCount())
+			throw new IndexOutOfBoundsException();
+		if (line == 0)
+			return 0;
+		return this.root.newlinePosition(line - 1) + 1;
+	}
+
+	/**
+	 * This operates in O(log N).
+	 * 
+	 * @param pos
+	 *            a position in this tree, from 0 up to its size
+	 * @return the number of the line, counting from 0, that pos is in; a
+	 *         newline is in the line it ends
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or greater than the size of this tree
+	 */
+	public int lineOf(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		return this.root.newlinesBefore(pos);
+	}
+
+	/**
+	 * This operates in O(length of the line + log N).
+	 * 
+	 * @param line
+	 *            number of the line, counting from 0
+	 * @return the characters of the line, without the newline that ends it
+	 * @throws IndexOutOfBoundsException
+	 *             if line is negative or not less than lineCount()
+	 */
+	public String getLine(int line) throws IndexOutOfBoundsException {
+		int start = this.lineStartOffset(line);
+		int end = line + 1 == this.lineCount() ? this.size : this.root.newlinePosition(line);
+		return this.get(start, end - start);
+	}
+
+	/**
+	 * Positions in this tree count chars, which are UTF-16 code units, so they
+	 * are UTF-16 offsets as they are. This and the methods below translate
+	 * them to and from offsets in the UTF-8 encoding of the tree, from the
+	 * UTF-8 length each node keeps for its subtree. An unpaired surrogate,
+	 * which UTF-8 cannot encode, counts as the one byte of the '?' that
+	 * writeTo() and String.getBytes() replace it with. Byte offsets are longs,
+	 * since a tree of int-many chars can take up to three times as many bytes.
+	 * 
+	 * @return the length of this tree in UTF-8
+	 */
+	public long utf8Length() {
+		return this.root.bytes;
+	}
+
+	/**
+	 * This operates in O(log N).
+	 * 
+	 * @param index
+	 *            a position in this tree, from 0 up to its size
+	 * @return the offset in the UTF-8 encoding of this tree at which the
+	 *         character at index starts, or one byte into the encoding of a
+	 *         surrogate pair if index is between its halves
+	 * @throws IndexOutOfBoundsException
+	 *             if index is negative or greater than the size of this tree
+	 */
+	public long charIndexToByteOffset(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index > this.size)
+			throw new IndexOutOfBoundsException();
+		return this.root.bytesBefore(index);
+	}
+
+	/**
+	 * This operates in O(log N).
+	 * 
+	 * @param byteOffset
+	 *            an offset in the UTF-8 encoding of this tree, from 0 up to
+	 *            utf8Length()
+	 * @return the position of the character whose encoding starts at
+	 *         byteOffset, or the size of this tree if byteOffset is
+	 *         utf8Length()
+	 * @throws IndexOutOfBoundsException
+	 *             if byteOffset is negative or greater than utf8Length()
+	 * @throws IllegalArgumentException
+	 *             if byteOffset is inside the encoding of a character or of
+	 *             a surrogate pair
+	 */
+	public int byteOffsetToCharIndex(long byteOffset) throws IndexOutOfBoundsException, IllegalArgumentException {
+		if (byteOffset < 0 || byteOffset > this.utf8Length())
+			throw new IndexOutOfBoundsException();
+		int index = this.root.positionOfByte(byteOffset);
+		if (index < 0 || (index > 0 && index < this.size && Character.isLowSurrogate(this.root.get(index))
+				&& Character.isHighSurrogate(this.root.get(index - 1))))
+			throw new IllegalArgumentException("byte offset " + byteOffset + " is inside a character");
+		return index;
+	}
+
+	/**
+	 * This operates in O(length + log N), where length is the number of
+	 * characters read.
+	 * 
+	 * @param byteOffset
+	 *            offset in the UTF-8 encoding of this tree of the first byte
+	 *            to read
+	 * @param byteLength
+	 *            number of bytes to read
+	 * @return the characters whose UTF-8 encoding is those bytes
+	 * @throws IndexOutOfBoundsException
+	 *             if byteOffset or byteLength is negative, or the bytes go
+	 *             past utf8Length()
+	 * @throws IllegalArgumentException
+	 *             if either end of the bytes is inside the encoding of a
+	 *             character
+	 */
+	public String getByteRange(long byteOffset, long byteLength)
+			throws IndexOutOfBoundsException, IllegalArgumentException {
+		if (byteOffset < 0 || byteLength < 0 || byteOffset + byteLength > this.utf8Length())
+			throw new IndexOutOfBoundsException();
+		int start = this.byteOffsetToCharIndex(byteOffset);
+		int end = this.byteOffsetToCharIndex(byteOffset + byteLength);
+		return this.get(start, end - start);
 	}
 
 	/**
@@ -235,9 +806,17 @@ public class EditTree {
 		if (start < 0 || start + length >= this.size())
 			throw new IndexOutOfBoundsException(
 					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		DeleteRangeEvent event = new DeleteRangeEvent();
+		event.begin();
+		int rotations = this.totalRotationCount;
 		EditTree t2 = this.split(start);
 		EditTree t3 = t2.split(length);
 		this.concatenate(t3);
+		if (event.shouldCommit()) {
+			event.start = start;
+			event.length = length;
+			event.report(this, this.totalRotationCount - rotations + t2.totalRotationCount + t3.totalRotationCount);
+		}
 		return t2;
 	}
 
@@ -254,25 +833,45 @@ public class EditTree {
 		if (this == other)
 			throw new IllegalArgumentException();
 
-		if (this.height() >= other.height()) {
-			try {
-				// find out the leftmost element of the other tree.
-				Node q = new Node(other.delete(0), this);
-				this.root = this.root.takeFromTheOtherTree(q, other.root, this.height(), other.height());
-				other.root = this.NULL_NODE;
-			} catch (IndexOutOfBoundsException e) {
-				// do nothing
-			}
+		if (other.size == 0)
+			return;
+		this.modCount++;
+		other.modCount++;
+		ConcatenateEvent event = new ConcatenateEvent();
+		event.begin();
+		int rotations = this.totalRotationCount;
+		int appended = other.size;
+		long start = this.metrics.start();
+		if (this.size == 0) {
+			other.root.detach(this);
+			this.root = other.root;
+			this.size = other.size;
+			this.height = other.height;
+			this.depth = 0;
 		} else {
-			try {
-				// find out the rightmost element of this tree.
-				Node q = new Node(this.delete(this.size() - 1), this);
-				this.root = other.root.joinTheOtherTree(q, this.root, this.height(), other.height(), this.size());
-			} catch (IndexOutOfBoundsException e) {
-				this.root = other.root;
-			}
-			other.root = this.NULL_NODE;
+			// the last node of this tree joins the two trees together. A low
+			// surrogate's UTF-8 length depends on the character before it, so
+			// those of q and of other's first character are set for where they
+			// end up.
+			Node q = this.newNode(this.remove(this.size - 1));
+			if (this.size > 0 && Character.isLowSurrogate(q.element))
+				q.setWidth(Node.utf8Length(q.element, this.root.get(this.size - 1)));
+			Node first = other.root;
+			while (!(first.left instanceof NullNode))
+				first = first.left;
+			Node.fitWidth(first, q);
+			this.root = q.join(this.root, this.height, this.size, other.root, other.height, this);
+			this.size += other.size + 1;
+			this.height = this.joinedHeight;
+		}
+		this.metrics.finish(Operation.CONCATENATE, this.depth, start);
+		if (event.shouldCommit()) {
+			event.appended = appended;
+			event.report(this, this.totalRotationCount - rotations);
 		}
+		other.root = other.NULL_NODE;
+		other.size = 0;
+		other.height = -1;
 	}
 
 	/**
@@ -289,52 +888,108 @@ public class EditTree {
 	public EditTree split(int pos) throws IndexOutOfBoundsException {
 		if (pos < 0 || pos + 1 > this.size() || this.size() == 0)
 			throw new IndexOutOfBoundsException();
+		this.modCount++;
+		SplitEvent event = new SplitEvent();
+		event.begin();
+		int rotations = this.totalRotationCount;
+		int splitAt = pos;
+		long start = this.metrics.start();
 
-		Stack<Node> path = new Stack<Node>();
 		Node current = this.root;
+		// the height of current's subtree, worked out from the balance codes
+		// on the way down.
+		int h = this.height;
+		int depth = 1;
 
 		// find the split node.
 		while (current.rank != pos) {
-			path.push(current);
+			depth++;
 			if (pos < current.rank) {
+				h -= current.balance.equals(Code.RIGHT) ? 2 : 1;
 				current = current.left;
 			} else {
+				h -= current.balance.equals(Code.LEFT) ? 2 : 1;
 				pos = pos - (current.rank + 1);
 				current = current.right;
 			}
 		}
 
-		// split up the old tree into two new trees.
-		EditTree leftTree = new EditTree();
+		// split up the old tree into two new trees. The split node becomes
+		// the leftmost node of the right tree, because all the nodes at
+		// position >= pos need to be returned.
 		EditTree rightTree = new EditTree();
-		leftTree.root = current.left;
-		rightTree.root = current.right;
-		// set current to be the paste node (Node q).
-		current.left = this.NULL_NODE;
-		current.right = this.NULL_NODE;
-		// insert current to be the leftmost node in the right tree, because all
-		// the nodes at position >= pos need to be returned.
-		rightTree.root = rightTree.root.joinTheOtherTree(current, this.NULL_NODE, -1, rightTree.height(), 0);
-
-		while (!path.isEmpty()) {
-			Node child = current;
-			current = path.pop();
-			if (child.equals(current.right)) {
-				leftTree.root = leftTree.root.joinTheOtherTree(current, current.left, current.left.height(),
-						leftTree.root.height(), current.left.size());
+		rightTree.metrics = this.metrics;
+		Node leftRoot = current.left;
+		int leftHeight = h - (current.balance.equals(Code.RIGHT) ? 2 : 1);
+		int rightHeight = h - (current.balance.equals(Code.LEFT) ? 2 : 1);
+		// the position of the split within the subtree being climbed out of.
+		int offset = current.rank;
+		// the way back up is through the parent links. A join leaves the
+		// nodes above the node it is given alone, so only which side that
+		// node was on has to be noted before it is joined.
+		Node next = current.parent;
+		boolean fromRight = isRightChild(current);
+		Node first = current;
+		Node rightRoot = current.join(rightTree.NULL_NODE, -1, 0, current.right, rightHeight, rightTree);
+		rightHeight = rightTree.joinedHeight;
+
+		while (!(next instanceof NullNode)) {
+			current = next;
+			next = current.parent;
+			boolean wasFromRight = fromRight;
+			fromRight = isRightChild(current);
+			if (wasFromRight) {
+				// current and its left subtree come before the split.
+				h += current.balance.equals(Code.LEFT) ? 2 : 1;
+				int height = h - (current.balance.equals(Code.RIGHT) ? 2 : 1);
+				offset += current.rank + 1;
+				leftRoot = current.join(current.left, height, current.rank, leftRoot, leftHeight, this);
+				leftHeight = this.joinedHeight;
 			} else {
-				rightTree.root = current.right.joinTheOtherTree(current, rightTree.root, rightTree.root.height(),
-						current.right.height(), rightTree.size());
+				// current and its right subtree come after the split, and the
+				// right tree so far is what its left subtree held from the
+				// split on.
+				h += current.balance.equals(Code.RIGHT) ? 2 : 1;
+				int height = h - (current.balance.equals(Code.LEFT) ? 2 : 1);
+				rightRoot = current.join(rightRoot, rightHeight, current.rank - offset, current.right, height,
+						rightTree);
+				rightHeight = rightTree.joinedHeight;
 			}
 		}
-		// replace the current tree with the leftTree, so that it can return the
-		// rightTree, which contains all the node at position >= pos.
-		this.root = leftTree.root;
+		// replace the current tree with the left part, so that it can return
+		// the right tree, which contains all the node at position >= pos.
+		int rightSize = this.size - offset;
+		rightTree.root = rightRoot;
+		rightTree.size = rightSize;
+		rightTree.height = rightHeight;
+		if (leftHeight < 0) {
+			this.root = this.NULL_NODE;
+		} else {
+			// without any ancestors to join, the left part is still a child
+			// of the split node.
+			leftRoot.detach(this);
+			this.root = leftRoot;
+		}
+		this.size -= rightSize;
+		this.height = leftHeight;
+		// the first character of the right tree has none before it any more.
+		Node.fitWidth(first, rightTree.NULL_NODE);
+		this.metrics.finish(Operation.SPLIT, depth, start);
+		if (event.shouldCommit()) {
+			event.position = splitAt;
+			event.splitOff = rightSize;
+			event.report(this, this.totalRotationCount - rotations + rightTree.totalRotationCount);
+		}
 		return rightTree;
 	}
 
+	private static boolean isRightChild(Node node) {
+		return !(node.parent instanceof NullNode) && node.parent.right == node;
+	}
+
 	/**
-	 * Don't worry if you can't do this one efficiently.
+	 * Searches the tree in order without making it into a String, in O(log N)
+	 * to reach the start and O(N + length of s) in all.
 	 * 
 	 * @param s
 	 *            the string to look for
@@ -355,31 +1010,159 @@ public class EditTree {
 	 *         not occur before position pos; -1 if s does not occur
 	 */
 	public int find(String s, int pos) {
+		FindEvent event = new FindEvent();
+		event.begin();
+		int found = this.search(s, pos);
+		this.searched(event, "find", s, pos, found);
+		return found;
+	}
+
+	private int search(String s, int pos) {
 		// en empty string always returns 0.
 		if (s.isEmpty())
 			return 0;
-		int startIndex = -1;
-		int endIndex = 0;
-		String treeToString = this.toString();
-		for (int i = pos; i < treeToString.length(); i++) {
-			// "char matches" case.
-			if (treeToString.charAt(i) == s.charAt(endIndex)) {
-				// if the first character matches, set startIndex to 0;
-				if (endIndex == 0) {
-					startIndex = i;
-				}
-				endIndex++;
-			} else {
-				// once any character does not match, reset two index variables.
-				startIndex = -1;
-				endIndex = 0;
-			}
-			// return the startIndex when all character matches.
-			if (endIndex == s.length()) {
-				return startIndex;
-			}
+		KmpMatcher matcher = new KmpMatcher(s, false);
+		char[] window = new char[Math.min(this.size, SEARCH_CHUNK_SIZE)];
+		for (int start = Math.max(pos, 0); start < this.size; start += window.length) {
+			int length = Math.min(window.length, this.size - start);
+			this.root.getChars(start, length, window, 0);
+			for (int i = 0; i < length; i++)
+				if (matcher.next(window[i]))
+					return start + i - s.length() + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * 
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the last occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int findLast(String s) {
+		return this.findLast(s, this.size);
+	}
+
+	/**
+	 * Searches the tree backwards from pos, like String.lastIndexOf().
+	 * 
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the last position in the tree where an occurrence may start
+	 * @return the position in this tree of the last occurrence of s that does
+	 *         not start after position pos; -1 if s does not occur
+	 */
+	public int findLast(String s, int pos) {
+		FindEvent event = new FindEvent();
+		event.begin();
+		int found = this.searchBackward(s, pos);
+		this.searched(event, "findLast", s, pos, found);
+		return found;
+	}
+
+	private int searchBackward(String s, int pos) {
+		if (pos < 0)
+			return -1;
+		if (s.isEmpty())
+			return Math.min(pos, this.size);
+		KmpMatcher matcher = new KmpMatcher(s, true);
+		char[] window = new char[Math.min(this.size, SEARCH_CHUNK_SIZE)];
+		// the matcher is fed from the end, so a match is found at its first
+		// character.
+		for (int end = (int) Math.min((long) pos + s.length(), this.size); end > 0; end -= window.length) {
+			int length = Math.min(window.length, end);
+			int start = end - length;
+			this.root.getChars(start, length, window, 0);
+			for (int i = length - 1; i >= 0; i--)
+				if (matcher.next(window[i]))
+					return start + i;
 		}
-		return startIndex;
+		return -1;
+	}
+
+	/**
+	 * Finds every occurrence of s, overlapping ones included, in one pass over
+	 * the tree.
+	 * 
+	 * @param s
+	 *            the string to search for
+	 * @return the positions in this tree where s occurs, in increasing order.
+	 *         An empty string occurs at every position, the size of this tree
+	 *         included.
+	 */
+	public ArrayList<Integer> findAll(String s) {
+		FindEvent event = new FindEvent();
+		event.begin();
+		ArrayList<Integer> found = this.searchAll(s);
+		this.searched(event, "findAll", s, 0, found.size());
+		return found;
+	}
+
+	private ArrayList<Integer> searchAll(String s) {
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		if (s.isEmpty()) {
+			for (int i = 0; i <= this.size; i++)
+				found.add(i);
+			return found;
+		}
+		KmpMatcher matcher = new KmpMatcher(s, false);
+		char[] window = new char[Math.min(this.size, SEARCH_CHUNK_SIZE)];
+		for (int start = 0; start < this.size; start += window.length) {
+			int length = Math.min(window.length, this.size - start);
+			this.root.getChars(start, length, window, 0);
+			for (int i = 0; i < length; i++)
+				if (matcher.next(window[i]))
+					found.add(start + i - s.length() + 1);
+		}
+		return found;
+	}
+
+	/**
+	 * 
+	 * commits event, if the recording wants it, once a search for s from pos
+	 * is over.
+	 *
+	 * @param event
+	 * @param method
+	 * @param s
+	 * @param pos
+	 * @param result
+	 */
+	private void searched(FindEvent event, String method, String s, int pos, int result) {
+		if (!event.shouldCommit())
+			return;
+		event.method = method;
+		event.position = pos;
+		event.patternLength = s.length();
+		event.result = result;
+		event.report(this, 0);
+	}
+
+	/**
+	 * 
+	 * @return a view of the characters of this tree, read straight from the
+	 *         nodes, that java.util.regex and other CharSequence readers can
+	 *         use without the tree being copied into a String. It is good
+	 *         until the tree is next changed.
+	 */
+	public CharSequence asCharSequence() {
+		return new EditTreeCharSequence(this, 0, this.size);
+	}
+
+	/**
+	 * 
+	 * @param pos
+	 * @return a cursor at position pos, before the character there; pos may
+	 *         be the size of this tree, after the last character.
+	 * @throws IndexOutOfBoundsException
+	 *             if pos is negative or greater than the size of this tree
+	 */
+	public EditTreeCursor cursor(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size)
+			throw new IndexOutOfBoundsException();
+		return new EditTreeCursor(this, pos);
 	}
 
 	/**
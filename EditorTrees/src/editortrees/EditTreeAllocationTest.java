@@ -0,0 +1,93 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Checks that, once warmed up, typing and deleting single characters does not
+ * allocate anything on the heap, and that split allocates no more than the
+ * tree it returns.
+ *
+ */
+public class EditTreeAllocationTest {
+	private static final int DOCUMENT_SIZE = 1000;
+	private static final int WARM_UP_ROUNDS = 2000;
+	private static final int ROUNDS = 200;
+	// no more nodes than EditTree keeps for reuse are deleted in a row.
+	private static final int BURST = 32;
+
+	@Test
+	public void testAddAndDeleteDoNotAllocate() {
+		ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(bean.isThreadAllocatedMemorySupported());
+		bean.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		EditTree t = new EditTree();
+		for (int i = 0; i < DOCUMENT_SIZE; i++)
+			t.add((char) ('a' + i % 26));
+		Random random = new Random(230);
+		int[] positions = new int[BURST];
+
+		long deleteBytes = 0;
+		long addBytes = 0;
+		for (int round = 0; round < WARM_UP_ROUNDS + ROUNDS; round++) {
+			for (int i = 0; i < BURST; i++)
+				positions[i] = random.nextInt(DOCUMENT_SIZE - BURST);
+
+			long start = bean.getThreadAllocatedBytes(thread);
+			long overhead = bean.getThreadAllocatedBytes(thread) - start;
+			start = bean.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < BURST; i++)
+				t.delete(positions[i]);
+			long deleted = bean.getThreadAllocatedBytes(thread) - start - overhead;
+
+			start = bean.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < BURST; i++)
+				t.add('x', positions[i]);
+			long added = bean.getThreadAllocatedBytes(thread) - start - overhead;
+
+			if (round >= WARM_UP_ROUNDS) {
+				deleteBytes += deleted;
+				addBytes += added;
+			}
+		}
+		assertEquals(DOCUMENT_SIZE, t.size());
+		assertEquals("bytes allocated by delete(int)", 0, deleteBytes);
+		assertEquals("bytes allocated by add(char, int)", 0, addBytes);
+	}
+
+	@Test
+	public void testSplitAllocatesOnlyTheNewTree() {
+		ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(bean.isThreadAllocatedMemorySupported());
+		bean.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			sb.append((char) ('a' + i % 26));
+		EditTree t = new EditTree(sb.toString());
+		Random random = new Random(230);
+		long bytes = 0;
+		for (int round = 0; round < WARM_UP_ROUNDS + ROUNDS; round++) {
+			int pos = random.nextInt(t.size());
+			long start = bean.getThreadAllocatedBytes(thread);
+			t.concatenate(t.split(pos));
+			long allocated = bean.getThreadAllocatedBytes(thread) - start;
+			if (round >= WARM_UP_ROUNDS)
+				bytes += allocated;
+		}
+		assertEquals(sb.toString(), t.toString());
+		// an EditTree with its NullNode and DropBox, whatever the depth.
+		assertTrue("bytes allocated per split: " + bytes / ROUNDS, bytes / ROUNDS <= 256);
+	}
+}
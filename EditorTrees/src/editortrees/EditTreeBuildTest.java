@@ -0,0 +1,49 @@
+package editortrees;
+
+import static editortrees.RandomEditsTest.text;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for the constructors that build a tree from characters in one go.
+ *
+ */
+public class EditTreeBuildTest {
+
+	@Test
+	public void testCharArrayMatchesString() {
+		for (int n = 0; n < 70; n++) {
+			String s = text(n);
+			EditTree fromArray = new EditTree(s.toCharArray());
+			EditTree fromString = new EditTree(s);
+			assertEquals(fromString.toDebugString(), fromArray.toDebugString());
+			assertEquals(fromString.height(), fromArray.height());
+			assertEquals(n, fromArray.size());
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			int threshold = ParallelBuild.THRESHOLD;
+			for (int n : new int[] { 0, 1, threshold, threshold + 1, 5 * threshold + 7 }) {
+				String s = text(n);
+				EditTree parallel = new EditTree(s, pool);
+				EditTree sequential = new EditTree(s);
+				assertEquals(sequential.toDebugString(), parallel.toDebugString());
+				assertEquals(sequential.height(), parallel.height());
+				assertEquals(s, parallel.toString());
+				// the tree must behave like any other afterwards.
+				parallel.add('!', n / 2);
+				parallel.delete(0);
+				assertEquals(n, parallel.size());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for add(String, int), which splices a whole string into the tree.
+ *
+ */
+public class EditTreeBulkInsertTest {
+
+	private static void assertBalanced(EditTree t) {
+		assertTrue(t.height() <= 1.44 * Math.log(t.size() + 2) / Math.log(2));
+	}
+
+	@Test
+	public void testEveryPosition() {
+		String s = "abcdefghij";
+		for (int pos = 0; pos <= s.length(); pos++) {
+			EditTree t = new EditTree(s);
+			t.add("XYZ", pos);
+			assertEquals(s.substring(0, pos) + "XYZ" + s.substring(pos), t.toString());
+			assertEquals(13, t.size());
+		}
+	}
+
+	@Test
+	public void testIntoEmptyTree() {
+		EditTree t = new EditTree();
+		t.add("hello", 0);
+		assertEquals("hello", t.toString());
+		t.add("", 2);
+		assertEquals("hello", t.toString());
+		t.add('!');
+		assertEquals("hello!", t.toString());
+	}
+
+	@Test
+	public void testRandomPastes() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			StringBuilder paste = new StringBuilder();
+			int length = random.nextInt(i % 10 == 0 ? 2000 : 20);
+			for (int j = 0; j < length; j++)
+				paste.append((char) ('a' + random.nextInt(26)));
+			int pos = random.nextInt(expected.length() + 1);
+			t.add(paste.toString(), pos);
+			expected.insert(pos, paste);
+			if (expected.length() > 0) {
+				pos = random.nextInt(expected.length());
+				t.delete(pos);
+				expected.deleteCharAt(pos);
+			}
+			assertEquals(expected.length(), t.size());
+			assertBalanced(t);
+		}
+		assertEquals(expected.toString(), t.toString());
+	}
+
+	@Test
+	public void testOutOfBounds() {
+		EditTree t = new EditTree("abc");
+		try {
+			t.add("x", 4);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.add("x", -1);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		assertEquals("abc", t.toString());
+	}
+}
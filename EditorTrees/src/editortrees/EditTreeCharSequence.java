@@ -0,0 +1,68 @@
+package editortrees;
+
+import java.util.ConcurrentModificationException;
+
+/**
+ * The characters of an EditTree from begin up to, but not including, end,
+ * read straight from the nodes. charAt() goes through an EditTreeCursor, so
+ * reading the characters in order, as java.util.regex does, is O(1)
+ * amortized per character, and subSequence() is another view of the same
+ * tree. Changing the tree invalidates the view, which then throws
+ * ConcurrentModificationException.
+ *
+ */
+final class EditTreeCharSequence implements CharSequence {
+	private final EditTree tree;
+	private final int begin;
+	private final int end;
+	private final int expectedModCount;
+	// made on the first charAt(), so that views that are only measured or
+	// turned into strings never walk down to a node.
+	private EditTreeCursor cursor;
+
+	EditTreeCharSequence(EditTree tree, int begin, int end) {
+		this.tree = tree;
+		this.begin = begin;
+		this.end = end;
+		this.expectedModCount = tree.modCount;
+	}
+
+	@Override
+	public int length() {
+		this.check();
+		return this.end - this.begin;
+	}
+
+	@Override
+	public char charAt(int index) {
+		this.check();
+		if (index < 0 || index >= this.end - this.begin)
+			throw new IndexOutOfBoundsException();
+		int pos = this.begin + index;
+		if (this.cursor == null) {
+			this.cursor = this.tree.cursor(pos);
+		} else if (this.cursor.position() != pos) {
+			this.cursor.moveTo(pos);
+		}
+		return this.cursor.get();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		this.check();
+		if (start < 0 || start > end || end > this.end - this.begin)
+			throw new IndexOutOfBoundsException();
+		return new EditTreeCharSequence(this.tree, this.begin + start, this.begin + end);
+	}
+
+	@Override
+	public String toString() {
+		this.check();
+		return this.tree.get(this.begin, this.end - this.begin);
+	}
+
+	private void check() {
+		if (this.tree.modCount != this.expectedModCount)
+			throw new ConcurrentModificationException();
+	}
+}
@@ -0,0 +1,70 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ConcurrentModificationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests for the CharSequence view of an EditTree.
+ *
+ */
+public class EditTreeCharSequenceTest {
+
+	@Test
+	public void testMatchesString() {
+		String s = "one two three four five six seven eight nine ten";
+		CharSequence view = new EditTree(s).asCharSequence();
+		assertEquals(s.length(), view.length());
+		assertEquals(s, view.toString());
+		for (int i = s.length() - 1; i >= 0; i -= 3)
+			assertEquals(s.charAt(i), view.charAt(i));
+		CharSequence sub = view.subSequence(4, 18);
+		assertEquals(s.substring(4, 18), sub.toString());
+		assertEquals(s.substring(8, 13), sub.subSequence(4, 9).toString());
+		assertEquals(s.charAt(10), sub.charAt(6));
+		assertEquals("", view.subSequence(7, 7).toString());
+		try {
+			sub.charAt(14);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testRegex() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+			sb.append("word").append(i).append(i % 7 == 0 ? "\n" : " ");
+		String s = sb.toString();
+		Pattern pattern = Pattern.compile("word(\\d*7)\\s");
+		Matcher expected = pattern.matcher(s);
+		Matcher actual = pattern.matcher(new EditTree(s).asCharSequence());
+		while (expected.find()) {
+			assertEquals(true, actual.find());
+			assertEquals(expected.start(), actual.start());
+			assertEquals(expected.group(1), actual.group(1));
+		}
+		assertEquals(false, actual.find());
+	}
+
+	@Test
+	public void testChangeInvalidates() {
+		EditTree t = new EditTree("abc");
+		CharSequence view = t.asCharSequence();
+		assertEquals('b', view.charAt(1));
+		t.add('d');
+		try {
+			view.charAt(0);
+			fail("did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		assertEquals("abcd", t.asCharSequence().toString());
+	}
+}
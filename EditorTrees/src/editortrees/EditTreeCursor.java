@@ -0,0 +1,248 @@
+package editortrees;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * A position in an EditTree, between two characters like a caret, that
+ * remembers the node of the character after it. Moving d characters away
+ * climbs through the parent links only as far as the lowest node above both
+ * positions, and walks back down from there, so next() and previous() are
+ * O(1) amortized and nearby moves are cheap. Adding and deleting at the
+ * cursor start from its node, not from the root.
+ *
+ * Changing the tree other than through this cursor, including through
+ * another cursor, makes this cursor throw ConcurrentModificationException.
+ *
+ */
+public class EditTreeCursor {
+	private final EditTree tree;
+	// the position of the cursor, from 0 up to the size of the tree.
+	private int pos;
+	// the node at pos, or the last node when pos is the size of the tree;
+	// null while the tree is empty.
+	private Node node;
+	private int expectedModCount;
+
+	EditTreeCursor(EditTree tree, int pos) {
+		this.tree = tree;
+		this.pos = pos;
+		this.expectedModCount = tree.modCount;
+		if (tree.size() > 0)
+			this.node = descend(tree.getRoot(), 0, Math.min(pos, tree.size() - 1));
+	}
+
+	/**
+	 * @return the position of this cursor: the number of characters before
+	 *         it.
+	 */
+	public int position() {
+		this.check();
+		return this.pos;
+	}
+
+	/**
+	 * @return true if there is a character after this cursor.
+	 */
+	public boolean hasNext() {
+		this.check();
+		return this.pos < this.tree.size();
+	}
+
+	/**
+	 * @return true if there is a character before this cursor.
+	 */
+	public boolean hasPrevious() {
+		this.check();
+		return this.pos > 0;
+	}
+
+	/**
+	 * @return the character after this cursor, without moving.
+	 * @throws IndexOutOfBoundsException
+	 *             if this cursor is at the end of the tree
+	 */
+	public char get() throws IndexOutOfBoundsException {
+		this.check();
+		if (this.pos == this.tree.size())
+			throw new IndexOutOfBoundsException();
+		return this.node.element;
+	}
+
+	/**
+	 * moves this cursor one character forward.
+	 *
+	 * @return the character moved past.
+	 * @throws NoSuchElementException
+	 *             if this cursor is at the end of the tree
+	 */
+	public char next() throws NoSuchElementException {
+		this.check();
+		if (this.pos == this.tree.size())
+			throw new NoSuchElementException();
+		char c = this.node.element;
+		this.pos++;
+		// at the end, the cursor stays on the last node.
+		if (this.pos < this.tree.size())
+			this.node = Node.successor(this.node);
+		return c;
+	}
+
+	/**
+	 * moves this cursor one character back.
+	 *
+	 * @return the character moved past.
+	 * @throws NoSuchElementException
+	 *             if this cursor is at the start of the tree
+	 */
+	public char previous() throws NoSuchElementException {
+		this.check();
+		if (this.pos == 0)
+			throw new NoSuchElementException();
+		// at the end, the cursor is already on the last node.
+		if (this.pos < this.tree.size())
+			this.node = Node.predecessor(this.node);
+		this.pos--;
+		return this.node.element;
+	}
+
+	/**
+	 * moves this cursor to position target, in time proportional to the
+	 * height of the lowest node above both positions.
+	 *
+	 * @param target
+	 * @throws IndexOutOfBoundsException
+	 *             if target is negative or greater than the size of the tree
+	 */
+	public void moveTo(int target) throws IndexOutOfBoundsException {
+		this.check();
+		int size = this.tree.size();
+		if (target < 0 || target > size)
+			throw new IndexOutOfBoundsException();
+		if (size > 0)
+			this.node = walk(this.node, Math.min(this.pos, size - 1), Math.min(target, size - 1));
+		this.pos = target;
+	}
+
+	/**
+	 * adds c before this cursor, which stays after it, like typing.
+	 *
+	 * @param c
+	 */
+	public void add(char c) {
+		this.check();
+		if (this.node == null) {
+			this.tree.add(c);
+			this.node = this.tree.getRoot();
+		} else if (this.pos == this.tree.size()) {
+			this.tree.add(this.node, c, true);
+			this.node = Node.successor(this.node);
+		} else {
+			this.tree.add(this.node, c, false);
+		}
+		this.pos++;
+		this.expectedModCount = this.tree.modCount;
+	}
+
+	/**
+	 * deletes the character after this cursor, like the delete key; previous()
+	 * then delete() is a backspace.
+	 *
+	 * @return the character deleted.
+	 * @throws IndexOutOfBoundsException
+	 *             if this cursor is at the end of the tree
+	 */
+	public char delete() throws IndexOutOfBoundsException {
+		this.check();
+		if (this.pos == this.tree.size())
+			throw new IndexOutOfBoundsException();
+		Node target = this.node;
+		Node after;
+		if (!(target.left instanceof NullNode) && !(target.right instanceof NullNode)) {
+			// the successor's element moves into this node, and the
+			// successor's node is the one unlinked.
+			after = target;
+		} else if (this.pos + 1 < this.tree.size()) {
+			after = Node.successor(target);
+		} else {
+			// the last character is deleted, so the cursor ends up on the new
+			// last node, if there is one.
+			after = this.pos == 0 ? null : Node.predecessor(target);
+		}
+		char deleted = this.tree.delete(target);
+		this.node = after;
+		this.expectedModCount = this.tree.modCount;
+		return deleted;
+	}
+
+	private void check() {
+		if (this.tree.modCount != this.expectedModCount)
+			throw new ConcurrentModificationException();
+	}
+
+	/**
+	 *
+	 * returns the node at position target, starting from node, which is at
+	 * position pos. Climbs until the subtree being climbed out of holds
+	 * target, working out the first position in each subtree on the way, then
+	 * descends.
+	 *
+	 * @param node
+	 * @param pos
+	 * @param target
+	 * @return the node at position target.
+	 */
+	private static Node walk(Node node, int pos, int target) {
+		if (target == pos)
+			return node;
+		Node current = node;
+		// the first position in current's subtree.
+		int first = pos - node.rank;
+		while (!(current.parent instanceof NullNode)) {
+			// every subtree on the way holds pos, so one that starts at or
+			// before a target behind pos holds the target too.
+			if (target < pos && target >= first)
+				break;
+			Node p = current.parent;
+			if (p.left == current) {
+				// current's subtree ends right before p, so it holds a target
+				// ahead of pos if the target is before p.
+				int parentPos = first + p.rank;
+				if (target == parentPos)
+					return p;
+				if (target > pos && target < parentPos)
+					break;
+			} else {
+				int parentPos = first - 1;
+				if (target == parentPos)
+					return p;
+				first = parentPos - p.rank;
+			}
+			current = p;
+		}
+		return descend(current, first, target);
+	}
+
+	/**
+	 *
+	 * returns the node at position target, found by walking down from node,
+	 * whose subtree starts at position first.
+	 *
+	 * @param node
+	 * @param first
+	 * @param target
+	 * @return the node at position target.
+	 */
+	private static Node descend(Node node, int first, int target) {
+		int pos = target - first;
+		while (pos != node.rank) {
+			if (pos < node.rank) {
+				node = node.left;
+			} else {
+				pos -= node.rank + 1;
+				node = node.right;
+			}
+		}
+		return node;
+	}
+}
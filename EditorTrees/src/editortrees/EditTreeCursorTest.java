@@ -0,0 +1,161 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for EditTreeCursor, against a StringBuilder edited the same way.
+ *
+ */
+public class EditTreeCursorTest {
+
+	@Test
+	public void testWalkForwardAndBack() {
+		String s = "the quick brown fox jumps over the lazy dog";
+		EditTree t = new EditTree(s);
+		EditTreeCursor cursor = t.cursor(0);
+		StringBuilder sb = new StringBuilder();
+		while (cursor.hasNext())
+			sb.append(cursor.next());
+		assertEquals(s, sb.toString());
+		assertEquals(s.length(), cursor.position());
+		sb.setLength(0);
+		while (cursor.hasPrevious())
+			sb.append(cursor.previous());
+		assertEquals(new StringBuilder(s).reverse().toString(), sb.toString());
+		try {
+			cursor.previous();
+			fail("did not throw NoSuchElementException");
+		} catch (NoSuchElementException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testMoveTo() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			sb.append((char) ('a' + i % 26));
+		EditTree t = new EditTree(sb.toString());
+		EditTreeCursor cursor = t.cursor(500);
+		Random random = new Random(230);
+		for (int i = 0; i < 2000; i++) {
+			int target = random.nextBoolean() ? random.nextInt(1001) : Math.max(0, Math.min(1000,
+					cursor.position() + random.nextInt(21) - 10));
+			cursor.moveTo(target);
+			assertEquals(target, cursor.position());
+			if (target < 1000)
+				assertEquals(sb.charAt(target), cursor.get());
+		}
+		// every pair of positions, on a small tree.
+		EditTree small = new EditTree("abcdefghijklmnopq");
+		for (int from = 0; from <= small.size(); from++) {
+			for (int to = 0; to <= small.size(); to++) {
+				EditTreeCursor c = small.cursor(from);
+				c.moveTo(to);
+				assertEquals(to == small.size(), !c.hasNext());
+				if (to < small.size())
+					assertEquals((char) ('a' + to), c.get());
+			}
+		}
+	}
+
+	@Test
+	public void testTyping() {
+		EditTree t = new EditTree();
+		EditTreeCursor cursor = t.cursor(0);
+		for (char c : "hello world".toCharArray())
+			cursor.add(c);
+		assertEquals("hello world", t.toString());
+		cursor.moveTo(5);
+		cursor.add(',');
+		assertEquals("hello, world", t.toString());
+		assertEquals(6, cursor.position());
+		assertEquals(' ', cursor.delete());
+		cursor.previous();
+		assertEquals(',', cursor.delete());
+		assertEquals("helloworld", t.toString());
+		cursor.moveTo(t.size());
+		cursor.previous();
+		assertEquals('d', cursor.delete());
+		assertFalse(cursor.hasNext());
+		assertEquals("helloworl", t.toString());
+		while (cursor.hasPrevious()) {
+			cursor.previous();
+			cursor.delete();
+		}
+		assertEquals("", t.toString());
+		cursor.add('x');
+		assertEquals("x", t.toString());
+	}
+
+	@Test
+	public void testRandomEdits() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		EditTreeCursor cursor = t.cursor(0);
+		for (int i = 0; i < 20000; i++) {
+			int op = random.nextInt(10);
+			if (op < 4) {
+				char c = (char) ('a' + random.nextInt(26));
+				expected.insert(cursor.position(), c);
+				cursor.add(c);
+			} else if (op < 6 && cursor.hasNext()) {
+				expected.deleteCharAt(cursor.position());
+				cursor.delete();
+			} else if (op < 8) {
+				if (random.nextBoolean() && cursor.hasNext())
+					assertEquals(expected.charAt(cursor.position()), cursor.next());
+				else if (cursor.hasPrevious())
+					assertEquals(expected.charAt(cursor.position() - 1), cursor.previous());
+			} else {
+				cursor.moveTo(random.nextInt(expected.length() + 1));
+			}
+			assertEquals(expected.length(), t.size());
+			if (cursor.hasNext())
+				assertEquals(expected.charAt(cursor.position()), cursor.get());
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertEquals(t.height(), t.getRoot().height());
+	}
+
+	@Test
+	public void testOtherChangesInvalidate() {
+		EditTree t = new EditTree("abcdef");
+		EditTreeCursor first = t.cursor(2);
+		EditTreeCursor second = t.cursor(4);
+		first.add('x');
+		try {
+			second.get();
+			fail("did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		assertEquals('c', first.get());
+		t.add('!', 0);
+		try {
+			first.next();
+			fail("did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		EditTreeCursor third = t.cursor(3);
+		t.split(5);
+		try {
+			third.moveTo(0);
+			fail("did not throw ConcurrentModificationException");
+		} catch (ConcurrentModificationException e) {
+			// success
+		}
+		assertTrue(t.cursor(0).hasNext());
+	}
+}
@@ -0,0 +1,45 @@
+package editortrees;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * What every Flight Recorder event of an EditTree operation records besides
+ * its duration. The events follow the usual pattern: made and begun before
+ * the operation, filled in and committed after it only if shouldCommit()
+ * says the recording wants them, which it never does while Flight Recorder
+ * is off or the operation was quicker than the event's threshold.
+ *
+ * Each event has a threshold of 20 ms, which a recording can change through
+ * its settings, e.g. editortrees.Split#threshold=1 ms.
+ *
+ */
+@Category("Editor Trees")
+abstract class EditTreeEvent extends Event {
+	@Label("Size")
+	@Description("Characters in the tree after the operation")
+	int size;
+
+	@Label("Height")
+	@Description("Height of the tree after the operation")
+	int height;
+
+	@Label("Rotations")
+	@Description("Rotations done by the operation")
+	int rotations;
+
+	/**
+	 * fills in the fields every event has, and commits this event.
+	 *
+	 * @param tree
+	 * @param rotations
+	 */
+	void report(EditTree tree, int rotations) {
+		this.size = tree.size();
+		this.height = tree.height();
+		this.rotations = rotations;
+		this.commit();
+	}
+}
@@ -0,0 +1,79 @@
+package editortrees;
+
+import static editortrees.RandomEditsTest.text;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests that the slow operations of EditTree show up in a Flight Recorder
+ * recording, and that quick ones stay out of it.
+ *
+ */
+public class EditTreeEventsTest {
+
+	private static List<RecordedEvent> record(Duration threshold) throws IOException {
+		File file = File.createTempFile("editortrees", ".jfr");
+		try {
+			Recording recording = new Recording();
+			for (String name : new String[] { "Split", "Concatenate", "DeleteRange", "Find", "BulkLoad" })
+				recording.enable("editortrees." + name).withThreshold(threshold);
+			recording.start();
+			EditTree t = new EditTree(text(1000));
+			EditTree right = t.split(400);
+			t.concatenate(right);
+			t.delete(10, 20);
+			t.find("zzz");
+			t.findAll("abc");
+			t.add("hello", 5);
+			recording.stop();
+			recording.dump(file.toPath());
+			recording.close();
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEventsRecorded() throws IOException {
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		for (RecordedEvent event : record(Duration.ZERO)) {
+			String name = event.getEventType().getName();
+			Integer count = counts.get(name);
+			counts.put(name, count == null ? 1 : count + 1);
+			if (name.equals("editortrees.Split") && event.getInt("position") == 400) {
+				assertEquals(400, event.getInt("size"));
+				assertEquals(600, event.getInt("splitOff"));
+			}
+			if (name.equals("editortrees.Find") && event.getString("method").equals("find"))
+				assertEquals(-1, event.getInt("result"));
+			assertTrue(event.getInt("height") >= 0);
+		}
+		// delete(int, int) and add(String, int) split and concatenate too.
+		assertEquals(Integer.valueOf(4), counts.get("editortrees.Split"));
+		assertEquals(Integer.valueOf(4), counts.get("editortrees.Concatenate"));
+		assertEquals(Integer.valueOf(1), counts.get("editortrees.DeleteRange"));
+		assertEquals(Integer.valueOf(2), counts.get("editortrees.Find"));
+		// the constructor and the add, which builds the added string into a
+		// tree of its own without an event of its own.
+		assertEquals(Integer.valueOf(2), counts.get("editortrees.BulkLoad"));
+	}
+
+	@Test
+	public void testQuickOperationsNotRecorded() throws IOException {
+		for (RecordedEvent event : record(Duration.ofHours(1)))
+			assertTrue(!event.getEventType().getName().startsWith("editortrees."));
+	}
+}
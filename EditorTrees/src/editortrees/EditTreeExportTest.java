@@ -0,0 +1,164 @@
+package editortrees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for toString() and the writeTo() methods, which copy the tree out a
+ * chunk at a time.
+ *
+ */
+public class EditTreeExportTest {
+
+	// longer than one export chunk, and not a multiple of it.
+	private static String longText() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			sb.append((char) ('a' + i % 26));
+		return sb.toString();
+	}
+
+	@Test
+	public void testToString() {
+		assertEquals("", new EditTree().toString());
+		String s = longText();
+		EditTree t = new EditTree(s);
+		t.add('X', 12345);
+		assertEquals(s.substring(0, 12345) + "X" + s.substring(12345), t.toString());
+		assertEquals(t.toString(), t.getRoot().toString());
+	}
+
+	@Test
+	public void testWriteToAppendable() throws IOException {
+		String s = longText();
+		StringBuilder sb = new StringBuilder("> ");
+		new EditTree(s).writeTo(sb);
+		assertEquals("> " + s, sb.toString());
+		sb = new StringBuilder();
+		new EditTree().writeTo(sb);
+		assertEquals("", sb.toString());
+	}
+
+	@Test
+	public void testWriteToWriter() throws IOException {
+		String s = longText();
+		StringWriter out = new StringWriter();
+		new EditTree(s).writeTo(out);
+		assertEquals(s, out.toString());
+	}
+
+	@Test
+	public void testWriteToCharBuffer() {
+		String s = longText();
+		CharBuffer heap = CharBuffer.allocate(s.length() + 4);
+		heap.put("<<");
+		new EditTree(s).writeTo(heap);
+		assertEquals(s.length() + 2, heap.position());
+		heap.flip();
+		assertEquals("<<" + s, heap.toString());
+
+		// a buffer without an array behind it.
+		CharBuffer direct = ByteBuffer.allocateDirect(2 * s.length()).asCharBuffer();
+		new EditTree(s).writeTo(direct);
+		direct.flip();
+		assertEquals(s, direct.toString());
+	}
+
+	@Test
+	public void testWriteToCharBufferOverflow() {
+		CharBuffer out = CharBuffer.allocate(3);
+		try {
+			new EditTree("abcd").writeTo(out);
+			fail("did not throw BufferOverflowException");
+		} catch (BufferOverflowException e) {
+			// success
+		}
+		assertEquals(0, out.position());
+	}
+
+	private static byte[] bytes(EditTree t, Charset charset) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		t.writeTo(Channels.newChannel(out), charset);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testWriteToChannel() throws IOException {
+		// surrogate pairs, one of them cut in two by the end of the first
+		// export chunk, and more bytes than fit in the buffer at once.
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 30000; i++)
+			sb.append(i % 7 == 0 ? "\u20AC" : i % 11 == 0 ? "\uD83D\uDE00" : "x");
+		sb.insert(8191, "\uD83D\uDE00");
+		String s = sb.toString();
+		EditTree t = new EditTree(s);
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_8, StandardCharsets.UTF_16,
+				StandardCharsets.ISO_8859_1 })
+			assertArrayEquals(charset.name(), s.getBytes(charset), bytes(t, charset));
+		assertEquals(0, bytes(new EditTree(), StandardCharsets.UTF_8).length);
+	}
+
+	@Test
+	public void testWriteToChannelUnpairedSurrogates() throws IOException {
+		String s = "a\uD83Db\uDE00c\uD83D";
+		assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), bytes(new EditTree(s), StandardCharsets.UTF_8));
+		// a high surrogate at the end of a chunk, and another to start the
+		// next, which pairs with the low surrogate after it.
+		char[] x = new char[8191];
+		Arrays.fill(x, 'x');
+		s = new String(x) + "\uD800\uD800\uDC00yz";
+		assertArrayEquals(s.getBytes(StandardCharsets.UTF_8), bytes(new EditTree(s), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testWriteToChannelNested() throws IOException {
+		// a channel that saves another tree each time it is written to.
+		String inner = longText();
+		String outer = inner + inner + inner + inner + "\u00E9";
+		ByteArrayOutputStream nested = new ByteArrayOutputStream();
+		WritableByteChannel sink = Channels.newChannel(nested);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		WritableByteChannel channel = new WritableByteChannel() {
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+				// nothing to close
+			}
+
+			@Override
+			public int write(ByteBuffer src) throws IOException {
+				new EditTree(inner).writeTo(sink, StandardCharsets.UTF_16BE);
+				int n = src.remaining();
+				out.write(src.array(), src.arrayOffset() + src.position(), n);
+				src.position(src.limit());
+				return n;
+			}
+		};
+		new EditTree(outer).writeTo(channel, StandardCharsets.UTF_8);
+		assertArrayEquals(outer.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+		byte[] once = inner.getBytes(StandardCharsets.UTF_16BE);
+		byte[] all = nested.toByteArray();
+		assertEquals(0, all.length % once.length);
+		for (int from = 0; from < all.length; from += once.length)
+			assertArrayEquals(once, Arrays.copyOfRange(all, from, from + once.length));
+	}
+}
@@ -0,0 +1,85 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for find(), findLast() and findAll(), checked against the String
+ * methods of the same name.
+ *
+ */
+public class EditTreeFindTest {
+
+	private static String randomText(Random random, int length, int letters) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			sb.append((char) ('a' + random.nextInt(letters)));
+		return sb.toString();
+	}
+
+	@Test
+	public void testOverlappingPrefix() {
+		EditTree t = new EditTree("aaab");
+		assertEquals(1, t.find("aab"));
+		assertEquals(1, t.findLast("aab"));
+		t = new EditTree("abababc");
+		assertEquals(2, t.find("ababc"));
+		assertEquals(-1, t.find("ababc", 3));
+	}
+
+	@Test
+	public void testNoMatchAfterPartialMatch() {
+		EditTree t = new EditTree("xxab");
+		assertEquals(-1, t.find("abc"));
+		assertEquals(-1, t.findLast("abc"));
+	}
+
+	@Test
+	public void testMatchesString() {
+		Random random = new Random(230);
+		for (int trial = 0; trial < 300; trial++) {
+			String text = randomText(random, random.nextInt(60), 3);
+			String pattern = randomText(random, 1 + random.nextInt(4), 3);
+			EditTree t = new EditTree(text);
+			for (int pos = -1; pos <= text.length() + 1; pos++) {
+				assertEquals(text.indexOf(pattern, pos), t.find(pattern, pos));
+				assertEquals(text.lastIndexOf(pattern, pos), t.findLast(pattern, pos));
+			}
+			assertEquals(text.lastIndexOf(pattern), t.findLast(pattern));
+			assertEquals(text.lastIndexOf(""), t.findLast(""));
+		}
+	}
+
+	@Test
+	public void testAcrossChunks() {
+		Random random = new Random(230);
+		String text = randomText(random, 30000, 2);
+		EditTree t = new EditTree(text);
+		String pattern = text.substring(4090, 4110);
+		assertEquals(text.indexOf(pattern), t.find(pattern));
+		assertEquals(text.indexOf(pattern, 5000), t.find(pattern, 5000));
+		assertEquals(text.lastIndexOf(pattern), t.findLast(pattern));
+		assertEquals(text.lastIndexOf(pattern, 20000), t.findLast(pattern, 20000));
+	}
+
+	@Test
+	public void testFindAll() {
+		Random random = new Random(230);
+		for (int trial = 0; trial < 100; trial++) {
+			String text = randomText(random, random.nextInt(10000), 2);
+			String pattern = randomText(random, 1 + random.nextInt(6), 2);
+			ArrayList<Integer> expected = new ArrayList<Integer>();
+			for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1))
+				expected.add(i);
+			assertEquals(expected, new EditTree(text).findAll(pattern));
+		}
+		ArrayList<Integer> everywhere = new ArrayList<Integer>();
+		everywhere.add(0);
+		everywhere.add(1);
+		assertEquals(everywhere, new EditTree("a").findAll(""));
+	}
+}
@@ -0,0 +1,154 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the newline counts kept in every node, and for lineCount(),
+ * lineStartOffset(), lineOf() and getLine(), against a StringBuilder edited
+ * the same way.
+ *
+ */
+public class EditTreeLinesTest {
+
+	// checks that every node's newline count is that of its subtree.
+	private static int check(Node n) {
+		if (n instanceof NullNode)
+			return 0;
+		int count = check(n.left) + check(n.right) + (n.element == '\n' ? 1 : 0);
+		assertEquals(count, n.newlines);
+		return count;
+	}
+
+	private static void assertLines(String expected, EditTree t) {
+		assertEquals(expected, t.toString());
+		check(t.getRoot());
+		String[] lines = expected.split("\n", -1);
+		assertEquals(lines.length, t.lineCount());
+		int start = 0;
+		for (int line = 0; line < lines.length; line++) {
+			assertEquals(start, t.lineStartOffset(line));
+			assertEquals(lines[line], t.getLine(line));
+			for (int pos = start; pos <= start + lines[line].length(); pos++)
+				assertEquals(line, t.lineOf(pos));
+			start += lines[line].length() + 1;
+		}
+	}
+
+	// mostly letters, with a newline every so often and sometimes two.
+	private static char randomChar(Random random) {
+		return random.nextInt(6) == 0 ? '\n' : (char) ('a' + random.nextInt(26));
+	}
+
+	@Test
+	public void testSmall() {
+		EditTree t = new EditTree();
+		assertLines("", t);
+		assertEquals("", t.getLine(0));
+		t = new EditTree("one\ntwo\n\nfour\n");
+		assertEquals(5, t.lineCount());
+		assertEquals(4, t.lineStartOffset(1));
+		assertEquals("two", t.getLine(1));
+		assertEquals("", t.getLine(2));
+		assertEquals("", t.getLine(4));
+		assertEquals(14, t.lineStartOffset(4));
+		assertEquals(0, t.lineOf(3));
+		assertEquals(1, t.lineOf(4));
+		assertEquals(4, t.lineOf(14));
+		assertLines("one\ntwo\n\nfour\n", t);
+	}
+
+	@Test
+	public void testBounds() {
+		EditTree t = new EditTree("a\nb");
+		int[] lines = { -1, 2 };
+		for (int line : lines) {
+			try {
+				t.lineStartOffset(line);
+				fail("did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+			try {
+				t.getLine(line);
+				fail("did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		int[] positions = { -1, 4 };
+		for (int pos : positions) {
+			try {
+				t.lineOf(pos);
+				fail("did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+	}
+
+	// edits with newlines in, checking every node's count after each.
+	private static RandomEditsTest<EditTree> edits(EditTree t) {
+		return new RandomEditsTest<EditTree>(t, EditTree::add, EditTree::delete, EditTree::delete, EditTree::split,
+				EditTree::concatenate) {
+			@Override
+			String next(Random r) {
+				return String.valueOf(randomChar(r));
+			}
+
+			@Override
+			void check(EditTree tree) {
+				EditTreeLinesTest.check(tree.getRoot());
+			}
+		};
+	}
+
+	@Test
+	public void testBuilt() {
+		Random random = new Random(230);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+			sb.append(randomChar(random));
+		String s = sb.toString();
+		for (EditTree t : RandomEditsTest.builds(s))
+			assertLines(s, t);
+	}
+
+	@Test
+	public void testRandomEdits() {
+		RandomEditsTest<EditTree> edits = edits(new EditTree());
+		edits.run(20000);
+		assertLines(edits.expected.toString(), edits.tree);
+	}
+
+	@Test
+	public void testCursorEdits() {
+		RandomEditsTest<EditTree> edits = edits(new EditTree("first\nsecond\nthird"));
+		edits.run(edits.tree.cursor(0), 5000);
+		edits.tree.add("a\nb\n", 7);
+		edits.expected.insert(7, "a\nb\n");
+		assertLines(edits.expected.toString(), edits.tree);
+	}
+
+	@Test
+	public void testManyLines() {
+		// three million lines, and a jump straight to the last ones.
+		char[] chars = new char[6000000];
+		for (int i = 0; i < chars.length; i += 2) {
+			chars[i] = (char) ('a' + i % 26);
+			chars[i + 1] = '\n';
+		}
+		EditTree t = new EditTree(chars);
+		assertEquals(3000001, t.lineCount());
+		assertEquals(5999998, t.lineStartOffset(2999999));
+		assertEquals(String.valueOf((char) ('a' + 2 * 2999990 % 26)), t.getLine(2999990));
+		assertEquals(2999999, t.lineOf(5999999));
+		t.add('\n', 1);
+		assertEquals(3000002, t.lineCount());
+		assertEquals("", t.getLine(1));
+	}
+}
@@ -0,0 +1,82 @@
+package editortrees;
+
+/**
+ * Receives what an EditTree does: its rotations and joins as they happen,
+ * and each add, delete, split and concatenate once it is over. A tree
+ * reports to NONE, which ignores everything, until setMetrics() gives it
+ * something else.
+ *
+ */
+public interface EditTreeMetrics {
+
+	/**
+	 * The operations whose depth and latency are reported.
+	 */
+	enum Operation {
+		ADD, DELETE, SPLIT, CONCATENATE
+	}
+
+	/**
+	 * Ignores everything, and never reads the clock.
+	 */
+	EditTreeMetrics NONE = new EditTreeMetrics() {
+		@Override
+		public void singleRotation() {
+			// nothing to record.
+		}
+
+		@Override
+		public void doubleRotation() {
+			// nothing to record.
+		}
+
+		@Override
+		public void join() {
+			// nothing to record.
+		}
+
+		@Override
+		public long start() {
+			return 0;
+		}
+
+		@Override
+		public void finish(Operation operation, int depth, long start) {
+			// nothing to record.
+		}
+	};
+
+	/**
+	 * called after every single rotation.
+	 */
+	void singleRotation();
+
+	/**
+	 * called after every double rotation.
+	 */
+	void doubleRotation();
+
+	/**
+	 * called after every join of two trees around a node, which split and
+	 * concatenate are made of.
+	 */
+	void join();
+
+	/**
+	 * called as an operation starts.
+	 *
+	 * @return a time stamp to be passed back to finish().
+	 */
+	long start();
+
+	/**
+	 * called as an operation ends.
+	 *
+	 * @param operation
+	 * @param depth
+	 *            how many nodes the operation walked through on its way down
+	 * @param start
+	 *            what start() returned for this operation
+	 */
+	void finish(Operation operation, int depth, long start);
+}
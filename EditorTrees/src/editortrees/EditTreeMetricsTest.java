@@ -0,0 +1,90 @@
+package editortrees;
+
+import static editortrees.RandomEditsTest.text;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import editortrees.EditTreeMetrics.Operation;
+
+/**
+ * Tests that rotations are counted by the tree they happen in, and that
+ * CountingEditTreeMetrics sees every operation.
+ *
+ */
+public class EditTreeMetricsTest {
+
+	@Test
+	public void testRotationsAfterSplitCountedByRightTree() {
+		EditTree t = new EditTree(text(1000));
+		EditTree right = t.split(500);
+		int before = t.totalRotationCount();
+		for (int i = 0; i < 200; i++)
+			right.add('x', 0);
+		assertEquals(before, t.totalRotationCount());
+		assertTrue(right.totalRotationCount() > 0);
+		for (int i = 0; i < 150; i++)
+			right.delete(right.size() - 1);
+		assertEquals(before, t.totalRotationCount());
+	}
+
+	@Test
+	public void testRotationsAfterConcatenateCountedByThisTree() {
+		EditTree t = new EditTree(text(100));
+		EditTree other = new EditTree(text(1000));
+		t.concatenate(other);
+		int before = other.totalRotationCount();
+		for (int i = 0; i < 200; i++)
+			t.add('x', t.size());
+		assertEquals(before, other.totalRotationCount());
+
+		EditTree empty = new EditTree();
+		EditTree full = new EditTree(text(1000));
+		empty.concatenate(full);
+		for (int i = 0; i < 200; i++)
+			empty.add('x', 0);
+		assertEquals(0, full.totalRotationCount());
+		assertTrue(empty.totalRotationCount() > 0);
+	}
+
+	@Test
+	public void testCountingMetrics() {
+		CountingEditTreeMetrics metrics = new CountingEditTreeMetrics();
+		EditTree t = new EditTree();
+		assertSame(EditTreeMetrics.NONE, t.getMetrics());
+		t.setMetrics(metrics);
+		Random random = new Random(230);
+		for (int i = 0; i < 1000; i++)
+			t.add('a', random.nextInt(t.size() + 1));
+		for (int i = 0; i < 300; i++)
+			t.delete(random.nextInt(t.size()));
+		assertEquals(1000, metrics.count(Operation.ADD));
+		assertEquals(300, metrics.count(Operation.DELETE));
+		assertEquals(t.totalRotationCount(), metrics.singleRotations() + 2 * metrics.doubleRotations());
+		assertTrue(metrics.maxDepth(Operation.ADD) >= metrics.meanDepth(Operation.ADD));
+		assertTrue(metrics.meanDepth(Operation.ADD) > 1);
+
+		EditTree right = t.split(350);
+		assertSame(metrics, right.getMetrics());
+		t.concatenate(right);
+		assertEquals(1, metrics.count(Operation.SPLIT));
+		assertEquals(1, metrics.count(Operation.CONCATENATE));
+		// the delete inside concatenate is not an operation of its own.
+		assertEquals(300, metrics.count(Operation.DELETE));
+		assertTrue(metrics.joins() > 1);
+
+		long total = 0;
+		for (long n : metrics.latencyHistogram(Operation.ADD))
+			total += n;
+		assertEquals(1000, total);
+		assertTrue(metrics.latencyAtMost(Operation.ADD, 0.5) <= metrics.latencyAtMost(Operation.ADD, 1));
+
+		metrics.reset();
+		assertEquals(0, metrics.count(Operation.ADD));
+		assertEquals(0, metrics.latencyAtMost(Operation.ADD, 0.99));
+	}
+}
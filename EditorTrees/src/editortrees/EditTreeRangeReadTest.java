@@ -0,0 +1,80 @@
+package editortrees;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for get(pos, length) and getChars(), which copy a range of the tree
+ * in one in-order walk.
+ *
+ */
+public class EditTreeRangeReadTest {
+
+	@Test
+	public void testEveryRange() {
+		String s = "abcdefghijklmnopqrstuvwxyz0123456789";
+		EditTree t = new EditTree(s);
+		for (int pos = 0; pos <= s.length(); pos++)
+			for (int length = 0; pos + length <= s.length(); length++)
+				assertEquals(s.substring(pos, pos + length), t.get(pos, length));
+	}
+
+	@Test
+	public void testAfterRandomEdits() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			int pos = random.nextInt(expected.length() + 1);
+			char c = (char) ('a' + random.nextInt(26));
+			t.add(c, pos);
+			expected.insert(pos, c);
+			if (i % 3 == 0) {
+				pos = random.nextInt(expected.length());
+				t.delete(pos);
+				expected.deleteCharAt(pos);
+			}
+		}
+		for (int i = 0; i < 200; i++) {
+			int pos = random.nextInt(expected.length());
+			int length = random.nextInt(expected.length() - pos + 1);
+			assertEquals(expected.substring(pos, pos + length), t.get(pos, length));
+		}
+	}
+
+	@Test
+	public void testGetCharsIntoOffset() {
+		EditTree t = new EditTree("hello, world");
+		char[] dst = "**********".toCharArray();
+		t.getChars(7, 12, dst, 2);
+		assertArrayEquals("**world***".toCharArray(), dst);
+		t.getChars(3, 3, dst, 10);
+		assertArrayEquals("**world***".toCharArray(), dst);
+	}
+
+	@Test
+	public void testGetCharsBounds() {
+		EditTree t = new EditTree("abcdef");
+		char[] dst = new char[4];
+		int[][] bad = { { -1, 2, 0 }, { 3, 2, 0 }, { 4, 7, 0 }, { 0, 4, 1 }, { 0, 1, -1 } };
+		for (int[] args : bad) {
+			try {
+				t.getChars(args[0], args[1], dst, args[2]);
+				fail("did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		try {
+			t.get(5, 2);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+	}
+}
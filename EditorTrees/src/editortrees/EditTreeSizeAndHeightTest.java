@@ -0,0 +1,140 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the size and height EditTree keeps up to date agree with the
+ * nodes, and that split and concatenate leave balance codes and ranks right.
+ *
+ */
+public class EditTreeSizeAndHeightTest {
+
+	// measures the tree without trusting the balance codes, and checks them
+	// and the ranks on the way.
+	private static int measure(Node n) {
+		if (n instanceof NullNode)
+			return -1;
+		int left = measure(n.left);
+		int right = measure(n.right);
+		Node.Code expected = left == right ? Node.Code.SAME : (left > right ? Node.Code.LEFT : Node.Code.RIGHT);
+		assertEquals("balance of " + n.element, expected, n.balance);
+		assertEquals("rank of " + n.element, count(n.left), n.rank);
+		return Math.max(left, right) + 1;
+	}
+
+	private static int count(Node n) {
+		if (n instanceof NullNode)
+			return 0;
+		return count(n.left) + 1 + count(n.right);
+	}
+
+	private static void check(String expected, EditTree t) {
+		assertEquals(expected, t.toString());
+		assertEquals(expected.length(), t.size());
+		assertEquals(measure(t.getRoot()), t.height());
+	}
+
+	@Test
+	public void testEmpty() {
+		check("", new EditTree());
+		check("", new EditTree(""));
+	}
+
+	@Test
+	public void testStringConstructor() {
+		StringBuilder sb = new StringBuilder();
+		for (int n = 0; n < 70; n++) {
+			check(sb.toString(), new EditTree(sb.toString()));
+			sb.append((char) ('!' + n));
+		}
+	}
+
+	@Test
+	public void testAddAndDelete() {
+		Random random = new Random(230);
+		EditTree t = new EditTree();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			if (expected.length() < 50 || random.nextBoolean()) {
+				int pos = random.nextInt(expected.length() + 1);
+				char c = (char) ('a' + random.nextInt(26));
+				t.add(c, pos);
+				expected.insert(pos, c);
+			} else {
+				int pos = random.nextInt(expected.length());
+				t.delete(pos);
+				expected.deleteCharAt(pos);
+			}
+			check(expected.toString(), t);
+		}
+		while (expected.length() > 0) {
+			t.delete(0);
+			expected.deleteCharAt(0);
+			check(expected.toString(), t);
+		}
+	}
+
+	@Test
+	public void testSplitAndConcatenate() {
+		Random random = new Random(230);
+		for (int trial = 0; trial < 500; trial++) {
+			String s1 = randomString(random, random.nextInt(60));
+			String s2 = randomString(random, random.nextInt(60));
+			EditTree t1 = new EditTree(s1);
+			EditTree t2 = new EditTree();
+			for (int i = 0; i < s2.length(); i++)
+				t2.add(s2.charAt(i));
+			t1.concatenate(t2);
+			check(s1 + s2, t1);
+			check("", t2);
+			if (s1.length() + s2.length() == 0)
+				continue;
+			int pos = random.nextInt(s1.length() + s2.length());
+			EditTree right = t1.split(pos);
+			check((s1 + s2).substring(0, pos), t1);
+			check((s1 + s2).substring(pos), right);
+			// the pieces have to keep working afterwards.
+			t1.add('x', pos);
+			right.add('y', 0);
+			check((s1 + s2).substring(0, pos) + "x", t1);
+			check("y" + (s1 + s2).substring(pos), right);
+		}
+	}
+
+	@Test
+	public void testDeleteRange() {
+		String s = "abcdefghijklmnopqrstuvwxyz0123456789";
+		for (int start = 0; start < s.length(); start++) {
+			for (int length = 0; start + length < s.length(); length++) {
+				EditTree t = new EditTree(s);
+				EditTree removed = t.delete(start, length);
+				check(s.substring(start, start + length), removed);
+				check(s.substring(0, start) + s.substring(start + length), t);
+			}
+		}
+	}
+
+	@Test
+	public void testLargeTreeCopy() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 200000; i++)
+			sb.append((char) ('a' + i % 26));
+		EditTree t = new EditTree(sb.toString());
+		EditTree copy = new EditTree(t);
+		assertEquals(t.toDebugString(), copy.toDebugString());
+		copy.add('!', 100000);
+		sb.insert(100000, '!');
+		check(sb.toString(), copy);
+	}
+
+	private static String randomString(Random random, int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			sb.append((char) ('a' + random.nextInt(26)));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,237 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the UTF-8 lengths kept in every node, and for utf8Length(),
+ * charIndexToByteOffset(), byteOffsetToCharIndex() and getByteRange(),
+ * against the encodings of Strings edited the same way.
+ *
+ */
+public class EditTreeUtf8OffsetTest {
+	private static final String PAIR = "\uD83D\uDE00";
+
+	// checks that every node's UTF-8 length is that of its character, after
+	// the one before it, and of its subtree.
+	private static long check(Node n, char[] previous) {
+		if (n instanceof NullNode)
+			return 0;
+		long bytes = check(n.left, previous);
+		assertEquals(Node.utf8Length(n.element, previous[0]), n.width);
+		previous[0] = n.element;
+		bytes += n.width + check(n.right, previous);
+		assertEquals(bytes, n.bytes);
+		return bytes;
+	}
+
+	private static void check(Node root) {
+		check(root, new char[1]);
+	}
+
+	private static void assertOffsets(String expected, EditTree t) {
+		assertEquals(expected, t.toString());
+		check(t.getRoot());
+		byte[] encoded = expected.getBytes(StandardCharsets.UTF_8);
+		assertEquals(encoded.length, t.utf8Length());
+		long offset = 0;
+		for (int i = 0; i < expected.length(); i++) {
+			assertEquals(offset, t.charIndexToByteOffset(i));
+			assertEquals(i, t.byteOffsetToCharIndex(offset));
+			// an unpaired surrogate is encoded as '?'.
+			int length = String.valueOf(expected.charAt(i)).getBytes(StandardCharsets.UTF_8).length;
+			if (Character.isHighSurrogate(expected.charAt(i)) && i + 1 < expected.length()
+					&& Character.isLowSurrogate(expected.charAt(i + 1))) {
+				i++;
+				length = 4;
+				assertEquals(offset + 1, t.charIndexToByteOffset(i));
+			}
+			for (int inside = 1; inside < length; inside++) {
+				try {
+					t.byteOffsetToCharIndex(offset + inside);
+					fail("did not throw IllegalArgumentException");
+				} catch (IllegalArgumentException e) {
+					// success
+				}
+			}
+			offset += length;
+		}
+		assertEquals(offset, t.charIndexToByteOffset(expected.length()));
+		assertEquals(expected.length(), t.byteOffsetToCharIndex(offset));
+	}
+
+	// one character, or a surrogate pair, of 1 to 4 bytes in UTF-8.
+	private static String randomCharacter(Random random) {
+		switch (random.nextInt(8)) {
+		case 0:
+			return "\u00E9";
+		case 1:
+			return "\u20AC";
+		case 2:
+			return PAIR;
+		case 3:
+			return "\n";
+		default:
+			return String.valueOf((char) ('a' + random.nextInt(26)));
+		}
+	}
+
+	@Test
+	public void testSmall() {
+		EditTree t = new EditTree();
+		assertEquals(0, t.utf8Length());
+		assertEquals(0, t.byteOffsetToCharIndex(0));
+		assertEquals("", t.getByteRange(0, 0));
+		String s = "a\u00E9\u20AC" + PAIR + "z";
+		t = new EditTree(s);
+		assertEquals(11, t.utf8Length());
+		assertEquals(3, t.charIndexToByteOffset(2));
+		assertEquals(6, t.charIndexToByteOffset(3));
+		assertEquals(10, t.charIndexToByteOffset(5));
+		assertEquals(5, t.byteOffsetToCharIndex(10));
+		assertEquals("\u20AC" + PAIR, t.getByteRange(3, 7));
+		assertOffsets(s, t);
+		// an unpaired surrogate counts as the '?' it is encoded as.
+		assertEquals(3, new EditTree("a\uD83Db").utf8Length());
+		assertOffsets("\uDE00" + PAIR + "\uD83D", new EditTree("\uDE00" + PAIR + "\uD83D"));
+	}
+
+	@Test
+	public void testUnpairedSurrogates() {
+		// halves of pairs brought together and taken apart by every kind of
+		// edit.
+		EditTree t = new EditTree("a" + PAIR + "b");
+		t.add('x', 2);
+		assertOffsets("a\uD83Dx\uDE00b", t);
+		t.delete(2);
+		assertOffsets("a" + PAIR + "b", t);
+		t.delete(1);
+		assertOffsets("a\uDE00b", t);
+		t.add('\uD83D', 1);
+		assertOffsets("a" + PAIR + "b", t);
+		EditTree right = t.split(2);
+		assertOffsets("a\uD83D", t);
+		assertOffsets("\uDE00b", right);
+		t.concatenate(right);
+		assertOffsets("a" + PAIR + "b", t);
+		t = new EditTree("\uD83D");
+		t.concatenate(new EditTree("\uDE00"));
+		assertOffsets(PAIR, t);
+		t.add("\uDE00\uD83D", 1);
+		assertOffsets("\uD83D\uDE00\uD83D\uDE00", t);
+		t.delete(1, 2);
+		assertOffsets(PAIR, t);
+		EditTreeCursor cursor = t.cursor(1);
+		cursor.add('y');
+		assertOffsets("\uD83Dy\uDE00", t);
+		cursor.moveTo(1);
+		cursor.delete();
+		assertOffsets(PAIR, t);
+		cursor = t.cursor(2);
+		cursor.add('\uDE00');
+		assertOffsets(PAIR + "\uDE00", t);
+		cursor.moveTo(0);
+		cursor.delete();
+		assertOffsets("\uDE00\uDE00", t);
+	}
+
+	@Test
+	public void testBounds() {
+		EditTree t = new EditTree("a\u00E9");
+		int[] indexes = { -1, 3 };
+		for (int index : indexes) {
+			try {
+				t.charIndexToByteOffset(index);
+				fail("did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		int[] offsets = { -1, 4 };
+		for (int offset : offsets) {
+			try {
+				t.byteOffsetToCharIndex(offset);
+				fail("did not throw IndexOutOfBoundsException");
+			} catch (IndexOutOfBoundsException e) {
+				// success
+			}
+		}
+		try {
+			t.getByteRange(1, 3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.getByteRange(0, 2);
+			fail("did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	// edits with characters of every width in, checking every node's length
+	// after each.
+	private static RandomEditsTest<EditTree> edits(EditTree t) {
+		return new RandomEditsTest<EditTree>(t, EditTree::add, EditTree::delete, EditTree::delete, EditTree::split,
+				EditTree::concatenate) {
+			@Override
+			String next(Random r) {
+				return randomCharacter(r);
+			}
+
+			@Override
+			void check(EditTree tree) {
+				EditTreeUtf8OffsetTest.check(tree.getRoot());
+			}
+		};
+	}
+
+	@Test
+	public void testBuilt() {
+		Random random = new Random(230);
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 100000)
+			sb.append(randomCharacter(random));
+		String s = sb.toString();
+		for (EditTree t : RandomEditsTest.builds(s))
+			assertOffsets(s, t);
+		// all ASCII, which the build counts without a second pass.
+		String ascii = s.replaceAll("[^a-z]", "x");
+		assertOffsets(ascii, new EditTree(ascii));
+	}
+
+	@Test
+	public void testRandomEdits() {
+		// one character at a time, so even between the halves of a pair.
+		RandomEditsTest<EditTree> edits = edits(new EditTree());
+		edits.run(20000);
+		EditTree t = edits.tree;
+		StringBuilder expected = edits.expected;
+		// and whole strings, pairs and all.
+		for (int i = 0; i < 100; i++) {
+			int pos = edits.random.nextInt(expected.length() + 1);
+			t.add("x" + PAIR + "\u00E9", pos);
+			expected.insert(pos, "x" + PAIR + "\u00E9");
+		}
+		assertOffsets(expected.toString(), t);
+		int start = edits.random.nextInt(expected.length());
+		if (Character.isLowSurrogate(expected.charAt(start)))
+			start++;
+		long from = t.charIndexToByteOffset(start);
+		long to = t.utf8Length();
+		assertEquals(expected.substring(start), t.getByteRange(from, to - from));
+	}
+
+	@Test
+	public void testCursorEdits() {
+		RandomEditsTest<EditTree> edits = edits(new EditTree("caf\u00E9 \u20AC " + PAIR));
+		edits.run(edits.tree.cursor(0), 5000);
+		assertOffsets(edits.expected.toString(), edits.tree);
+	}
+}
@@ -0,0 +1,29 @@
+package editortrees;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by EditTree.find(), findLast() and findAll().
+ *
+ */
+@Name("editortrees.Find")
+@Label("Find")
+@Threshold("20 ms")
+final class FindEvent extends EditTreeEvent {
+	@Label("Method")
+	String method;
+
+	@Label("Position")
+	@Description("Where the search started")
+	int position;
+
+	@Label("Pattern Length")
+	int patternLength;
+
+	@Label("Result")
+	@Description("Position found, -1 if none, or for findAll the number of occurrences")
+	int result;
+}
@@ -0,0 +1,70 @@
+package editortrees;
+
+/**
+ *
+ * A Knuth-Morris-Pratt matcher that is fed the text one character at a time,
+ * so that the text can be read out of a tree in chunks instead of being made
+ * into one String. On a mismatch it falls back to the longest prefix of the
+ * pattern that is still matched, so no occurrence is missed, overlapping ones
+ * included.
+ *
+ * A backward matcher looks for the reversed pattern, for feeding the text
+ * from its end towards its beginning.
+ *
+ */
+final class KmpMatcher {
+	private final String pattern;
+	private final boolean backward;
+	// fallback[i] is the length of the longest proper prefix of the first i + 1
+	// pattern characters that is also a suffix of them.
+	private final int[] fallback;
+	private int matched;
+
+	/**
+	 * Construct a matcher for a non-empty pattern.
+	 *
+	 * @param pattern
+	 * @param backward
+	 *            true if the text will be fed from its end
+	 */
+	KmpMatcher(String pattern, boolean backward) {
+		this.pattern = pattern;
+		this.backward = backward;
+		this.fallback = new int[pattern.length()];
+		int k = 0;
+		for (int i = 1; i < pattern.length(); i++) {
+			while (k > 0 && this.charAt(i) != this.charAt(k))
+				k = this.fallback[k - 1];
+			if (this.charAt(i) == this.charAt(k))
+				k++;
+			this.fallback[i] = k;
+		}
+		this.matched = 0;
+	}
+
+	private char charAt(int i) {
+		if (this.backward)
+			return this.pattern.charAt(this.pattern.length() - 1 - i);
+		return this.pattern.charAt(i);
+	}
+
+	/**
+	 *
+	 * feeds the next character of the text.
+	 *
+	 * @param c
+	 * @return true if c completes an occurrence of the pattern.
+	 */
+	boolean next(char c) {
+		while (this.matched > 0 && c != this.charAt(this.matched))
+			this.matched = this.fallback[this.matched - 1];
+		if (c == this.charAt(this.matched))
+			this.matched++;
+		if (this.matched == this.pattern.length()) {
+			// keep what can overlap the next occurrence.
+			this.matched = this.fallback[this.matched - 1];
+			return true;
+		}
+		return false;
+	}
+}
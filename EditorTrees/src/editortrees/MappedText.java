@@ -0,0 +1,350 @@
+package editortrees;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ *
+ * The text of a file, read through a read-only memory mapping, so none of it
+ * is on the heap until it is read. With a charset of fixed width
+ * (ISO-8859-1, US-ASCII, UTF-16BE or UTF-16LE) a character is found by
+ * arithmetic and decoded when it is read, and opening is O(1). With UTF-8,
+ * opening decodes the file once, block by block, only to count the characters
+ * in each block, and a block is decoded again, into a small cache, when it is
+ * first read. No other charset is taken, since that needs every block to
+ * decode on its own, which UTF-16 with a byte-order mark, for one, does not:
+ * only the first block has the mark. In UTF-8, a block that is all ASCII, as
+ * most of a log file is, is counted eight bytes at a time and never decoded
+ * at all.
+ *
+ * The file must not change while the text is in use.
+ *
+ */
+final class MappedText implements CharSequence {
+	// a mapping is int-indexed, so a larger file is mapped in regions.
+	static final int REGION_BYTES = 1 << 30;
+	static final int BLOCK_BYTES = 1 << 16;
+	private static final int CACHED_BLOCKS = 16;
+	// shorter runs are cheaper to encode along with the text around them than
+	// to write on their own.
+	static final int DIRECT_WRITE_CHARS = 1 << 12;
+
+	private final ByteBuffer[] regions;
+	private final int regionBytes;
+	private final long byteLength;
+	private final int length;
+	// bytes per character for a charset of fixed width, and 0 otherwise.
+	private final int width;
+	private final Charset charset;
+	// otherwise: where each block starts in the file, with the length of the
+	// file at the end, and how many characters come before it.
+	private final long[] blockStarts;
+	private final int[] blockChars;
+	// the blocks whose bytes are all ASCII, in UTF-8.
+	private final BitSet ascii = new BitSet();
+	// the blocks decoded last, and which blocks they are.
+	private final char[][] cached = new char[CACHED_BLOCKS][];
+	private final int[] cachedBlocks = new int[CACHED_BLOCKS];
+	private int nextSlot;
+	private int lastBlock = -1;
+	private char[] lastChars;
+
+	private MappedText(ByteBuffer[] regions, int regionBytes, long byteLength, Charset charset, int blockBytes)
+			throws IOException {
+		this.regions = regions;
+		this.regionBytes = regionBytes;
+		this.byteLength = byteLength;
+		this.charset = charset;
+		this.width = width(charset);
+		Arrays.fill(this.cachedBlocks, -1);
+		if (this.width > 0) {
+			if (byteLength % this.width != 0)
+				throw new IOException("the file ends part of the way through a character");
+			this.length = checkLength(byteLength / this.width);
+			this.blockStarts = null;
+			this.blockChars = null;
+			return;
+		}
+		// decode every block once, to find where they start and how many
+		// characters they hold.
+		long[] starts = new long[16];
+		int[] chars = new int[16];
+		int count = 0;
+		long pos = 0;
+		long total = 0;
+		CharsetDecoder decoder = this.decoder();
+		CharBuffer out = CharBuffer.allocate((int) Math.ceil(blockBytes * (double) decoder.maxCharsPerByte()) + 2);
+		while (pos < byteLength) {
+			if (count + 1 == starts.length) {
+				starts = Arrays.copyOf(starts, starts.length * 2);
+				chars = Arrays.copyOf(chars, chars.length * 2);
+			}
+			starts[count] = pos;
+			chars[count] = checkLength(total);
+			int ascii = (int) Math.min(blockBytes, byteLength - pos);
+			if (this.isAscii(pos, ascii)) {
+				this.ascii.set(count);
+				pos += ascii;
+				total += ascii;
+				count++;
+				continue;
+			}
+			ByteBuffer in = this.bytes(pos, (int) Math.min(blockBytes, byteLength - pos));
+			boolean last = pos + in.remaining() == byteLength;
+			out.clear();
+			decode(decoder, in, out, last);
+			if (in.position() == 0)
+				throw new IOException("a character is longer than a block");
+			pos += in.position();
+			total += out.position();
+			count++;
+		}
+		starts[count] = byteLength;
+		chars[count] = this.length = checkLength(total);
+		this.blockStarts = Arrays.copyOf(starts, count + 1);
+		this.blockChars = Arrays.copyOf(chars, count + 1);
+	}
+
+	/**
+	 *
+	 * maps the file at path.
+	 *
+	 * @param path
+	 * @param charset
+	 * @return the text of the file.
+	 * @throws IOException
+	 *             if the file cannot be mapped, or holds more than
+	 *             Integer.MAX_VALUE characters
+	 * @throws IllegalArgumentException
+	 *             unless charset is UTF-8, ISO-8859-1, US-ASCII, UTF-16BE or
+	 *             UTF-16LE
+	 */
+	static MappedText map(Path path, Charset charset) throws IOException, IllegalArgumentException {
+		return map(path, charset, REGION_BYTES, BLOCK_BYTES);
+	}
+
+	static MappedText map(Path path, Charset charset, int regionBytes, int blockBytes)
+			throws IOException, IllegalArgumentException {
+		if (width(charset) == 0 && !charset.equals(StandardCharsets.UTF_8))
+			throw new IllegalArgumentException(charset + " cannot be decoded a block at a time");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer[] regions = new ByteBuffer[(int) ((size + regionBytes - 1) / regionBytes)];
+			for (int i = 0; i < regions.length; i++) {
+				long start = (long) i * regionBytes;
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionBytes, size - start));
+			}
+			// the mappings stay valid after the channel is closed.
+			return new MappedText(regions, regionBytes, size, charset, blockBytes);
+		}
+	}
+
+	private static int width(Charset charset) {
+		if (charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.US_ASCII))
+			return 1;
+		if (charset.equals(StandardCharsets.UTF_16BE) || charset.equals(StandardCharsets.UTF_16LE))
+			return 2;
+		return 0;
+	}
+
+	private static int checkLength(long length) throws IOException {
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("more than " + Integer.MAX_VALUE + " characters");
+		return (int) length;
+	}
+
+	private CharsetDecoder decoder() {
+		return this.charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	private static void decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, boolean last) {
+		decoder.reset();
+		decoder.decode(in, out, last);
+		if (last)
+			decoder.flush(out);
+	}
+
+	/**
+	 * @param pos
+	 * @param length
+	 * @return true if the charset is UTF-8 and the bytes of the file from pos
+	 *         are all ASCII, and in one region.
+	 */
+	private boolean isAscii(long pos, int length) {
+		if (!this.charset.equals(StandardCharsets.UTF_8))
+			return false;
+		int offset = (int) (pos % this.regionBytes);
+		if (offset + length > this.regionBytes)
+			return false;
+		ByteBuffer region = this.regions[(int) (pos / this.regionBytes)];
+		int end = offset + length;
+		long high = 0;
+		int i = offset;
+		for (; i + 8 <= end; i += 8)
+			high |= region.getLong(i);
+		for (; i < end; i++)
+			high |= region.get(i);
+		return (high & 0x8080808080808080L) == 0;
+	}
+
+	private byte byteAt(long pos) {
+		return this.regions[(int) (pos / this.regionBytes)].get((int) (pos % this.regionBytes));
+	}
+
+	/**
+	 * @param pos
+	 * @param length
+	 * @return the bytes of the file from pos, straight from the mapping unless
+	 *         they cross into the next region.
+	 */
+	private ByteBuffer bytes(long pos, int length) {
+		int region = (int) (pos / this.regionBytes);
+		int offset = (int) (pos % this.regionBytes);
+		if (offset + length <= this.regionBytes) {
+			ByteBuffer slice = this.regions[region].duplicate();
+			slice.position(offset).limit(offset + length);
+			return slice.slice();
+		}
+		byte[] copy = new byte[length];
+		for (int i = 0; i < length; i++)
+			copy[i] = this.byteAt(pos + i);
+		return ByteBuffer.wrap(copy);
+	}
+
+	@Override
+	public int length() {
+		return this.length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= this.length)
+			throw new IndexOutOfBoundsException();
+		if (this.width == 1) {
+			byte b = this.byteAt(index);
+			if (this.charset.equals(StandardCharsets.US_ASCII) && b < 0)
+				return '\uFFFD';
+			return (char) (b & 0xff);
+		}
+		if (this.width == 2) {
+			int first = this.byteAt(2L * index) & 0xff;
+			int second = this.byteAt(2L * index + 1) & 0xff;
+			if (this.charset.equals(StandardCharsets.UTF_16BE))
+				return (char) (first << 8 | second);
+			return (char) (second << 8 | first);
+		}
+		int block = this.lastBlock;
+		if (block < 0 || index < this.blockChars[block] || index >= this.blockChars[block + 1]) {
+			block = this.blockOf(index);
+			this.lastChars = this.ascii.get(block) ? null : this.decoded(block);
+			this.lastBlock = block;
+		}
+		int offset = index - this.blockChars[block];
+		if (this.lastChars == null)
+			return (char) this.byteAt(this.blockStarts[block] + offset);
+		return this.lastChars[offset];
+	}
+
+	/**
+	 * @param index
+	 * @return the block holding the character at index.
+	 */
+	private int blockOf(int index) {
+		int block = Arrays.binarySearch(this.blockChars, index);
+		if (block < 0)
+			return -block - 2;
+		// a block holding no characters shares its start with the next.
+		while (this.blockChars[block + 1] == index)
+			block++;
+		return block;
+	}
+
+	/**
+	 *
+	 * writes the characters in [from, to) to writer as the bytes of the file
+	 * they came from, straight out of the mapping, when encoding them in
+	 * charset would give back exactly those bytes: in ISO-8859-1, where every
+	 * byte is a character, and in UTF-8 where every block they lie in is
+	 * ASCII. Otherwise, or if there are fewer than DIRECT_WRITE_CHARS of them,
+	 * nothing is written.
+	 *
+	 * @param from
+	 * @param to
+	 * @param charset
+	 * @param writer
+	 * @return true if the characters were written.
+	 * @throws IOException
+	 *             if the channel of writer does
+	 */
+	boolean writeBytes(int from, int to, Charset charset, ChannelWriter writer) throws IOException {
+		if (to - from < DIRECT_WRITE_CHARS || !charset.equals(this.charset))
+			return false;
+		long begin;
+		long end;
+		if (charset.equals(StandardCharsets.ISO_8859_1)) {
+			begin = from;
+			end = to;
+		} else if (charset.equals(StandardCharsets.UTF_8)) {
+			int first = this.blockOf(from);
+			int last = this.blockOf(to - 1);
+			if (this.ascii.nextClearBit(first) <= last)
+				return false;
+			begin = this.blockStarts[first] + from - this.blockChars[first];
+			end = this.blockStarts[last] + to - this.blockChars[last];
+		} else {
+			return false;
+		}
+		// one slice for each region the bytes lie in.
+		for (long pos = begin; pos < end;) {
+			int length = (int) Math.min(end - pos, this.regionBytes - pos % this.regionBytes);
+			writer.write(this.bytes(pos, length));
+			pos += length;
+		}
+		return true;
+	}
+
+	/**
+	 * @param block
+	 * @return the characters of block, decoded now unless they are cached.
+	 */
+	private char[] decoded(int block) {
+		for (int i = 0; i < CACHED_BLOCKS; i++)
+			if (this.cachedBlocks[i] == block)
+				return this.cached[i];
+		long start = this.blockStarts[block];
+		ByteBuffer in = this.bytes(start, (int) (this.blockStarts[block + 1] - start));
+		char[] chars = new char[this.blockChars[block + 1] - this.blockChars[block]];
+		decode(this.decoder(), in, CharBuffer.wrap(chars), block + 2 == this.blockStarts.length);
+		int slot = this.nextSlot;
+		this.nextSlot = (slot + 1) % CACHED_BLOCKS;
+		this.cached[slot] = chars;
+		this.cachedBlocks[slot] = block;
+		return chars;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || start > end || end > this.length)
+			throw new IndexOutOfBoundsException();
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++)
+			chars[i - start] = this.charAt(i);
+		return new String(chars);
+	}
+
+	@Override
+	public String toString() {
+		return this.subSequence(0, this.length).toString();
+	}
+}
@@ -0,0 +1,207 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for MappedText and PieceTable.map(), against the same files read into
+ * Strings. Small regions and blocks are used so that characters fall across
+ * their edges.
+ *
+ */
+public class MappedTextTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path write(byte[] bytes) throws IOException {
+		Path path = this.folder.newFile().toPath();
+		Files.write(path, bytes);
+		return path;
+	}
+
+	// letters, and every so often a character of 2, 3 or 4 bytes in UTF-8.
+	private static String text(int length) {
+		Random random = new Random(230);
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < length) {
+			int r = random.nextInt(40);
+			if (r == 0)
+				sb.append('\u00E9');
+			else if (r == 1)
+				sb.append('\u20AC');
+			else if (r == 2)
+				sb.appendCodePoint(0x1F600);
+			else
+				sb.append((char) ('a' + r % 26));
+		}
+		return sb.toString();
+	}
+
+	private static void assertSameText(String expected, CharSequence actual) {
+		assertEquals(expected.length(), actual.length());
+		for (int i = 0; i < expected.length(); i++)
+			assertEquals(expected.charAt(i), actual.charAt(i));
+		// and out of order, to go back to blocks decoded before.
+		Random random = new Random(230);
+		for (int i = 0; i < 1000 && expected.length() > 0; i++) {
+			int index = random.nextInt(expected.length());
+			assertEquals(expected.charAt(index), actual.charAt(index));
+		}
+		assertEquals(expected, actual.toString());
+	}
+
+	@Test
+	public void testFixedWidthCharsets() throws IOException {
+		String s = text(5000);
+		for (Charset charset : new Charset[] { StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII,
+				StandardCharsets.UTF_16BE, StandardCharsets.UTF_16LE }) {
+			byte[] bytes = s.getBytes(charset);
+			MappedText text = MappedText.map(this.write(bytes), charset, 1000, 64);
+			assertSameText(new String(bytes, charset), text);
+		}
+	}
+
+	@Test
+	public void testUtf8() throws IOException {
+		String s = text(20000);
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		// regions and blocks that end inside characters.
+		for (int regionBytes : new int[] { 1001, 4096, MappedText.REGION_BYTES }) {
+			MappedText text = MappedText.map(this.write(bytes), StandardCharsets.UTF_8, regionBytes, 37);
+			assertSameText(s, text);
+		}
+		assertSameText(s, MappedText.map(this.write(bytes), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testMostlyAsciiUtf8() throws IOException {
+		// long runs of ASCII, read without decoding, between the others.
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			for (int j = 0; j < 500; j++)
+				sb.append((char) ('a' + (i + j) % 26));
+			sb.append(i % 2 == 0 ? "\u00E9" : "\uD83D\uDE00");
+		}
+		String s = sb.toString();
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		for (int blockBytes : new int[] { 7, 64, 1000 })
+			assertSameText(s, MappedText.map(this.write(bytes), StandardCharsets.UTF_8, 4099, blockBytes));
+	}
+
+	@Test
+	public void testMalformedUtf8() throws IOException {
+		byte[] bytes = { 'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82, 'c', (byte) 0xF0, (byte) 0x9F };
+		String expected = new String(bytes, StandardCharsets.UTF_8);
+		for (int blockBytes = 4; blockBytes < 10; blockBytes++)
+			assertSameText(expected, MappedText.map(this.write(bytes), StandardCharsets.UTF_8, 5, blockBytes));
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		assertEquals(0, MappedText.map(this.write(new byte[0]), StandardCharsets.UTF_8).length());
+		PieceTable t = PieceTable.map(this.write(new byte[0]), StandardCharsets.ISO_8859_1);
+		assertEquals(0, t.size());
+		t.add('a');
+		assertEquals("a", t.toString());
+	}
+
+	@Test
+	public void testOddUtf16File() throws IOException {
+		try {
+			MappedText.map(this.write(new byte[] { 0, 'a', 0 }), StandardCharsets.UTF_16BE);
+			fail("did not throw IOException");
+		} catch (IOException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testOtherCharsets() throws IOException {
+		// past the first block, UTF-16 would have to remember the byte order
+		// of the mark at the start of the file.
+		Path path = this.write("\uFEFFabc".getBytes(StandardCharsets.UTF_16LE));
+		for (Charset charset : new Charset[] { StandardCharsets.UTF_16, Charset.forName("UTF-32"),
+				Charset.forName("ISO-2022-JP"), Charset.forName("windows-1252") }) {
+			try {
+				PieceTable.map(path, charset);
+				fail("did not throw IllegalArgumentException");
+			} catch (IllegalArgumentException e) {
+				// success
+			}
+		}
+	}
+
+	@Test
+	public void testEditMappedFile() throws IOException {
+		String s = text(100000);
+		Path path = this.write(s.getBytes(StandardCharsets.UTF_8));
+		PieceTable t = PieceTable.map(path, StandardCharsets.UTF_8);
+		StringBuilder expected = new StringBuilder(s);
+		assertEquals(1, t.pieceCount());
+		Random random = new Random(230);
+		for (int i = 0; i < 2000; i++) {
+			int pos = random.nextInt(expected.length());
+			if (random.nextBoolean()) {
+				t.add('#', pos);
+				expected.insert(pos, '#');
+			} else {
+				assertEquals(expected.charAt(pos), t.delete(pos));
+				expected.deleteCharAt(pos);
+			}
+		}
+		assertEquals(expected.toString(), t.toString());
+		assertEquals(expected.indexOf("#", 5000), t.find("#", 5000));
+		// the file itself is never written to.
+		assertEquals(s, new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+	}
+
+	private void assertSaves(PieceTable t, Charset charset) throws IOException {
+		Path saved = this.folder.newFile().toPath();
+		try (FileChannel out = FileChannel.open(saved, StandardOpenOption.WRITE)) {
+			t.writeTo(out, charset);
+		}
+		assertEquals(charset.name(), t.toString(), new String(Files.readAllBytes(saved), charset));
+	}
+
+	@Test
+	public void testSaveMappedFile() throws IOException {
+		// ASCII with a run of other characters in the middle, so that some of
+		// the file is written from the mapping and some is encoded.
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 300000; i++)
+			sb.append((char) ('a' + i % 26));
+		sb.insert(150000, text(2000));
+		String s = sb.toString();
+		PieceTable t = PieceTable.map(this.write(s.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+		this.assertSaves(t, StandardCharsets.UTF_8);
+		t.add('\u00E9', 100);
+		t.delete(200000, 50);
+		t.add('#', t.size());
+		this.assertSaves(t, StandardCharsets.UTF_8);
+		this.assertSaves(t, StandardCharsets.UTF_16LE);
+
+		// every byte, in regions smaller than a piece.
+		byte[] bytes = new byte[100000];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) (i * 31);
+		Path path = this.write(bytes);
+		t = new PieceTable(MappedText.map(path, StandardCharsets.ISO_8859_1, 1000, 64));
+		t.add('x', 50000);
+		this.assertSaves(t, StandardCharsets.ISO_8859_1);
+		assertEquals(new String(bytes, StandardCharsets.ISO_8859_1), new String(Files.readAllBytes(path),
+				StandardCharsets.ISO_8859_1));
+	}
+}
@@ -7,10 +7,25 @@ import java.util.ArrayList;
 // belong to two different trees.
 
 public class Node {
+	// the rotation a node needs when it is the imbalance point.
+	static final byte BALANCED = 0;
+	static final byte SINGLE_LEFT = 1;
+	static final byte SINGLE_RIGHT = 2;
+	static final byte DOUBLE_LEFT = 3;
+	static final byte DOUBLE_RIGHT = 4;
+	// the direction of a node as the child of its parent.
+	static final byte ROOT = 0;
+	static final byte LEFT_CHILD = 1;
+	static final byte RIGHT_CHILD = 2;
+
+	// no AVL tree of int-many nodes is taller than this, so it bounds the
+	// explicit stacks that stand in for recursion.
+	static final int MAX_HEIGHT = 46;
+
 	private EditTree et;
-	private treatmentContainer tc;
-	// used for finding the imbalance point
-	private String childDirection;
+	private byte treatment;
+	// the rotation prescribed for this node when it is the imbalance point.
+	private byte childDirection;
 	// the direction of the current node as the child of its parent
 
 	public Node(EditTree et) {
@@ -22,15 +37,31 @@ public class Node {
 	}
 
 	public Node(char c, EditTree et) {
+		this.element = c;
+		this.et = et;
+		this.reuse(c, et);
+	}
+
+	/**
+	 *
+	 * turns this node back into a single-node tree whose element is c, so that
+	 * a node removed from a tree can be added again without allocating.
+	 *
+	 * @param c
+	 * @param et
+	 */
+	void reuse(char c, EditTree et) {
 		this.element = c;
 		this.et = et;
 		this.rank = 0;
-		this.tc = new treatmentContainer("balanced", null);
+		this.newlines = newlines(c);
+		this.width = (byte) utf8Length(c, (char) 0);
+		this.bytes = this.width;
 		this.balance = Code.SAME;
 		this.left = this.et.NULL_NODE;
 		this.right = this.et.NULL_NODE;
 		this.parent = this.et.NULL_NODE;
-		this.childDirection = "root";
+		this.childDirection = ROOT;
 	}
 
 	enum Code {
@@ -58,6 +89,9 @@ public class Node {
 	char element;
 	Node left, right; // subtrees
 	int rank; // inorder position of this node within its own subtree.
+	int newlines; // number of '\n' characters in this whole subtree.
+	long bytes; // length of this whole subtree in UTF-8.
+	byte width; // length of this node's own character in UTF-8.
 	Code balance;
 	Node parent; // You may want this field.
 	// Feel free to add other fields that you find useful
@@ -69,101 +103,223 @@ public class Node {
 
 	/**
 	 * 
-	 * handle the case when the height of this tree is greater than or equal to
-	 * that of the other tree in concatenate().
-	 *
-	 * @param q
-	 * @param thisRoot
-	 * @param thisHeight
-	 * @param otherHeight
-	 * @param thisOriginalSize
-	 * @return the new root after concatenating
-	 */
-	public Node joinTheOtherTree(Node q, Node thisRoot, int thisHeight, int otherHeight, int thisOriginalSize) {
-		// execute concatenation when the difference between the heights of two
-		// tree is not over 1.
-		if (otherHeight - thisHeight <= 1) {
-			q.left = thisRoot;
-			thisRoot.parent = q;
-			thisRoot.childDirection = "left";
-			q.right = this;
-			this.parent = q;
-			this.childDirection = "right";
-			q.rank = thisRoot.size();
-			if (thisHeight == otherHeight) {
-				q.balance = Code.SAME;
-			} else {
-				q.balance = Code.RIGHT;
-			}
-			return q;
+	 * makes this node the root of a tree holding left, then this node, then
+	 * right. Walks down the taller tree's inner spine to a subtree that is at
+	 * most one taller than the shorter tree, hangs this node there, and
+	 * rebalances upward as after an insertion, so the work is proportional to
+	 * the difference in heights. The height of the joined tree is left in
+	 * owner's joinedHeight, so that callers never have to measure it.
+	 *
+	 * @param left
+	 * @param leftHeight
+	 * @param leftSize
+	 * @param right
+	 * @param rightHeight
+	 * @param owner
+	 *            the tree the joined nodes will belong to
+	 * @return the root of the joined tree.
+	 */
+	public Node join(Node left, int leftHeight, int leftSize, Node right, int rightHeight, EditTree owner) {
+		this.et = owner;
+		left.detach(owner);
+		right.detach(owner);
+		this.detach(owner);
+
+		if (Math.abs(leftHeight - rightHeight) <= 1) {
+			// the two trees are close enough in height to be this node's
+			// children as they are.
+			this.hang(left, leftSize, right, leftHeight, rightHeight, owner);
+			owner.joinedHeight = Math.max(leftHeight, rightHeight) + 1;
+			owner.depth = 0;
+			owner.metrics.join();
+			return this;
 		}
 
-		// keep going down leftward
-		if (this.balance.equals(Code.RIGHT)) {
-			this.left = this.left.joinTheOtherTree(q, thisRoot, thisHeight, otherHeight - 2, thisOriginalSize);
+		Node p = owner.NULL_NODE;
+		Node c;
+		int h;
+		int depth = 0;
+		if (leftHeight > rightHeight) {
+			int added = right.newlines + newlines(this.element);
+			long addedBytes = right.bytes + this.width;
+			// walk down the right spine of the left tree; the sizes of the
+			// subtrees passed by are peeled off so that the rank of this node
+			// comes out right.
+			c = left;
+			h = leftHeight;
+			int cSize = leftSize;
+			while (h > rightHeight + 1) {
+				h -= c.balance.equals(Code.LEFT) ? 2 : 1;
+				cSize -= c.rank + 1;
+				c.newlines += added;
+				c.bytes += addedBytes;
+				c.et = owner;
+				p = c;
+				c = c.right;
+				depth++;
+			}
+			this.hang(c, cSize, right, h, rightHeight, owner);
+			p.right = this;
+			this.childDirection = RIGHT_CHILD;
 		} else {
-			this.left = this.left.joinTheOtherTree(q, thisRoot, thisHeight, otherHeight - 1, thisOriginalSize);
-			// rebalance if necessary
-			if (this.balance.equals(Code.LEFT)) {
-				if (this.left.balance.equals(Code.RIGHT))
-					return doubleRight(this, this.left, this.left.right);
-				if (this.left.balance.equals(Code.LEFT))
-					return singleRotation("right", this, this.left);
+			// walk down the left spine of the right tree; every node passed by
+			// gains the whole left tree and this node in front of it.
+			int added = left.newlines + newlines(this.element);
+			long addedBytes = left.bytes + this.width;
+			c = right;
+			h = rightHeight;
+			while (h > leftHeight + 1) {
+				h -= c.balance.equals(Code.RIGHT) ? 2 : 1;
+				c.rank += leftSize + 1;
+				c.newlines += added;
+				c.bytes += addedBytes;
+				c.et = owner;
+				p = c;
+				c = c.left;
+				depth++;
 			}
+			this.hang(left, leftSize, c, leftHeight, h, owner);
+			p.left = this;
+			this.childDirection = LEFT_CHILD;
 		}
-		// changing each node's rank because of looping down left children.
-		this.rank += thisOriginalSize + 1;
-		return this;
+		this.parent = p;
+
+		boolean grew = this.retraceGrowth();
+		owner.joinedHeight = Math.max(leftHeight, rightHeight) + (grew ? 1 : 0);
+		owner.depth = depth;
+		owner.metrics.join();
+		// a rotation may have lifted a node of the taller tree above the
+		// spine, so the root is claimed for owner too.
+		Node top = this;
+		while (!(top.parent instanceof NullNode))
+			top = top.parent;
+		top.et = owner;
+		return top;
 	}
 
 	/**
 	 * 
-	 * handle the case when the height of the other tree is greater than that of
-	 * this tree in concatenate().
+	 * cuts this node off from its parent, so that it can be the root of a tree
+	 * of owner's.
 	 *
-	 * @param q
-	 * @param otherRoot
-	 * @param thisHeight
-	 * @param otherHeight
-	 * @return the new root after concatenating
+	 * @param owner
 	 */
-	public Node takeFromTheOtherTree(Node q, Node otherRoot, int thisHeight, int otherHeight) {
-		// execute concatenation when the difference between the heights of two
-		// tree is not over 1.
-		if (thisHeight - otherHeight <= 1) {
-			q.left = this;
-			this.parent = q;
-			this.childDirection = "left";
-			q.right = otherRoot;
-			if (!(otherRoot.left instanceof NullNode)) {
-				otherRoot.parent = q;
-				otherRoot.childDirection = "right";
+	void detach(EditTree owner) {
+		if (this instanceof NullNode)
+			return;
+		this.et = owner;
+		this.parent = owner.NULL_NODE;
+		this.childDirection = ROOT;
+	}
+
+	/**
+	 * 
+	 * makes left and right the children of this node, whose subtree is
+	 * balanced given their heights.
+	 *
+	 * @param left
+	 * @param leftSize
+	 * @param right
+	 * @param leftHeight
+	 * @param rightHeight
+	 * @param owner
+	 */
+	void hang(Node left, int leftSize, Node right, int leftHeight, int rightHeight, EditTree owner) {
+		this.left = left;
+		this.right = right;
+		this.rank = leftSize;
+		this.newlines = left.newlines + right.newlines + newlines(this.element);
+		this.bytes = left.bytes + right.bytes + this.width;
+		if (leftHeight > rightHeight) {
+			this.balance = Code.LEFT;
+		} else if (leftHeight < rightHeight) {
+			this.balance = Code.RIGHT;
+		} else {
+			this.balance = Code.SAME;
+		}
+		if (!(left instanceof NullNode)) {
+			left.parent = this;
+			left.childDirection = LEFT_CHILD;
+		} else {
+			this.left = owner.NULL_NODE;
+		}
+		if (!(right instanceof NullNode)) {
+			right.parent = this;
+			right.childDirection = RIGHT_CHILD;
+		} else {
+			this.right = owner.NULL_NODE;
+		}
+	}
+
+	/**
+	 * 
+	 * walks up from this node, whose subtree has just become one taller,
+	 * updating balance codes and rotating where a node becomes unbalanced.
+	 * Unlike isBalance(), the grown subtree may itself be balanced, since it
+	 * was hung rather than inserted.
+	 *
+	 * @return true if the growth reached the root of the tree.
+	 */
+	private boolean retraceGrowth() {
+		Node current = this;
+		while (!(current.parent instanceof NullNode)) {
+			Node p = current.parent;
+			Code grownSide = current.childDirection == LEFT_CHILD ? Code.LEFT : Code.RIGHT;
+			if (p.balance.equals(Code.SAME)) {
+				// tip towards the taller side and keep going up.
+				p.balance = grownSide;
+				current = p;
+				continue;
+			}
+			if (!p.balance.equals(grownSide)) {
+				// the shorter side caught up.
+				p.balance = Code.SAME;
+				return false;
 			}
-			// only changing the q's rank because of looping down right
-			// children.
-			q.rank = this.size();
-			if (thisHeight == otherHeight) {
-				q.balance = Code.SAME;
+			Node rotated;
+			if (grownSide.equals(Code.LEFT)) {
+				if (current.balance.equals(Code.RIGHT)) {
+					rotated = this.doubleRight(p, current, current.right);
+				} else {
+					boolean wasBalanced = current.balance.equals(Code.SAME);
+					rotated = this.singleRotation(SINGLE_RIGHT, p, current);
+					if (wasBalanced) {
+						rotated.balance = Code.RIGHT;
+						rotated.right.balance = Code.LEFT;
+					}
+				}
 			} else {
-				q.balance = Code.LEFT;
+				if (current.balance.equals(Code.LEFT)) {
+					rotated = this.doubleLeft(p, current, current.left);
+				} else {
+					boolean wasBalanced = current.balance.equals(Code.SAME);
+					rotated = this.singleRotation(SINGLE_LEFT, p, current);
+					if (wasBalanced) {
+						rotated.balance = Code.LEFT;
+						rotated.left.balance = Code.RIGHT;
+					}
+				}
 			}
-			return q;
+			rotated.replaceInParent();
+			// a rotation restores the old height, unless the grown child was
+			// balanced, which leaves the rotated subtree one taller.
+			if (rotated.balance.equals(Code.SAME))
+				return false;
+			current = rotated;
 		}
+		return true;
+	}
 
-		// keep going down rightward
-		if (this.balance.equals(Code.LEFT)) {
-			this.right = this.right.takeFromTheOtherTree(q, otherRoot, thisHeight - 2, otherHeight);
-		} else {
-			this.right = this.right.takeFromTheOtherTree(q, otherRoot, thisHeight - 1, otherHeight);
-			// rebalance if necessary
-			if (this.balance.equals(Code.RIGHT)) {
-				if (this.right.balance.equals(Code.LEFT))
-					return doubleLeft(this, this.right, this.right.left);
-				if (this.right.balance.equals(Code.RIGHT))
-					return singleRotation("left", this, this.right);
-			}
+	/**
+	 * points this node's parent at this node, after a rotation moved it into
+	 * the place of the parent's old child.
+	 */
+	private void replaceInParent() {
+		if (this.childDirection == LEFT_CHILD) {
+			this.parent.left = this;
+		} else if (this.childDirection == RIGHT_CHILD) {
+			this.parent.right = this;
 		}
-		return this;
 	}
 
 	/**
@@ -174,107 +330,292 @@ public class Node {
 	 * @return the root after constructing its children according to the order
 	 *         of the string s.
 	 */
-	public Node forConstructorUsingString(String s) {
-		if (s.length() == 0)
+	public Node forConstructorUsingString(CharSequence s) {
+		return this.forConstructorUsingString(s, 0, s.length());
+	}
+
+	/**
+	 * 
+	 * construct a new tree using the characters of s from begin up to, but not
+	 * including, end. Indexes are kept instead of substrings, so every
+	 * character is read once, and the ranges still to be built are kept on an
+	 * explicit stack instead of the call stack. The character before begin, if
+	 * there is one, counts as the one before the first, since a range is built
+	 * as part of all of s.
+	 *
+	 * @param s
+	 * @param begin
+	 * @param end
+	 * @return the root after constructing its children according to the order
+	 *         of the characters.
+	 */
+	public Node forConstructorUsingString(CharSequence s, int begin, int end) {
+		if (begin == end)
 			return this.et.NULL_NODE;
-		// start in the middle of the string because of in-order trasversal.
-		Node newNode = new Node(s.charAt(s.length() / 2), this.et);
-		// newNode has a rank that is equal to the length of the first half
-		// subtring, which is the left subtree of newNode.
-		newNode.rank = s.substring(0, s.length() / 2).length();
-		// update the balance of newNode.
-		if (s.length() % 2 == 0) {
-			newNode.balance = Code.LEFT;
-		} else {
-			newNode.balance = Code.SAME;
-		}
-		// recursively call this method to set the left child and the right
-		// child using each half of the string.
-		newNode.left = newNode.forConstructorUsingString(s.substring(0, s.length() / 2));
-		// set newNode be its children's parent.
-		if (!(newNode.left instanceof NullNode))
-			newNode.left.parent = newNode;
-		newNode.right = newNode.forConstructorUsingString(s.substring(s.length() / 2 + 1));
-		if (!(newNode.right instanceof NullNode))
-			newNode.right.parent = newNode;
-		return newNode;
+		// a range waiting to be built, with the node it hangs from. Each range
+		// popped pushes at most its two halves, so the stack never holds more
+		// than one range per level, plus one.
+		int[] begins = new int[MAX_HEIGHT + 1];
+		int[] ends = new int[MAX_HEIGHT + 1];
+		Node[] parents = new Node[MAX_HEIGHT + 1];
+		byte[] sides = new byte[MAX_HEIGHT + 1];
+		begins[0] = begin;
+		ends[0] = end;
+		parents[0] = this.et.NULL_NODE;
+		sides[0] = ROOT;
+		int top = 1;
+		Node root = this.et.NULL_NODE;
+		// true once a character is met that is a newline or not ASCII.
+		boolean recount = false;
+		while (top > 0) {
+			top--;
+			begin = begins[top];
+			end = ends[top];
+			// start in the middle of the range because of in-order trasversal.
+			int middle = begin + (end - begin) / 2;
+			Node newNode = new Node(s.charAt(middle), this.et);
+			if (middle > 0)
+				newNode.width = (byte) utf8Length(newNode.element, s.charAt(middle - 1));
+			recount |= newNode.newlines != 0 || newNode.width != 1;
+			// right unless a character is not ASCII.
+			newNode.bytes = end - begin;
+			// newNode has a rank that is equal to the length of the first half
+			// of the range, which is the left subtree of newNode.
+			newNode.rank = middle - begin;
+			// update the balance of newNode. Both halves are built the same
+			// way, so a half of k characters is floor(log2(k)) high.
+			if (EditTree.heightOfBuilt(newNode.rank) > EditTree.heightOfBuilt(end - middle - 1)) {
+				newNode.balance = Code.LEFT;
+			} else {
+				newNode.balance = Code.SAME;
+			}
+			// set newNode be its parent's child.
+			newNode.parent = parents[top];
+			newNode.childDirection = sides[top];
+			if (sides[top] == LEFT_CHILD) {
+				parents[top].left = newNode;
+			} else if (sides[top] == RIGHT_CHILD) {
+				parents[top].right = newNode;
+			} else {
+				root = newNode;
+			}
+			if (end > middle + 1) {
+				begins[top] = middle + 1;
+				ends[top] = end;
+				parents[top] = newNode;
+				sides[top] = RIGHT_CHILD;
+				top++;
+			}
+			if (middle > begin) {
+				begins[top] = begin;
+				ends[top] = middle;
+				parents[top] = newNode;
+				sides[top] = LEFT_CHILD;
+				top++;
+			}
+		}
+		// the nodes are made parents first, so their counts are added up
+		// afterwards, children first.
+		if (recount)
+			recountSubtrees(root);
+		return root;
+	}
+
+	/**
+	 * 
+	 * sets the newline count and UTF-8 length of every node below root, which
+	 * is not a NullNode, from those of its children, visiting the nodes in
+	 * post-order through the parent links.
+	 *
+	 * @param root
+	 */
+	private static void recountSubtrees(Node root) {
+		Node current = firstInPostOrder(root);
+		while (true) {
+			current.recount();
+			if (current == root)
+				return;
+			Node p = current.parent;
+			if (current.childDirection == LEFT_CHILD && !(p.right instanceof NullNode)) {
+				current = firstInPostOrder(p.right);
+			} else {
+				current = p;
+			}
+		}
+	}
+
+	private static Node firstInPostOrder(Node node) {
+		while (true) {
+			if (!(node.left instanceof NullNode)) {
+				node = node.left;
+			} else if (!(node.right instanceof NullNode)) {
+				node = node.right;
+			} else {
+				return node;
+			}
+		}
+	}
+
+	static int newlines(char c) {
+		return c == '\n' ? 1 : 0;
 	}
 
 	/**
 	 * 
-	 * returns a treatmentContainer that specifies the rotation and executed
-	 * node if needed.
+	 * returns the length of c in UTF-8, when previous comes right before it.
+	 * A surrogate pair takes four bytes, one counted for its high surrogate
+	 * and three for its low one. An unpaired surrogate, which UTF-8 cannot
+	 * encode, takes the one byte of the '?' that encoders replace it with. So
+	 * only a low surrogate depends on what comes before it; previous is 0 for
+	 * the first character.
+	 *
+	 * @param c
+	 * @param previous
+	 * @return the number of bytes c takes in UTF-8.
+	 */
+	static int utf8Length(char c, char previous) {
+		if (c < 0x80)
+			return 1;
+		if (c < 0x800)
+			return 2;
+		if (Character.isHighSurrogate(c))
+			return 1;
+		if (Character.isLowSurrogate(c))
+			return Character.isHighSurrogate(previous) ? 3 : 1;
+		return 3;
+	}
+
+	/**
+	 * 
+	 * sets the UTF-8 length of this node's character, after what comes before
+	 * it changed, and adds the difference to the lengths of its subtree and
+	 * of those above it.
+	 *
+	 * @param width
+	 */
+	void setWidth(int width) {
+		int difference = width - this.width;
+		if (difference == 0)
+			return;
+		this.width = (byte) width;
+		for (Node current = this; !(current instanceof NullNode); current = current.parent)
+			current.bytes += difference;
+	}
+
+	/**
+	 * 
+	 * sets the UTF-8 length of node's character from that of the one before
+	 * it, pred, which is a NullNode if there is none. Only a low surrogate can
+	 * need it.
+	 *
+	 * @param node
+	 * @param pred
+	 */
+	static void fitWidth(Node node, Node pred) {
+		if (Character.isLowSurrogate(node.element))
+			node.setWidth(utf8Length(node.element, pred instanceof NullNode ? 0 : pred.element));
+	}
+
+	static Node successor(Node node) {
+		if (!(node.right instanceof NullNode)) {
+			node = node.right;
+			while (!(node.left instanceof NullNode))
+				node = node.left;
+			return node;
+		}
+		while (node.parent.right == node)
+			node = node.parent;
+		return node.parent;
+	}
+
+	static Node predecessor(Node node) {
+		if (!(node.left instanceof NullNode)) {
+			node = node.left;
+			while (!(node.right instanceof NullNode))
+				node = node.right;
+			return node;
+		}
+		while (node.parent.left == node)
+			node = node.parent;
+		return node.parent;
+	}
+
+	/**
+	 * 
+	 * returns the imbalance point, with the rotation it needs recorded in its
+	 * treatment, or null if no rotation is needed.
 	 *
 	 * @param current
-	 * @return a treatmentContainer that specifies the rotation and executed
-	 *         node if needed.
+	 * @return the imbalance point, or null if no rotation is needed.
 	 */
-	public treatmentContainer updateDeletionBalance(Node current) {
+	public Node updateDeletionBalance(Node current) {
 		while (!(current.parent instanceof NullNode)) {
 			if (current.parent.balance.equals(Code.LEFT)) {
 				// parent is tipped left.
-				if (current.childDirection.equals("left")) {
+				if (current.childDirection == LEFT_CHILD) {
 					// when the deleted node is the left child.
 					current.parent.balance = Code.SAME;
 				} else {
 					if (current.parent.left.balance.equals(Code.RIGHT)) {
 						// when the deleted node is the right child and the
 						// parent's left child is tipped right.
-						return new treatmentContainer("dr", current.parent);
+						return prescribe(current.parent, DOUBLE_RIGHT);
 					}
 					// when the parent's left child is tipped left or balanced.
-					return new treatmentContainer("sr", current.parent);
+					return prescribe(current.parent, SINGLE_RIGHT);
 				}
 			} else if (current.parent.balance.equals(Code.RIGHT)) {
 				// parent is tipped right
-				if (current.childDirection.equals("right")) {
+				if (current.childDirection == RIGHT_CHILD) {
 					// when the deleted node is the right child.
 					current.parent.balance = Code.SAME;
 				} else {
 					if (current.parent.right.balance.equals(Code.LEFT)) {
 						// when the deleted node is the left child and the
 						// parent's right child is tipped right.
-						return new treatmentContainer("dl", current.parent);
+						return prescribe(current.parent, DOUBLE_LEFT);
 					}
 					// when the parent's right child is tipped left or balanced.
-					return new treatmentContainer("sl", current.parent);
+					return prescribe(current.parent, SINGLE_LEFT);
 				}
 			} else {
 				// parent is equally balanced
-				if (current.childDirection.equals("right")) {
+				if (current.childDirection == RIGHT_CHILD) {
 					current.parent.balance = Code.LEFT;
 				} else {
 					current.parent.balance = Code.RIGHT;
 				}
-				return new treatmentContainer("balanced", null);
+				return null;
 			}
 			current = current.parent;
 		}
-		return new treatmentContainer("balanced", null);
+		return null;
 	}
 
 	/**
-	 * @return the smallest node in the right subtree.
+	 * @return true if the rotation prescribed for this node makes its subtree
+	 *         one shorter.
 	 */
-	public char findSmallestOnRight() {
-		if (this.left instanceof NullNode) {
-			return this.element;
-		}
-		return this.left.findSmallestOnRight();
+	private boolean rotationShortensSubtree() {
+		if (this.treatment == SINGLE_LEFT)
+			return !this.right.balance.equals(Code.SAME);
+		if (this.treatment == SINGLE_RIGHT)
+			return !this.left.balance.equals(Code.SAME);
+		return true;
 	}
 
 	/**
 	 * 
 	 * returns the current node, or the new node if rotation is needed.
 	 *
-	 * @param tc
+	 * @param found
 	 * @return the current node, or the new node if rotation is needed.
 	 */
-	public Node rotateIfNeededInDeletion(treatmentContainer tc) {
-		if (!tc.treatment.equals("balanced")) {
-			if (tc.treatment.equals("sl")) {
+	public Node rotateIfNeeded(Node found) {
+		if (found != null) {
+			if (found.treatment == SINGLE_LEFT) {
 				Code oldBalance = this.right.balance;
-				Node temp = singleRotation("left", this, this.right);
+				Node temp = singleRotation(SINGLE_LEFT, this, this.right);
 				if (oldBalance.equals(Code.SAME)) {
 					// when the old balance of the child node is SAME, the new
 					// parent and child's balance will not be SAME.
@@ -283,9 +624,9 @@ public class Node {
 				}
 				return temp;
 			}
-			if (tc.treatment.equals("sr")) {
+			if (found.treatment == SINGLE_RIGHT) {
 				Code oldBalance = this.left.balance;
-				Node temp = singleRotation("right", this, this.left);
+				Node temp = singleRotation(SINGLE_RIGHT, this, this.left);
 				if (oldBalance.equals(Code.SAME)) {
 					// when the old balance of the child node is SAME, the new
 					// parent and child's balance will not be SAME.
@@ -294,9 +635,9 @@ public class Node {
 				}
 				return temp;
 			}
-			if (tc.treatment.equals("dl"))
+			if (found.treatment == DOUBLE_LEFT)
 				return doubleLeft(this, this.right, this.right.left);
-			if (tc.treatment.equals("dr"))
+			if (found.treatment == DOUBLE_RIGHT)
 				return doubleRight(this, this.left, this.left.right);
 		}
 		return this;
@@ -304,87 +645,170 @@ public class Node {
 
 	/**
 	 * 
-	 * returns the deleted node after rebalancing.
+	 * returns the root after deleting the node at pos below this node, which
+	 * is the root. Walks down to the node, unlinks it, then walks back up
+	 * through the parent links, rotating at each imbalance point. As in add(),
+	 * every node on the way down is claimed for this node's tree.
 	 *
 	 * @param pos
 	 * @param box
-	 * @return the deleted node after rebalancing.
+	 * @return the root after deleting and rebalancing.
 	 */
 	public Node delete(int pos, DropBox box) {
-		if (pos == this.rank) {
-			box.setElement(this.element);
-			if (this.left instanceof NullNode) {
-				if (this.right instanceof NullNode) {
-					// when the deleted node has no children.
-					this.parent.tc = updateDeletionBalance(this);
-					return this.et.NULL_NODE;
-				}
-				// when the deleted node only has a right child.
-				this.balance = Code.SAME;
-				this.parent.tc = updateDeletionBalance(this);
-				return this.right;
+		EditTree owner = this.et;
+		Node target = this;
+		int depth = 1;
+		// every node that the deleted node is left of loses one from its rank,
+		// and every node above it one byte, until the character is known.
+		while (pos != target.rank) {
+			target.et = owner;
+			target.bytes--;
+			depth++;
+			if (pos < target.rank) {
+				target.rank--;
+				target = target.left;
+			} else {
+				pos -= target.rank + 1;
+				target = target.right;
 			}
-			if (this.right instanceof NullNode) {
-				// when the deleted node only has a left child.
-				this.balance = Code.SAME;
-				this.parent.tc = updateDeletionBalance(this);
-				return this.left;
+		}
+		return this.unlink(target, box, depth);
+	}
+
+	/**
+	 * 
+	 * returns the root after deleting target, below this node, which is the
+	 * root. Works up from target instead of down from the root, so that a
+	 * cursor at target does not pay for a descent.
+	 *
+	 * @param target
+	 * @param box
+	 * @return the root after deleting and rebalancing.
+	 */
+	Node delete(Node target, DropBox box) {
+		EditTree owner = this.et;
+		int depth = 1;
+		// every node that the deleted node is left of loses one from its rank,
+		// and every node above it one byte.
+		for (Node current = target; !(current.parent instanceof NullNode); current = current.parent) {
+			current.parent.et = owner;
+			if (current.childDirection == LEFT_CHILD)
+				current.parent.rank--;
+			current.parent.bytes--;
+			depth++;
+		}
+		return this.unlink(target, box, depth);
+	}
+
+	/**
+	 * 
+	 * returns the root after unlinking target, whose ancestors' ranks have
+	 * already been made to leave it out, and whose ancestors' UTF-8 lengths
+	 * have been made one byte shorter, and rebalancing. Newline counts and
+	 * the bytes of wider characters are only known once target is reached, so
+	 * they are brought up to date here, on the way back up, and only when a
+	 * newline or a character that is not ASCII is deleted or moved. A low
+	 * surrogate right after target gets a new character before it, so its
+	 * UTF-8 length is worked out again.
+	 *
+	 * @param target
+	 * @param box
+	 * @param depth
+	 *            how many nodes were walked through to reach target
+	 * @return the root after unlinking and rebalancing.
+	 */
+	private Node unlink(Node target, DropBox box, int depth) {
+		EditTree owner = this.et;
+		Node root = this;
+		box.setElement(target.element);
+		Node after = successor(target);
+		if (!(after instanceof NullNode) && Character.isLowSurrogate(after.element))
+			fitWidth(after, predecessor(target));
+		target.newlines -= newlines(target.element);
+		target.bytes -= target.width;
+		unaccount(target.parent, null, target.element, target.width);
+		if (!(target.left instanceof NullNode) && !(target.right instanceof NullNode)) {
+			// when the deleted node has two children, its successor takes its
+			// element and is unlinked instead.
+			target.et = owner;
+			Node successor = target.right;
+			depth++;
+			while (!(successor.left instanceof NullNode)) {
+				successor.et = owner;
+				successor.rank--;
+				successor.bytes--;
+				successor = successor.left;
+				depth++;
 			}
-			// when the deleted node has two children.
-			this.element = this.right.findSmallestOnRight();
-			// replace the deleted node with its successor.
-			this.right = this.right.delete(0, new DropBox('`'));
-			// pass another DropBox so that it won't change the element of the
-			// deleted node.
-
-		} else if (pos < this.rank) {
-			this.rank--;
-			this.left = this.left.delete(pos, box);
+			target.element = successor.element;
+			target.width = successor.width;
+			// the nodes between target and its successor lose the successor's
+			// character to target, whose counts stay the same.
+			unaccount(successor.parent, target, successor.element, successor.width);
+			target = successor;
+		}
+
+		// the target has at most one child, which takes its place.
+		Node patient = updateDeletionBalance(target);
+		Node replacement = target.left instanceof NullNode ? target.right : target.left;
+		if (!(replacement instanceof NullNode)) {
+			replacement.et = owner;
+			replacement.parent = target.parent;
+			replacement.childDirection = target.childDirection;
+		}
+		if (target.parent instanceof NullNode) {
+			root = replacement;
+		} else if (target.childDirection == LEFT_CHILD) {
+			target.parent.left = replacement;
 		} else {
-			this.right = this.right.delete(pos - (this.rank + 1), box);
-		}
-
-		// update parent's balance and check if rotations are needed.
-		if (!this.tc.treatment.equals("balanced")) {
-			if (this.equals(this.tc.patient)) {
-				if (!(this.parent instanceof NullNode)) {
-					if (this.parent.balance.equals(Code.RIGHT)) {
-						if (this.childDirection.equals("right")) {
-							this.parent.balance = Code.SAME;
-							this.parent.tc = updateDeletionBalance(this.parent);
-						} else {
-							this.parent.tc = updateDeletionBalance(this);
-							// keeping going up and check if further rotations
-							// are needed.
-						}
-					} else if (this.parent.balance.equals(Code.LEFT)) {
-						if (this.childDirection.equals("left")) {
-							this.parent.balance = Code.SAME;
-							this.parent.tc = updateDeletionBalance(this.parent);
-						} else {
-							this.parent.tc = updateDeletionBalance(this);
-							// keeping going up and check if further rotations
-							// are needed.
-						}
-					}
-				}
-			} else {
-				// when the patient is not the current node, pass the
-				// treatmentConatiner to its parent.
-				this.parent.tc = this.tc;
-				this.tc = new treatmentContainer("balanced", null);
+			target.parent.right = replacement;
+		}
+		owner.recycle(target);
+		owner.depth = depth;
+
+		while (patient != null) {
+			// the rotation makes this subtree one shorter, unless it is a
+			// single rotation whose child is balanced. When it does, the
+			// parent sees the same change as a deletion on this side.
+			boolean shortens = patient.rotationShortensSubtree();
+			Node rotated = patient.rotateIfNeeded(patient);
+			rotated.replaceInParent();
+			if (rotated.parent instanceof NullNode) {
+				rotated.et = owner;
+				root = rotated;
+				break;
 			}
+			patient = shortens ? updateDeletionBalance(rotated) : null;
 		}
+		return root;
+	}
 
-		treatmentContainer currentTC = this.tc;
-		this.tc = new treatmentContainer("balanced", null);
-		// reset the treatmentConatiner.
-		return rotateIfNeededInDeletion(currentTC);
+	/**
+	 * 
+	 * takes c out of the newline counts of the nodes from node up to, but not
+	 * including, top, or up to the root if top is null, whose UTF-8 lengths
+	 * have already lost one of c's width bytes.
+	 *
+	 * @param node
+	 * @param top
+	 * @param c
+	 * @param width
+	 */
+	private static void unaccount(Node node, Node top, char c, int width) {
+		int newlines = newlines(c);
+		int wider = width - 1;
+		if (newlines == 0 && wider == 0)
+			return;
+		for (Node current = node; current != top && !(current instanceof NullNode); current = current.parent) {
+			current.newlines -= newlines;
+			current.bytes -= wider;
+		}
 	}
 
 	/**
 	 * 
-	 * returns the root after copying the whole tree.
+	 * returns the root after copying the whole tree, in pre-order, with an
+	 * explicit stack of the nodes still to be copied.
 	 *
 	 * @param copy
 	 * @param newParent
@@ -393,223 +817,244 @@ public class Node {
 	public Node copy(EditTree copy, Node newParent) {
 		if (this instanceof NullNode)
 			return copy.NULL_NODE;
+		Node root = this.copyNode(copy, newParent);
+		// pairs of a node of this tree and its copy, whose children are still
+		// to be copied.
+		Node[] originals = new Node[MAX_HEIGHT + 1];
+		Node[] copies = new Node[MAX_HEIGHT + 1];
+		originals[0] = this;
+		copies[0] = root;
+		int top = 1;
+		while (top > 0) {
+			top--;
+			Node original = originals[top];
+			Node newNode = copies[top];
+			if (!(original.right instanceof NullNode)) {
+				newNode.right = original.right.copyNode(copy, newNode);
+				originals[top] = original.right;
+				copies[top] = newNode.right;
+				top++;
+			}
+			if (!(original.left instanceof NullNode)) {
+				newNode.left = original.left.copyNode(copy, newNode);
+				originals[top] = original.left;
+				copies[top] = newNode.left;
+				top++;
+			}
+		}
+		return root;
+	}
+
+	private Node copyNode(EditTree copy, Node newParent) {
 		Node newNode = new Node(this.element, copy);
 		newNode.childDirection = this.childDirection;
 		newNode.parent = newParent;
 		newNode.rank = this.rank;
-		newNode.tc = this.tc;
+		newNode.newlines = this.newlines;
+		newNode.width = this.width;
+		newNode.bytes = this.bytes;
 		newNode.balance = this.balance;
-		newNode.left = this.left.copy(copy, newNode);
-		newNode.right = this.right.copy(copy, newNode);
 		return newNode;
 	}
 
 	/**
 	 * 
-	 * return the element of the node at the position.
+	 * copies the elements at positions pos to pos + length - 1 of this subtree
+	 * into dst, starting at dstBegin. Walks down to pos, keeping the nodes it
+	 * went left at on an explicit stack, then in order from there, so only the
+	 * path down to pos and the nodes being copied are visited. The stack saves
+	 * climbing back up through the parent links, which took longer than the
+	 * recursion it replaced.
 	 *
 	 * @param pos
-	 * @return the element of the node at the position.
+	 * @param length
+	 * @param dst
+	 * @param dstBegin
 	 */
-	public char get(int pos) {
-		if (pos < this.rank) {
-			return this.left.get(pos);
-		} else if (pos == this.rank) {
-			return this.element;
-		} else {
-			return this.right.get(pos - (this.rank + 1));
+	public void getChars(int pos, int length, char[] dst, int dstBegin) {
+		if (this instanceof NullNode || length == 0)
+			return;
+		// the nodes whose left subtrees are being copied, which come next.
+		Node[] pending = new Node[MAX_HEIGHT + 1];
+		int top = 0;
+		Node current = this;
+		while (pos != current.rank) {
+			if (pos < current.rank) {
+				pending[top++] = current;
+				current = current.left;
+			} else {
+				pos -= current.rank + 1;
+				current = current.right;
+			}
+		}
+		int end = dstBegin + length;
+		while (true) {
+			dst[dstBegin++] = current.element;
+			if (dstBegin == end)
+				return;
+			if (current.right instanceof NullNode) {
+				// the range never goes past the end of this subtree, so there
+				// is always a node left to come back to.
+				current = pending[--top];
+			} else {
+				current = current.right;
+				while (!(current.left instanceof NullNode)) {
+					pending[top++] = current;
+					current = current.left;
+				}
+			}
 		}
 	}
 
 	/**
 	 * 
-	 * handle the case when the imbalace node is not the current node and it
-	 * needs to be rotate at parent node.
+	 * return the element of the node at the position.
 	 *
-	 * @param fromLeft
-	 * @return the current node after rotating if needed.
+	 * @param pos
+	 * @return the element of the node at the position.
 	 */
-	public Node reviewTreatmentContainer(boolean fromLeft) {
-		// if coming from the left child, the treatment can only be right
-		// rotations.
-		if (fromLeft) {
-			if (!this.left.tc.treatment.equals("balanced")) {
-				if (this.left.tc.treatment.equals("dr")) {
-					if (this.equals(this.left.tc.patient) && isValid(this, this.left, this.left.right)) {
-						this.left.tc = new treatmentContainer("balanced", null);
-						return doubleRight(this, this.left, this.left.right);
-					}
-				}
-				if (this.left.tc.treatment.equals("sr")) {
-					if (this.equals(this.left.tc.patient)) {
-						this.left.tc = new treatmentContainer("balanced", null);
-						return singleRotation("right", this, this.left);
-					}
-				}
-				// continue search for the imbalance point by going up to the
-				// parents.
-				this.tc = this.left.tc;
-				this.left.tc = new treatmentContainer("balanced", null);
-			}
-		} else {
-			// if coming from the right child, the treatment can only be left
-			// rotations.
-			if (!this.right.tc.treatment.equals("balanced")) {
-				if (this.right.tc.treatment.equals("dl")) {
-					// if (this.element == this.right.tc.patient.element) {
-					if (this.equals(this.right.tc.patient) && isValid(this, this.right, this.right.left)) {
-						this.right.tc = new treatmentContainer("balanced", null);
-						return doubleLeft(this, this.right, this.right.left);
-					}
-				}
-				if (this.right.tc.treatment.equals("sl")) {
-					if (this.equals(this.right.tc.patient)) {
-						this.right.tc = new treatmentContainer("balanced", null);
-						return singleRotation("left", this, this.right);
-					}
-				}
-				// continue search for the imbalance point by going up to the
-				// parents.
-				this.tc = this.right.tc;
-				this.right.tc = new treatmentContainer("balanced", null);
+	public char get(int pos) {
+		Node current = this;
+		while (pos != current.rank) {
+			if (pos < current.rank) {
+				current = current.left;
+			} else {
+				pos -= current.rank + 1;
+				current = current.right;
 			}
 		}
-		return this;
+		return current.element;
 	}
 
 	/**
 	 * 
-	 * return the root after adding a new node at the position.
+	 * return the root after adding a new node at the position below this node,
+	 * which is the root. Walks down to where the new leaf goes, then lets
+	 * isBalance() walk back up through the parent links to the imbalance point,
+	 * if there is one. Every node on the way down is claimed for this node's
+	 * tree, since a split or concatenate may have moved it from another, so
+	 * that rotations are counted where they happen.
 	 *
 	 * @param c
 	 * @param pos
 	 * @return the root after adding a new node at the position.
 	 */
 	public Node add(char c, int pos) {
-		// go left of the root
-		if (pos <= this.rank) {
-			this.rank++;
-			if (this.left instanceof NullNode) {
-				// when the root has no left child.
-				this.left = new Node(c, this.et);
-				this.left.parent = this;
-				this.left.childDirection = "left";
-				isBalance(this.left); // no need to do rotation
-				return this;
-			}
-			if (pos <= this.left.rank && this.left.left instanceof NullNode) {
-				this.left.rank++;
-				this.left.left = new Node(c, this.et);
-				this.left.left.parent = this.left;
-				this.left.left.childDirection = "left";
-				treatmentContainer temptc = isBalance(this.left.left);
-				if (!temptc.treatment.equals("balanced")) {
-					if (temptc.treatment.equals("sr")) {
-						if (this.equals(temptc.patient)) {
-							return singleRotation("right", this, this.left);
-						}
-					}
-					// if the imbalance point is not the current node, passed
-					// back to its parent.
-					this.tc = temptc;
-					return this;
+		EditTree owner = this.et;
+		Node leaf = owner.newNode(c);
+		int added = newlines(c);
+		int addedBytes = leaf.width;
+		Node current = this;
+		// the last nodes turned away from on each side are the new node's
+		// neighbours.
+		Node pred = owner.NULL_NODE;
+		Node succ = owner.NULL_NODE;
+		int depth = 1;
+		while (true) {
+			current.et = owner;
+			current.newlines += added;
+			current.bytes += addedBytes;
+			if (pos <= current.rank) {
+				// go left; the new node will be in the left subtree.
+				current.rank++;
+				succ = current;
+				if (current.left instanceof NullNode) {
+					current.left = leaf;
+					leaf.childDirection = LEFT_CHILD;
+					break;
 				}
-				// return this if balance is remained.
-				return this;
-			}
-			if (pos > this.left.rank && this.left.right instanceof NullNode) {
-				this.left.right = new Node(c, this.et);
-				this.left.right.parent = this.left;
-				this.left.right.childDirection = "right";
-				treatmentContainer temptc = isBalance(this.left.right);
-				if (!temptc.treatment.equals("balanced")) {
-					if (temptc.treatment.equals("dr")) {
-						if (this.equals(temptc.patient) && isValid(this, this.left, this.left.right))
-							return doubleRight(this, this.left, this.left.right);
-					}
-					this.tc = temptc;
-					return this;
+				current = current.left;
+			} else {
+				pos -= current.rank + 1;
+				pred = current;
+				if (current.right instanceof NullNode) {
+					current.right = leaf;
+					leaf.childDirection = RIGHT_CHILD;
+					break;
 				}
-				// return this if balance is remained.
-				return this;
+				current = current.right;
 			}
-
-			this.left = this.left.add(c, pos);
-
-			// check if the left child tells the current node to do rotations.
-			return this.reviewTreatmentContainer(true);
-
-			/////////////////////////////////////////////////////////////////////////////////////
-		}
-		// go right of the root
-		if (this.right instanceof NullNode) {
-			this.right = new Node(c, this.et);
-			this.right.parent = this;
-			this.right.childDirection = "right";
-			isBalance(this.right);
-			return this;
+			depth++;
 		}
-		if ((pos - this.rank - 1) > this.right.rank && this.right.right instanceof NullNode) {
-			this.right.right = new Node(c, this.et);
-			this.right.right.childDirection = "right";
-			this.right.right.parent = this.right;
-			treatmentContainer temptc = isBalance(this.right.right);
-			if (!temptc.treatment.equals("balanced")) {
-				if (temptc.treatment.equals("sl")) {
-					if (this.equals(temptc.patient)) {
-						return singleRotation("left", this, this.right);
-					}
-				}
-				this.tc = temptc;
-				return this;
-			}
-			// return this if balance is remained.
-			return this;
+		leaf.parent = current;
+		owner.depth = depth;
+		fitWidth(leaf, pred);
+		if (!(succ instanceof NullNode))
+			fitWidth(succ, leaf);
+		return this.rebalanceAfterAdding(leaf);
+	}
+
+	/**
+	 * 
+	 * returns the root after adding a new node holding c right before next, or
+	 * right after it if after is true, in which case next must be the last
+	 * node. This node is the root. Works up from next instead of down from the
+	 * root, so that a cursor at next does not pay for a descent.
+	 *
+	 * @param next
+	 * @param c
+	 * @param after
+	 * @return the root after adding the new node.
+	 */
+	Node add(Node next, char c, boolean after) {
+		EditTree owner = this.et;
+		Node leaf = owner.newNode(c);
+		if (after) {
+			next.right = leaf;
+			leaf.childDirection = RIGHT_CHILD;
+			leaf.parent = next;
+		} else if (next.left instanceof NullNode) {
+			next.left = leaf;
+			leaf.childDirection = LEFT_CHILD;
+			leaf.parent = next;
+		} else {
+			// the new node goes right after next's predecessor.
+			Node predecessor = next.left;
+			while (!(predecessor.right instanceof NullNode))
+				predecessor = predecessor.right;
+			predecessor.right = leaf;
+			leaf.childDirection = RIGHT_CHILD;
+			leaf.parent = predecessor;
 		}
-		if ((pos - this.rank - 1) <= this.right.rank && this.right.left instanceof NullNode) {
-			this.right.rank++;
-			this.right.left = new Node(c, this.et);
-			this.right.left.childDirection = "left";
-			this.right.left.parent = this.right;
-			treatmentContainer temptc = isBalance(this.right.left);
-			if (!temptc.treatment.equals("balanced")) {
-				if (temptc.treatment.equals("dl") && isValid(this, this.right, this.right.left)) {
-					if (this.equals(temptc.patient))
-						return doubleLeft(this, this.right, this.right.left);
-				}
-				// if the imbalance point is not the current node, passed
-				// back to its parent.
-				this.tc = temptc;
-				return this;
-			}
-			// return this if balance is remained.
-			return this;
+		// every node that the new node is left of gains one in its rank.
+		int added = newlines(c);
+		int addedBytes = leaf.width;
+		int depth = 0;
+		for (Node current = leaf; !(current.parent instanceof NullNode); current = current.parent) {
+			current.parent.et = owner;
+			if (current.childDirection == LEFT_CHILD)
+				current.parent.rank++;
+			current.parent.newlines += added;
+			current.parent.bytes += addedBytes;
+			depth++;
 		}
-		this.right = this.right.add(c, pos - (this.rank + 1));
-
-		// check if the right child tells the current node to do rotations.
-		return this.reviewTreatmentContainer(false);
+		owner.depth = depth;
+		if (Character.isLowSurrogate(c))
+			fitWidth(leaf, predecessor(leaf));
+		if (!after)
+			fitWidth(next, leaf);
+		return this.rebalanceAfterAdding(leaf);
 	}
 
 	/**
 	 * 
-	 * returns true if the grandParent, parent and child are non-null_node when
-	 * doing double rotations.
+	 * returns the root after rebalancing this tree, of which this node is the
+	 * root, once leaf has been hung and the ranks updated.
 	 *
-	 * @param grandParent
-	 * @param p
-	 * @param child
-	 * @return true if the grandParent, parent and child are non-null_node when
-	 *         doing double rotations.
-	 */
-	public boolean isValid(Node grandParent, Node p, Node child) {
-		if (!(grandParent instanceof NullNode)) {
-			if (!(p instanceof NullNode)) {
-				if (!(child instanceof NullNode))
-					return true;
-			}
-		}
-		return false;
+	 * @param leaf
+	 * @return the root after rebalancing.
+	 */
+	private Node rebalanceAfterAdding(Node leaf) {
+		Node found = isBalance(leaf);
+		if (found == null)
+			return this;
+		// one rotation at the imbalance point restores the height it had
+		// before the insertion, so nothing above it changes.
+		Node rotated = found.rotateIfNeeded(found);
+		rotated.replaceInParent();
+		if (rotated.parent instanceof NullNode)
+			return rotated;
+		return this;
 	}
 
 	/**
@@ -620,111 +1065,64 @@ public class Node {
 	 * @return the root after adding a new node to the end.
 	 */
 	public Node add(char c) {
-		// if the root does not have a right child, no rotation is needed, add
-		// a new node to the right and update its fields.
-		if (this.right instanceof NullNode) {
-			this.right = new Node(c, this.et);
-			this.right.childDirection = "right";
-			this.right.parent = this;
-			isBalance(this.right);
-			return this;
-		}
-		// when the root has a right child, add a new node to the right, check
-		// balance and do rotations if needed.
-		if (this.right.right instanceof NullNode) {
-			this.right.right = new Node(c, this.et);
-			this.right.right.childDirection = "right";
-			this.right.right.parent = this.right;
-			treatmentContainer temptc = isBalance(this.right.right);
-			if (temptc.treatment.equals("sl")) {
-				if (this.equals(temptc.patient)) {
-					return singleRotation("left", this, this.right);
-				}
-				this.tc = temptc;
-				// modify the treatmentContainer because the imbalance point is
-				// not "this", so that this's parent can check if it is the
-				// imbalance point.
-				return this;
-			}
-			return this;
-			// When height-balanced, make a flag so that it won't add another
-			// new node to the right.
-		}
-		this.right = this.right.add(c);
-
-		if (this.right.tc.treatment.equals("sl")) {
-			if (this.equals(this.right.tc.patient)) {
-				this.right.tc = new treatmentContainer("balanced", null);
-				return singleRotation("left", this, this.right);
-			}
-			// continue search for the imbalance point by going up to the
-			// parents.
-			this.tc = this.right.tc;
-			this.right.tc = new treatmentContainer("balanced", null);
-			return this;
-		}
-		this.tc = new treatmentContainer("balanced", null);
-		return this;
+		return this.add(c, this.size());
 	}
 
 	/**
 	 * 
-	 * a container that holds the type of rotation and the imbalance point.
+	 * records the rotation that the imbalance point needs on the node itself,
+	 * so that passing the imbalance point around carries its treatment too.
 	 *
-	 * @author fengy2. Created Apr 19, 2016.
+	 * @param patient
+	 * @param treatment
+	 * @return the patient.
 	 */
-	class treatmentContainer {
-		String treatment;
-		Node patient;
-
-		public treatmentContainer(String treatment, Node patient) {
-			this.treatment = treatment;
-			this.patient = patient;
-		}
+	private static Node prescribe(Node patient, byte treatment) {
+		patient.treatment = treatment;
+		return patient;
 	}
 
 	/**
 	 * 
-	 * returns a container that holds the type of rotation and the imbalance
-	 * point.
+	 * returns the imbalance point, with the rotation it needs recorded in its
+	 * treatment, or null if no rotation is needed.
 	 *
 	 * @param current
-	 * @return a container that holds the type of rotation and the imbalance
-	 *         point.
+	 * @return the imbalance point, or null if no rotation is needed.
 	 */
-	public treatmentContainer isBalance(Node current) {
+	public Node isBalance(Node current) {
 		while (!(current.parent instanceof NullNode)) {
 			if (current.parent.balance.equals(Code.SAME)) {
 				// tip Code to the insertionDirection and keep going up
-				if (current.childDirection.equals("right")) {
+				if (current.childDirection == RIGHT_CHILD) {
 					current.parent.balance = Code.RIGHT;
-				} else if (current.childDirection.equals("left")) {
+				} else if (current.childDirection == LEFT_CHILD) {
 					current.parent.balance = Code.LEFT;
 				}
 			} else if (current.parent.balance.equals(Code.RIGHT)) {
-				if (current.balance.equals(Code.RIGHT) && current.childDirection.equals("right"))
+				if (current.balance.equals(Code.RIGHT) && current.childDirection == RIGHT_CHILD)
 					// code tipped towards insertion point
-					return new treatmentContainer("sl", current.parent); // imbalance
-				if (current.balance.equals(Code.LEFT) && current.childDirection.equals("right"))
+					return prescribe(current.parent, SINGLE_LEFT); // imbalance
+				if (current.balance.equals(Code.LEFT) && current.childDirection == RIGHT_CHILD)
 					// double left rotation is needed.
-					return new treatmentContainer("dl", current.parent); // imbalance
+					return prescribe(current.parent, DOUBLE_LEFT); // imbalance
 				current.parent.balance = Code.SAME;
 				// code tipped away from insertion point
 				break; // stop
 			} else if (current.parent.balance.equals(Code.LEFT)) {
-				if (current.balance.equals(Code.LEFT) && current.childDirection.equals("left"))
+				if (current.balance.equals(Code.LEFT) && current.childDirection == LEFT_CHILD)
 					// code tipped towards insertion point
-					return new treatmentContainer("sr", current.parent); // imbalance
-				if (current.balance.equals(Code.RIGHT) && current.childDirection.equals("left"))
+					return prescribe(current.parent, SINGLE_RIGHT); // imbalance
+				if (current.balance.equals(Code.RIGHT) && current.childDirection == LEFT_CHILD)
 					// double right rotation is needed.
-					return new treatmentContainer("dr", current.parent); // imbalance
+					return prescribe(current.parent, DOUBLE_RIGHT); // imbalance
 				current.parent.balance = Code.SAME;
 				// code tipped away from insertion point
 				break; // stop
 			}
 			current = current.parent;
 		}
-		return new treatmentContainer("balanced", null);
+		return null;
 	}
 
 	/**
@@ -757,25 +1155,31 @@ public class Node {
 
 		p.right = child.left;
 		p.right.parent = p;
-		p.right.childDirection = "right";
+		p.right.childDirection = RIGHT_CHILD;
 
 		grandParent.left = child.right;
 		grandParent.left.parent = grandParent;
-		grandParent.left.childDirection = "left";
+		grandParent.left.childDirection = LEFT_CHILD;
 
 		child.left = p;
 		child.left.parent = child;
-		child.left.childDirection = "left";
+		child.left.childDirection = LEFT_CHILD;
 
 		child.right = grandParent;
 		child.right.parent = child;
-		child.right.childDirection = "right";
+		child.right.childDirection = RIGHT_CHILD;
 
 		grandParent.rank -= (p.rank + child.rank + 2);
 		child.rank += (p.rank + 1);
 
+		child.newlines = grandParent.newlines;
+		child.bytes = grandParent.bytes;
+		p.recount();
+		grandParent.recount();
+
 		this.et.increaseTRC();
 		this.et.increaseTRC();
+		this.et.metrics.doubleRotation();
 
 		return child;
 	}
@@ -809,25 +1213,32 @@ public class Node {
 		child.parent = grandParent.parent;
 
 		p.left = child.right;
-		p.left.childDirection = "left";
+		p.left.parent = p;
+		p.left.childDirection = LEFT_CHILD;
 
 		grandParent.right = child.left;
 		grandParent.right.parent = grandParent;
-		grandParent.right.childDirection = "right";
+		grandParent.right.childDirection = RIGHT_CHILD;
 
 		child.left = grandParent;
 		child.left.parent = child;
-		child.left.childDirection = "left";
+		child.left.childDirection = LEFT_CHILD;
 
 		child.right = p;
 		child.right.parent = child;
-		child.right.childDirection = "right";
+		child.right.childDirection = RIGHT_CHILD;
 
 		p.rank -= (child.rank + 1);
 		child.rank += (grandParent.rank + 1);
 
+		child.newlines = grandParent.newlines;
+		child.bytes = grandParent.bytes;
+		p.recount();
+		grandParent.recount();
+
 		this.et.increaseTRC();
 		this.et.increaseTRC();
+		this.et.metrics.doubleRotation();
 
 		return child;
 	}
@@ -836,54 +1247,185 @@ public class Node {
 	 * 
 	 * do the single rotation leftward or rightward.
 	 *
-	 * @param s
+	 * @param direction
+	 *            SINGLE_LEFT or SINGLE_RIGHT
 	 * @param parent
 	 * @param child
 	 * @return the child node after single rotation.
 	 */
-	public Node singleRotation(String s, Node p, Node child) {
-		if (s.equals("left")) {
+	public Node singleRotation(byte direction, Node p, Node child) {
+		if (direction == SINGLE_LEFT) {
 			// single left
 			p.right = child.left;
+			p.right.parent = p;
+			p.right.childDirection = RIGHT_CHILD;
 			child.left = p;
 			child.childDirection = p.childDirection;
-			p.childDirection = "left";
+			p.childDirection = LEFT_CHILD;
 			child.rank += p.rank + 1;
 		} else {
 			// single right
 			p.left = child.right;
+			p.left.parent = p;
+			p.left.childDirection = LEFT_CHILD;
 			child.right = p;
 			child.childDirection = p.childDirection;
-			p.childDirection = "right";
+			p.childDirection = RIGHT_CHILD;
 			p.rank -= child.rank + 1;
 		}
 		child.parent = p.parent;
 		p.parent = child;
+		child.newlines = p.newlines;
+		child.bytes = p.bytes;
+		p.recount();
 		p.balance = Code.SAME;
 		child.balance = Code.SAME;
 		this.et.increaseTRC();
+		this.et.metrics.singleRotation();
 		return child;
 	}
 
+	/**
+	 * sets the newline count and UTF-8 length of this node from those of its
+	 * children, after a rotation gave it new ones.
+	 */
+	private void recount() {
+		this.newlines = this.left.newlines + this.right.newlines + newlines(this.element);
+		this.bytes = this.left.bytes + this.right.bytes + this.width;
+	}
+
+	/**
+	 * 
+	 * returns the number of newlines before position pos of this subtree.
+	 *
+	 * @param pos
+	 *            from 0 up to the size of this subtree
+	 * @return the number of newlines before pos.
+	 */
+	public int newlinesBefore(int pos) {
+		int count = 0;
+		Node current = this;
+		while (!(current instanceof NullNode)) {
+			if (pos <= current.rank) {
+				current = current.left;
+			} else {
+				count += current.left.newlines + newlines(current.element);
+				pos -= current.rank + 1;
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 
+	 * returns the position in this subtree of newline k, counting from 0,
+	 * walking down by the newline counts as get() walks down by rank.
+	 *
+	 * @param k
+	 *            from 0 up to, but not including, the newline count of this
+	 *            subtree
+	 * @return the position of newline k.
+	 */
+	public int newlinePosition(int k) {
+		int offset = 0;
+		Node current = this;
+		while (true) {
+			int before = current.left.newlines;
+			if (k < before) {
+				current = current.left;
+			} else if (k == before && current.element == '\n') {
+				return offset + current.rank;
+			} else {
+				k -= before + newlines(current.element);
+				offset += current.rank + 1;
+				current = current.right;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * returns the length in UTF-8 of the characters before position pos of
+	 * this subtree.
+	 *
+	 * @param pos
+	 *            from 0 up to the size of this subtree
+	 * @return the number of bytes before pos.
+	 */
+	public long bytesBefore(int pos) {
+		long count = 0;
+		Node current = this;
+		while (!(current instanceof NullNode)) {
+			if (pos <= current.rank) {
+				current = current.left;
+			} else {
+				count += current.left.bytes + current.width;
+				pos -= current.rank + 1;
+				current = current.right;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 
+	 * returns the position in this subtree of the character whose UTF-8
+	 * encoding starts at byte offset, walking down by the UTF-8 lengths as
+	 * get() walks down by rank.
+	 *
+	 * @param offset
+	 *            from 0 up to the UTF-8 length of this subtree
+	 * @return the position of the character, the size of this subtree if
+	 *         offset is its UTF-8 length, or -1 if offset is inside the
+	 *         encoding of a character.
+	 */
+	public int positionOfByte(long offset) {
+		int pos = 0;
+		Node current = this;
+		while (!(current instanceof NullNode)) {
+			long before = current.left.bytes;
+			if (offset < before) {
+				current = current.left;
+			} else if (offset == before) {
+				return pos + current.rank;
+			} else {
+				offset -= before + current.width;
+				if (offset < 0)
+					return -1;
+				pos += current.rank + 1;
+				current = current.right;
+			}
+		}
+		return pos;
+	}
+
 	/**
 	 * @return the height of the tree.
 	 */
 	public int height() {
-		if (this instanceof NullNode)
-			return -1;
-		if (this.balance.equals(Code.LEFT))
-			return this.left.height() + 1;
-		return this.right.height() + 1;
+		// follow the taller side down.
+		int height = -1;
+		Node current = this;
+		while (!(current instanceof NullNode)) {
+			height++;
+			current = current.balance.equals(Code.LEFT) ? current.left : current.right;
+		}
+		return height;
 	}
 
 	/**
 	 * @return the size of the tree.
 	 */
 	public int size() {
-		if (this instanceof NullNode)
-			return 0;
-		// only recursively calling the right child
-		return this.rank + 1 + this.right.size();
+		// only the right spine needs visiting, since ranks count the left.
+		int size = 0;
+		Node current = this;
+		while (!(current instanceof NullNode)) {
+			size += current.rank + 1;
+			current = current.right;
+		}
+		return size;
 	}
 
 	/**
@@ -893,7 +1435,11 @@ public class Node {
 	public String toString() {
 		if (this instanceof NullNode)
 			return "";
-		return this.left.toString() + this.element + this.right.toString();
+		// one copy into an array of the right size, rather than a new string
+		// at every level.
+		char[] chars = new char[this.size()];
+		this.getChars(0, chars.length, chars, 0);
+		return new String(chars);
 	}
 
 	/**
@@ -906,10 +1452,18 @@ public class Node {
 	public void toDebugString(ArrayList<String> ar) {
 		if (this instanceof NullNode)
 			return;
-		String result = "" + this.element + this.rank + this.balance;
-		ar.add(result);
-		this.left.toDebugString(ar);
-		this.right.toDebugString(ar);
+		// right subtrees still to be visited; each level leaves at most one.
+		Node[] pending = new Node[MAX_HEIGHT + 1];
+		pending[0] = this;
+		int top = 1;
+		while (top > 0) {
+			Node current = pending[--top];
+			ar.add("" + current.element + current.rank + current.balance);
+			if (!(current.right instanceof NullNode))
+				pending[top++] = current.right;
+			if (!(current.left instanceof NullNode))
+				pending[top++] = current.left;
+		}
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
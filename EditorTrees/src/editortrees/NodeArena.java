@@ -0,0 +1,110 @@
+package editortrees;
+
+import java.util.Arrays;
+
+/**
+ *
+ * The storage behind ArenaEditTree. A node is an index into parallel primitive
+ * arrays instead of an object, so a tree of N characters is a handful of arrays
+ * rather than N objects. Index 0 plays the part of the NULL_NODE, and deleted
+ * slots are kept on a free list (chained through right) for reuse.
+ *
+ * Trees produced by splitting an ArenaEditTree share its arena, which is what
+ * lets split and concatenate relink indices instead of copying characters.
+ * Their slots come back when they are concatenated back or released.
+ *
+ */
+public class NodeArena {
+	static final int NIL = 0;
+	private static final int DEFAULT_CAPACITY = 16;
+
+	char[] element;
+	int[] left;
+	int[] right;
+	int[] parent;
+	int[] rank; // inorder position of the node within its own subtree.
+	byte[] balance; // height of right subtree minus height of left subtree.
+
+	private int used; // slots [0, used) have been handed out at least once.
+	private int free; // head of the free list, or NIL.
+
+	/**
+	 * Construct an arena with room for a few nodes; it grows as needed.
+	 */
+	public NodeArena() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct an arena with room for capacity nodes before it has to grow.
+	 *
+	 * @param capacity
+	 */
+	public NodeArena(int capacity) {
+		// slot 0 is the sentinel, so it is never handed out.
+		int length = Math.max(capacity, 1) + 1;
+		this.element = new char[length];
+		this.left = new int[length];
+		this.right = new int[length];
+		this.parent = new int[length];
+		this.rank = new int[length];
+		this.balance = new byte[length];
+		this.used = 1;
+		this.free = NIL;
+	}
+
+	/**
+	 *
+	 * hands out a detached, balanced leaf holding c, reusing a freed slot when
+	 * there is one.
+	 *
+	 * @param c
+	 * @return the index of the new node.
+	 */
+	int allocate(char c) {
+		int n;
+		if (this.free != NIL) {
+			n = this.free;
+			this.free = this.right[n];
+		} else {
+			if (this.used == this.element.length)
+				this.grow();
+			n = this.used++;
+		}
+		this.element[n] = c;
+		this.left[n] = NIL;
+		this.right[n] = NIL;
+		this.parent[n] = NIL;
+		this.rank[n] = 0;
+		this.balance[n] = 0;
+		return n;
+	}
+
+	/**
+	 *
+	 * returns slot n to the free list.
+	 *
+	 * @param n
+	 */
+	void release(int n) {
+		this.right[n] = this.free;
+		this.free = n;
+	}
+
+	private void grow() {
+		int length = this.element.length * 2;
+		this.element = Arrays.copyOf(this.element, length);
+		this.left = Arrays.copyOf(this.left, length);
+		this.right = Arrays.copyOf(this.right, length);
+		this.parent = Arrays.copyOf(this.parent, length);
+		this.rank = Arrays.copyOf(this.rank, length);
+		this.balance = Arrays.copyOf(this.balance, length);
+	}
+
+	/**
+	 * @return the number of node slots the arrays currently have room for.
+	 */
+	public int capacity() {
+		return this.element.length - 1;
+	}
+}
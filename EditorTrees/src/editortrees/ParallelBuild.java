@@ -0,0 +1,49 @@
+package editortrees;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * Builds the tree for a range of characters the way
+ * Node.forConstructorUsingString() does, but hands the left half of every
+ * range above THRESHOLD characters to another worker while it builds the
+ * right half itself. The node for the middle character is made once both
+ * halves are done.
+ *
+ */
+class ParallelBuild extends RecursiveTask<Node> {
+	private static final long serialVersionUID = 1L;
+	// below this many characters, a task is not worth its overhead.
+	static final int THRESHOLD = 1 << 15;
+
+	private final CharSequence s;
+	private final int begin;
+	private final int end;
+	private final EditTree et;
+
+	ParallelBuild(CharSequence s, int begin, int end, EditTree et) {
+		this.s = s;
+		this.begin = begin;
+		this.end = end;
+		this.et = et;
+	}
+
+	@Override
+	protected Node compute() {
+		if (this.end - this.begin <= THRESHOLD)
+			return this.et.NULL_NODE.forConstructorUsingString(this.s, this.begin, this.end);
+		int middle = this.begin + (this.end - this.begin) / 2;
+		ParallelBuild leftHalf = new ParallelBuild(this.s, this.begin, middle, this.et);
+		leftHalf.fork();
+		Node right = new ParallelBuild(this.s, middle + 1, this.end, this.et).compute();
+		Node left = leftHalf.join();
+		int leftSize = middle - this.begin;
+		int rightSize = this.end - middle - 1;
+		Node node = new Node(this.s.charAt(middle), this.et);
+		if (middle > 0)
+			node.width = (byte) Node.utf8Length(node.element, this.s.charAt(middle - 1));
+		node.hang(left, leftSize, right, EditTree.heightOfBuilt(leftSize), EditTree.heightOfBuilt(rightSize),
+				this.et);
+		return node;
+	}
+}
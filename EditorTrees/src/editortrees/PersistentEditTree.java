@@ -0,0 +1,308 @@
+package editortrees;
+
+/**
+ *
+ * An EditTree whose nodes are never changed once built. add, delete, split
+ * and concatenate build new nodes along the O(log N) path they touch and share
+ * everything else, so snapshot() can hand out the current contents in O(1):
+ * later edits of this tree never reach the nodes a snapshot holds.
+ *
+ * A snapshot is read-only. To edit from a snapshot, e.g. to undo to it, make a
+ * new tree from it, which is O(1) too.
+ *
+ */
+public class PersistentEditTree {
+	private PersistentNode root;
+	private final boolean snapshot;
+	// receives the two halves from PersistentNode.split().
+	private final PersistentNode[] parts = new PersistentNode[2];
+	// how many characters find() reads out of the tree at a time.
+	private static final int SEARCH_CHUNK_SIZE = 4096;
+
+	/**
+	 * Construct an empty tree
+	 */
+	public PersistentEditTree() {
+		this.root = null;
+		this.snapshot = false;
+	}
+
+	/**
+	 * Construct a single-node tree whose element is c
+	 *
+	 * @param c
+	 */
+	public PersistentEditTree(char c) {
+		this.root = new PersistentNode(null, c, null);
+		this.snapshot = false;
+	}
+
+	/**
+	 * Create a tree whose toString is s, in O(N) time.
+	 *
+	 * @param s
+	 */
+	public PersistentEditTree(String s) {
+		this.root = PersistentNode.build(s, 0, s.length());
+		this.snapshot = false;
+	}
+
+	/**
+	 * Make this tree have the contents of e, sharing its nodes, in O(1). This
+	 * tree can be changed even if e is a snapshot.
+	 *
+	 * @param e
+	 */
+	public PersistentEditTree(PersistentEditTree e) {
+		this(e.root, false);
+	}
+
+	private PersistentEditTree(PersistentNode root, boolean snapshot) {
+		this.root = root;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 *
+	 * returns a read-only tree with the current contents of this one, in O(1).
+	 * It keeps those contents however this tree changes afterwards.
+	 *
+	 * @return the snapshot.
+	 */
+	public PersistentEditTree snapshot() {
+		return new PersistentEditTree(this.root, true);
+	}
+
+	/**
+	 * @return true if this tree is a snapshot, and so cannot be changed.
+	 */
+	public boolean isSnapshot() {
+		return this.snapshot;
+	}
+
+	private void checkNotSnapshot() {
+		if (this.snapshot)
+			throw new UnsupportedOperationException("a snapshot cannot be changed");
+	}
+
+	/**
+	 *
+	 * @return the height of this tree
+	 */
+	public int height() {
+		return PersistentNode.height(this.root);
+	}
+
+	/**
+	 *
+	 * @return the number of nodes in this tree
+	 */
+	public int size() {
+		return PersistentNode.size(this.root);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		PersistentNode n = this.root;
+		while (pos != n.rank) {
+			if (pos < n.rank) {
+				n = n.left;
+			} else {
+				pos -= n.rank + 1;
+				n = n.right;
+			}
+		}
+		return n.element;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (length == 0)
+			return "";
+		if (pos < 0 || length < 0 || pos + length > this.size())
+			throw new IndexOutOfBoundsException();
+		char[] chars = new char[length];
+		PersistentNode.getChars(this.root, pos, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		this.checkNotSnapshot();
+		if (pos < 0 || pos > this.size())
+			throw new IndexOutOfBoundsException();
+		this.root = PersistentNode.insert(this.root, pos, c);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		this.checkNotSnapshot();
+		char deleted = this.get(pos);
+		this.root = PersistentNode.remove(this.root, pos);
+		return deleted;
+	}
+
+	/**
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 * @param length
+	 *            length of string to delete
+	 * @return a tree containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public PersistentEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		this.checkNotSnapshot();
+		if (start < 0 || start + length >= this.size())
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		PersistentEditTree t2 = this.split(start);
+		PersistentEditTree t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Append (in time proportional to the log of the size of the larger tree)
+	 * the contents of the other tree to this one. Other is made empty after
+	 * this operation.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(PersistentEditTree other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		this.checkNotSnapshot();
+		other.checkNotSnapshot();
+		if (other.root == null)
+			return;
+		if (this.root == null) {
+			this.root = other.root;
+		} else {
+			// the first node of the other tree joins the two trees together.
+			char first = other.get(0);
+			this.root = PersistentNode.join(this.root, first, PersistentNode.remove(other.root, 0));
+		}
+		other.root = null;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= position. Their nodes are removed from this
+	 *         tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PersistentEditTree split(int pos) throws IndexOutOfBoundsException {
+		this.checkNotSnapshot();
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		PersistentNode.split(this.root, pos, this.parts);
+		this.root = this.parts[0];
+		PersistentEditTree rightTree = new PersistentEditTree(this.parts[1], false);
+		this.parts[0] = null;
+		this.parts[1] = null;
+		return rightTree;
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		if (s.isEmpty())
+			return 0;
+		int size = this.size();
+		KmpMatcher matcher = new KmpMatcher(s, false);
+		char[] window = new char[Math.min(size, SEARCH_CHUNK_SIZE)];
+		for (int start = Math.max(pos, 0); start < size; start += window.length) {
+			int length = Math.min(window.length, size - start);
+			PersistentNode.getChars(this.root, start, length, window, 0);
+			for (int i = 0; i < length; i++)
+				if (matcher.next(window[i]))
+					return start + i - s.length() + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		char[] chars = new char[this.size()];
+		PersistentNode.getChars(this.root, 0, chars.length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * @return the root node, which is shared with any snapshot taken since the
+	 *         last change.
+	 */
+	PersistentNode getRoot() {
+		return this.root;
+	}
+}
@@ -0,0 +1,140 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for PersistentEditTree, mostly that snapshots keep their contents
+ * while the tree they came from goes on changing.
+ *
+ */
+public class PersistentEditTreeTest {
+
+	// checks the stored heights and sizes, and that the tree is balanced.
+	private static int check(PersistentNode n) {
+		if (n == null)
+			return -1;
+		int left = check(n.left);
+		int right = check(n.right);
+		assertTrue(Math.abs(left - right) <= 1);
+		assertEquals(Math.max(left, right) + 1, n.height);
+		assertEquals(PersistentNode.size(n.left) + 1 + PersistentNode.size(n.right), n.size);
+		return n.height;
+	}
+
+	@Test
+	public void testBasics() {
+		PersistentEditTree t = new PersistentEditTree();
+		assertEquals("", t.toString());
+		assertEquals(-1, t.height());
+		t.add('b');
+		t.add('a', 0);
+		t.add('c');
+		assertEquals("abc", t.toString());
+		assertEquals(1, t.height());
+		assertEquals('b', t.delete(1));
+		assertEquals("ac", t.toString());
+		assertEquals("bcd", new PersistentEditTree("abcde").get(1, 3));
+		assertEquals(2, new PersistentEditTree("aaab").find("ab"));
+	}
+
+	@Test
+	public void testSnapshotIsConstantTime() {
+		PersistentEditTree t = new PersistentEditTree("abcdefghijklmnop");
+		PersistentEditTree snapshot = t.snapshot();
+		assertSame(t.getRoot(), snapshot.getRoot());
+		assertSame(t.getRoot(), new PersistentEditTree(snapshot).getRoot());
+	}
+
+	@Test
+	public void testSnapshotKeepsItsContents() {
+		PersistentEditTree t = new PersistentEditTree("hello world");
+		PersistentEditTree before = t.snapshot();
+		t.add('!');
+		t.delete(0);
+		PersistentEditTree right = t.split(5);
+		assertEquals("hello world", before.toString());
+		assertEquals("ello ", t.toString());
+		assertEquals("world!", right.toString());
+		t.concatenate(right);
+		assertEquals("ello world!", t.toString());
+		assertEquals("hello world", before.toString());
+	}
+
+	@Test
+	public void testSnapshotIsReadOnly() {
+		PersistentEditTree snapshot = new PersistentEditTree("abc").snapshot();
+		assertTrue(snapshot.isSnapshot());
+		try {
+			snapshot.add('x');
+			fail("did not throw UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// success
+		}
+		try {
+			new PersistentEditTree("xyz").concatenate(snapshot);
+			fail("did not throw UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// success
+		}
+		PersistentEditTree undone = new PersistentEditTree(snapshot);
+		assertFalse(undone.isSnapshot());
+		undone.add('d');
+		assertEquals("abcd", undone.toString());
+		assertEquals("abc", snapshot.toString());
+	}
+
+	@Test
+	public void testRandomEditsWithSnapshots() {
+		Random random = new Random(230);
+		PersistentEditTree t = new PersistentEditTree();
+		StringBuilder expected = new StringBuilder();
+		ArrayList<PersistentEditTree> snapshots = new ArrayList<PersistentEditTree>();
+		ArrayList<String> contents = new ArrayList<String>();
+		for (int i = 0; i < 5000; i++) {
+			int op = random.nextInt(10);
+			if (op < 6 || expected.length() == 0) {
+				int pos = random.nextInt(expected.length() + 1);
+				char c = (char) ('a' + random.nextInt(26));
+				t.add(c, pos);
+				expected.insert(pos, c);
+			} else if (op < 9) {
+				int pos = random.nextInt(expected.length());
+				assertEquals(expected.charAt(pos), t.delete(pos));
+				expected.deleteCharAt(pos);
+			} else {
+				int pos = random.nextInt(expected.length());
+				PersistentEditTree right = t.split(pos);
+				assertEquals(expected.substring(pos), right.toString());
+				check(right.getRoot());
+				check(t.getRoot());
+				t.concatenate(right);
+			}
+			if (i % 100 == 0) {
+				snapshots.add(t.snapshot());
+				contents.add(expected.toString());
+			}
+		}
+		check(t.getRoot());
+		assertEquals(expected.toString(), t.toString());
+		for (int i = 0; i < snapshots.size(); i++)
+			assertEquals(contents.get(i), snapshots.get(i).toString());
+	}
+
+	@Test
+	public void testDeleteRange() {
+		PersistentEditTree t = new PersistentEditTree("abcdefghijklmnop");
+		PersistentEditTree snapshot = t.snapshot();
+		assertEquals("efghijk", t.delete(4, 7).toString());
+		assertEquals("abcdlmnop", t.toString());
+		assertEquals("abcdefghijklmnop", snapshot.toString());
+	}
+}
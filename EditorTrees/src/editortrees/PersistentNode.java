@@ -0,0 +1,186 @@
+package editortrees;
+
+/**
+ *
+ * A node of a PersistentEditTree. Nodes never change once built, so any number
+ * of trees and snapshots can share them; an edit builds new nodes along the
+ * path it touches instead. The empty tree is null.
+ *
+ */
+final class PersistentNode {
+	final char element;
+	final PersistentNode left, right;
+	final int rank; // number of nodes in the left subtree.
+	final int size; // number of nodes in this whole subtree.
+	final int height;
+
+	PersistentNode(PersistentNode left, char element, PersistentNode right) {
+		this.element = element;
+		this.left = left;
+		this.right = right;
+		this.rank = size(left);
+		this.size = this.rank + 1 + size(right);
+		this.height = Math.max(height(left), height(right)) + 1;
+	}
+
+	/**
+	 *
+	 * builds a balanced tree holding the characters of s from begin up to, but
+	 * not including, end.
+	 *
+	 * @param s
+	 * @param begin
+	 * @param end
+	 * @return the root of the tree, or null if the range is empty.
+	 */
+	static PersistentNode build(String s, int begin, int end) {
+		if (begin == end)
+			return null;
+		int middle = begin + (end - begin) / 2;
+		return new PersistentNode(build(s, begin, middle), s.charAt(middle), build(s, middle + 1, end));
+	}
+
+	static int height(PersistentNode n) {
+		return n == null ? -1 : n.height;
+	}
+
+	static int size(PersistentNode n) {
+		return n == null ? 0 : n.size;
+	}
+
+	/**
+	 *
+	 * builds the node for left, element and right, rotating once or twice if
+	 * one side is two taller than the other.
+	 *
+	 * @param left
+	 * @param element
+	 * @param right
+	 * @return the root of the balanced subtree.
+	 */
+	static PersistentNode balance(PersistentNode left, char element, PersistentNode right) {
+		if (height(left) > height(right) + 1) {
+			if (height(left.left) >= height(left.right))
+				return new PersistentNode(left.left, left.element, new PersistentNode(left.right, element, right));
+			PersistentNode middle = left.right;
+			return new PersistentNode(new PersistentNode(left.left, left.element, middle.left), middle.element,
+					new PersistentNode(middle.right, element, right));
+		}
+		if (height(right) > height(left) + 1) {
+			if (height(right.right) >= height(right.left))
+				return new PersistentNode(new PersistentNode(left, element, right.left), right.element, right.right);
+			PersistentNode middle = right.left;
+			return new PersistentNode(new PersistentNode(left, element, middle.left), middle.element,
+					new PersistentNode(middle.right, right.element, right.right));
+		}
+		return new PersistentNode(left, element, right);
+	}
+
+	/**
+	 *
+	 * joins left, element and right, whose heights may differ by any amount,
+	 * copying only the spine of the taller tree down to where the shorter one
+	 * fits.
+	 *
+	 * @param left
+	 * @param element
+	 * @param right
+	 * @return the root of the joined tree.
+	 */
+	static PersistentNode join(PersistentNode left, char element, PersistentNode right) {
+		if (height(left) > height(right) + 1)
+			return balance(left.left, left.element, join(left.right, element, right));
+		if (height(right) > height(left) + 1)
+			return balance(join(left, element, right.left), right.element, right.right);
+		return new PersistentNode(left, element, right);
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param pos
+	 * @param c
+	 * @return a tree like n, but with c inserted at pos.
+	 */
+	static PersistentNode insert(PersistentNode n, int pos, char c) {
+		if (n == null)
+			return new PersistentNode(null, c, null);
+		if (pos <= n.rank)
+			return balance(insert(n.left, pos, c), n.element, n.right);
+		return balance(n.left, n.element, insert(n.right, pos - (n.rank + 1), c));
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param pos
+	 * @return a tree like n, but without the node at pos.
+	 */
+	static PersistentNode remove(PersistentNode n, int pos) {
+		if (pos < n.rank)
+			return balance(remove(n.left, pos), n.element, n.right);
+		if (pos > n.rank)
+			return balance(n.left, n.element, remove(n.right, pos - (n.rank + 1)));
+		if (n.right == null)
+			return n.left;
+		// the successor takes the removed node's place.
+		PersistentNode successor = n.right;
+		while (successor.left != null)
+			successor = successor.left;
+		return balance(n.left, successor.element, remove(n.right, 0));
+	}
+
+	/**
+	 *
+	 * splits n before pos, leaving the nodes before it in parts[0] and the
+	 * rest in parts[1].
+	 *
+	 * @param n
+	 * @param pos
+	 * @param parts
+	 */
+	static void split(PersistentNode n, int pos, PersistentNode[] parts) {
+		if (n == null) {
+			parts[0] = null;
+			parts[1] = null;
+		} else if (pos <= n.rank) {
+			split(n.left, pos, parts);
+			parts[1] = join(parts[1], n.element, n.right);
+		} else {
+			split(n.right, pos - (n.rank + 1), parts);
+			parts[0] = join(n.left, n.element, parts[0]);
+		}
+	}
+
+	/**
+	 *
+	 * copies the elements at positions pos to pos + length - 1 of n into dst,
+	 * starting at dstBegin.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param length
+	 * @param dst
+	 * @param dstBegin
+	 */
+	static void getChars(PersistentNode n, int pos, int length, char[] dst, int dstBegin) {
+		while (n != null && length > 0) {
+			if (pos < n.rank) {
+				int fromLeft = Math.min(length, n.rank - pos);
+				getChars(n.left, pos, fromLeft, dst, dstBegin);
+				dstBegin += fromLeft;
+				length -= fromLeft;
+				pos = n.rank;
+				if (length == 0)
+					return;
+			}
+			if (pos == n.rank) {
+				dst[dstBegin++] = n.element;
+				length--;
+				pos++;
+			}
+			pos -= n.rank + 1;
+			n = n.right;
+		}
+	}
+}
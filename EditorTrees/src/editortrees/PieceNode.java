@@ -0,0 +1,64 @@
+package editortrees;
+
+/**
+ *
+ * A node in a PieceTable: a piece of one of its buffers, from start for
+ * length characters.
+ *
+ */
+class PieceNode extends SpanNode<PieceNode> {
+	final CharSequence buffer;
+	int start;
+
+	PieceNode(CharSequence buffer, int start, int length) {
+		this.buffer = buffer;
+		this.start = start;
+		this.length = length;
+		this.size = length;
+		this.height = 0;
+	}
+
+	/**
+	 * @param i
+	 * @return the character at offset i within this piece.
+	 */
+	char charAt(int i) {
+		return this.buffer.charAt(this.start + i);
+	}
+
+	/**
+	 *
+	 * shortens this piece to its first i characters, and returns the rest as a
+	 * new piece, detached from the tree.
+	 *
+	 * @param i
+	 * @return a piece with the characters that used to follow offset i.
+	 */
+	@Override
+	PieceNode cut(int i) {
+		PieceNode tail = new PieceNode(this.buffer, this.start + i, this.length - i);
+		this.length = i;
+		return tail;
+	}
+
+	/**
+	 *
+	 * copies the characters in [from, to) of this piece into dst.
+	 *
+	 * @param from
+	 * @param to
+	 * @param dst
+	 * @param dstBegin
+	 */
+	@Override
+	void copyTo(int from, int to, char[] dst, int dstBegin) {
+		if (this.buffer instanceof String) {
+			((String) this.buffer).getChars(this.start + from, this.start + to, dst, dstBegin);
+		} else if (this.buffer instanceof PieceTable.AddBuffer) {
+			System.arraycopy(((PieceTable.AddBuffer) this.buffer).chars, this.start + from, dst, dstBegin, to - from);
+		} else {
+			for (int i = from; i < to; i++)
+				dst[dstBegin++] = this.buffer.charAt(this.start + i);
+		}
+	}
+}
@@ -0,0 +1,482 @@
+package editortrees;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ *
+ * A piece table with the same operations as EditTree. The text it is opened
+ * with is never copied or changed; added characters are appended to an add
+ * buffer that is never changed in place either; and a height-balanced tree of
+ * pieces of the two buffers, with ranks counted in characters, gives their
+ * order. Opening is O(1) whatever the length of the text, and the tree only
+ * grows with the number of edits: a run of characters typed one after another
+ * extends the same piece, and deleting inside a piece splits it in two.
+ *
+ * The text must not change while the table is in use.
+ *
+ */
+public class PieceTable {
+	// how many characters writeTo() copies out of a piece at a time.
+	private static final int EXPORT_CHUNK_SIZE = 8192;
+
+	/**
+	 * The characters added to a PieceTable, only ever appended to, so that
+	 * pieces can point into it for as long as they live, whatever tree they
+	 * end up in.
+	 */
+	static final class AddBuffer implements CharSequence {
+		char[] chars = new char[16];
+		int length;
+
+		void append(char c) {
+			if (this.length == this.chars.length)
+				this.chars = Arrays.copyOf(this.chars, this.chars.length * 2);
+			this.chars[this.length++] = c;
+		}
+
+		@Override
+		public int length() {
+			return this.length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return this.chars[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(this.chars, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(this.chars, 0, this.length);
+		}
+	}
+
+	private PieceNode root;
+	private final AddBuffer added = new AddBuffer();
+	// receives the character removed by delete(int), so that no container
+	// needs to be created per call.
+	private final DropBox box = new DropBox('`');
+
+	/**
+	 * Construct an empty table
+	 */
+	public PieceTable() {
+		this.root = null;
+	}
+
+	/**
+	 * Open a table on text, in O(1): the table reads text, without copying it,
+	 * until it is edited.
+	 *
+	 * @param text
+	 *            which must not change while the table is in use
+	 */
+	public PieceTable(CharSequence text) {
+		this.root = text.length() == 0 ? null : new PieceNode(text, 0, text.length());
+	}
+
+	/**
+	 * Open a table on the file at path, read through a memory mapping rather
+	 * than onto the heap. Only the parts of the file that are read are
+	 * decoded, and edits add pieces as they do for any other text. With
+	 * ISO-8859-1, US-ASCII, UTF-16BE or UTF-16LE opening is O(1); with UTF-8,
+	 * opening counts the characters in the file, but keeps only one number
+	 * for each 64K bytes. Other charsets are not taken.
+	 *
+	 * @param path
+	 * @param charset
+	 * @return a table holding the text of the file.
+	 * @throws IOException
+	 *             if the file cannot be mapped, or holds more than
+	 *             Integer.MAX_VALUE characters
+	 * @throws IllegalArgumentException
+	 *             unless charset is UTF-8, ISO-8859-1, US-ASCII, UTF-16BE or
+	 *             UTF-16LE
+	 */
+	public static PieceTable map(Path path, Charset charset) throws IOException, IllegalArgumentException {
+		return new PieceTable(MappedText.map(path, charset));
+	}
+
+	/**
+	 *
+	 * @return the height of the tree of pieces.
+	 */
+	public int height() {
+		return PieceNode.height(this.root);
+	}
+
+	/**
+	 *
+	 * @return the number of characters in this table
+	 */
+	public int size() {
+		return PieceNode.size(this.root);
+	}
+
+	/**
+	 * @return the number of pieces the text is in.
+	 */
+	public int pieceCount() {
+		return count(this.root);
+	}
+
+	private static int count(PieceNode n) {
+		return n == null ? 0 : count(n.left) + 1 + count(n.right);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the table
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		PieceNode current = this.root;
+		while (true) {
+			if (pos < current.rank) {
+				current = current.left;
+			} else {
+				pos -= current.rank;
+				if (pos < current.length)
+					return current.charAt(pos);
+				pos -= current.length;
+				current = current.right;
+			}
+		}
+	}
+
+	/**
+	 * This method operates in O(length + log P), where P is the number of
+	 * pieces.
+	 *
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this table.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (pos < 0 || length < 0 || pos + length > this.size())
+			throw new IndexOutOfBoundsException();
+		char[] result = new char[length];
+		SpanTree.copyRange(this.root, pos, pos + length, result, 0);
+		return new String(result);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this table.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this table
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size())
+			throw new IndexOutOfBoundsException();
+		this.added.append(c);
+		if (this.root == null) {
+			this.root = new PieceNode(this.added, this.added.length - 1, 1);
+			this.root.update();
+		} else {
+			this.root = this.add(this.root, pos);
+		}
+	}
+
+	/**
+	 *
+	 * adds the last character of the add buffer at position pos of the subtree
+	 * rooted at n. At the end of a piece, the character goes into that piece,
+	 * so that it can be extended if it ends where the add buffer did.
+	 *
+	 * @param n
+	 * @param pos
+	 * @return the root of the subtree after rebalancing.
+	 */
+	private PieceNode add(PieceNode n, int pos) {
+		if (pos <= n.rank && n.left != null) {
+			n.left = this.add(n.left, pos);
+		} else if (pos <= n.rank + n.length) {
+			int offset = pos - n.rank;
+			int next = this.added.length - 1;
+			if (offset == n.length && n.buffer == this.added && n.start + n.length == next) {
+				// typing on from the last character added.
+				n.length++;
+			} else {
+				PieceNode piece = new PieceNode(this.added, next, 1);
+				if (offset == 0) {
+					n.left = SpanTree.join(n.left, piece, null);
+				} else {
+					if (offset < n.length)
+						n.right = SpanTree.insertFirst(n.right, n.cut(offset));
+					n.right = SpanTree.insertFirst(n.right, piece);
+				}
+			}
+		} else {
+			n.right = this.add(n.right, pos - n.rank - n.length);
+		}
+		return SpanTree.rebalance(n);
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this table
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		this.root = this.delete(this.root, pos);
+		return this.box.getElement();
+	}
+
+	/**
+	 *
+	 * removes the character at position pos of the subtree rooted at n, by
+	 * trimming the piece that holds it, splitting it in two if it is in the
+	 * middle, or removing the piece if it was its only character.
+	 *
+	 * @param n
+	 * @param pos
+	 * @return the root of the subtree after rebalancing.
+	 */
+	private PieceNode delete(PieceNode n, int pos) {
+		if (pos < n.rank) {
+			n.left = this.delete(n.left, pos);
+		} else if (pos < n.rank + n.length) {
+			int offset = pos - n.rank;
+			this.box.setElement(n.charAt(offset));
+			if (n.length == 1)
+				return SpanTree.unlink(n);
+			if (offset == 0) {
+				n.start++;
+				n.length--;
+			} else if (offset == n.length - 1) {
+				n.length--;
+			} else {
+				PieceNode tail = n.cut(offset + 1);
+				n.length--;
+				n.right = SpanTree.insertFirst(n.right, tail);
+			}
+		} else {
+			n.right = this.delete(n.right, pos - n.rank - n.length);
+		}
+		return SpanTree.rebalance(n);
+	}
+
+	/**
+	 * Runs in time proportional to the log of the number of pieces, by
+	 * splitting twice and concatenating the outer parts.
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 *
+	 * @param length
+	 *            length of string to delete
+	 * @return a PieceTable containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             table.
+	 */
+	public PieceTable delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size())
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		PieceTable t2 = this.split(start);
+		PieceTable t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Append (in time proportional to the log of the number of pieces) the
+	 * contents of the other table to this one. Other is made empty after this
+	 * operation. The pieces keep pointing into the buffers they came from.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other
+	 */
+	public void concatenate(PieceTable other) throws IllegalArgumentException {
+		if (this == other)
+			throw new IllegalArgumentException();
+		if (other.root == null)
+			return;
+		if (this.root == null) {
+			this.root = other.root;
+		} else {
+			// the first piece of the other table joins the two trees together.
+			PieceNode first = other.root;
+			while (first.left != null)
+				first = first.left;
+			this.root = SpanTree.join(this.root, first, SpanTree.removeFirst(other.root));
+		}
+		other.root = null;
+	}
+
+	/**
+	 * This operation is done in time proportional to the height of the tree of
+	 * pieces.
+	 *
+	 * @param pos
+	 *            where to split this table
+	 * @return a new table containing all of the characters of this table whose
+	 *         positions are >= position. Their pieces are removed from this
+	 *         table.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public PieceTable split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		PieceNode[] parts = new PieceNode[2];
+		SpanTree.split(this.root, pos, parts);
+		this.root = parts[0];
+		PieceTable rightTable = new PieceTable();
+		rightTable.root = parts[1];
+		return rightTable;
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this table of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the table to begin the search
+	 * @return the position in this table of the first occurrence of s that
+	 *         does not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		if (s.isEmpty())
+			return 0;
+		return find(this.root, Math.max(pos, 0), 0, new KmpMatcher(s, false), s.length());
+	}
+
+	/**
+	 *
+	 * feeds matcher the characters of the subtree rooted at n from position pos
+	 * on, straight out of the buffers.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param first
+	 *            the position of the first character of n's subtree
+	 * @param matcher
+	 * @param length
+	 *            of the pattern
+	 * @return the position of the first occurrence, or -1.
+	 */
+	private static int find(PieceNode n, int pos, int first, KmpMatcher matcher, int length) {
+		while (n != null && pos < n.size) {
+			if (pos < n.rank) {
+				int found = find(n.left, pos, first, matcher, length);
+				if (found >= 0)
+					return found;
+				pos = n.rank;
+			}
+			for (int i = pos - n.rank; i < n.length; i++)
+				if (matcher.next(n.charAt(i)))
+					return first + n.rank + i - length + 1;
+			int skipped = n.rank + n.length;
+			first += skipped;
+			pos = Math.max(pos - skipped, 0);
+			n = n.right;
+		}
+		return -1;
+	}
+
+	/**
+	 * Encodes the contents of this table in charset and writes them to out,
+	 * piece by piece through one reused buffer. A long piece of a
+	 * mapped file whose bytes encode back to themselves in charset is written
+	 * from the mapping as it is, without being decoded or encoded; see
+	 * map(Path, Charset). Characters that charset cannot encode are replaced,
+	 * as String.getBytes() does. out is left open.
+	 *
+	 * @param out
+	 * @param charset
+	 * @throws IOException
+	 *             if out does
+	 */
+	public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+		ChannelWriter writer = new ChannelWriter(out, charset);
+		writePieces(this.root, new char[EXPORT_CHUNK_SIZE], charset, writer);
+		writer.finish();
+	}
+
+	/**
+	 *
+	 * writes the pieces of n's subtree in order, copying those that are not
+	 * in an array through chunk.
+	 *
+	 * @param n
+	 * @param chunk
+	 * @param charset
+	 * @param writer
+	 * @throws IOException
+	 *             if the channel of writer does
+	 */
+	private static void writePieces(PieceNode n, char[] chunk, Charset charset, ChannelWriter writer)
+			throws IOException {
+		while (n != null) {
+			writePieces(n.left, chunk, charset, writer);
+			if (n.buffer instanceof AddBuffer) {
+				writer.write(((AddBuffer) n.buffer).chars, n.start, n.length);
+			} else if (!(n.buffer instanceof MappedText)
+					|| !((MappedText) n.buffer).writeBytes(n.start, n.start + n.length, charset, writer)) {
+				for (int from = 0; from < n.length; from += chunk.length) {
+					int to = Math.min(n.length, from + chunk.length);
+					n.copyTo(from, to, chunk, 0);
+					writer.write(chunk, 0, to - from);
+				}
+			}
+			n = n.right;
+		}
+	}
+
+	/**
+	 * return the string produced by an in-order walk of the pieces
+	 */
+	@Override
+	public String toString() {
+		char[] result = new char[this.size()];
+		SpanTree.copyRange(this.root, 0, result.length, result, 0);
+		return new String(result);
+	}
+}
@@ -0,0 +1,159 @@
+package editortrees;
+
+import static editortrees.RandomEditsTest.text;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests for PieceTable: that it matches a StringBuilder edited the same way,
+ * and that it only grows with the edits, not with the text.
+ *
+ */
+public class PieceTableTest {
+
+	@Test
+	public void testEmpty() {
+		PieceTable t = new PieceTable();
+		assertEquals("", t.toString());
+		assertEquals(0, t.size());
+		assertEquals(-1, t.height());
+		assertEquals(0, new PieceTable("").pieceCount());
+	}
+
+	@Test
+	public void testOpenIsOnePiece() {
+		String s = text(1000000);
+		PieceTable t = new PieceTable(s);
+		assertEquals(1, t.pieceCount());
+		assertEquals(0, t.height());
+		assertEquals(s.length(), t.size());
+		assertEquals(s.charAt(777777), t.get(777777));
+		assertEquals(s.substring(999990), t.get(999990, 10));
+	}
+
+	@Test
+	public void testTypingExtendsOnePiece() {
+		PieceTable t = new PieceTable("hello world");
+		int caret = 5;
+		for (char c : " there,".toCharArray())
+			t.add(c, caret++);
+		assertEquals("hello there, world", t.toString());
+		// the text cut in two, and the typing in between.
+		assertEquals(3, t.pieceCount());
+		// backspacing the typing and deleting from the ends trims pieces.
+		t.delete(11);
+		t.delete(0);
+		t.delete(t.size() - 1);
+		assertEquals("ello there worl", t.toString());
+		assertEquals(3, t.pieceCount());
+		// deleting inside a piece cuts it in two.
+		t.delete(1);
+		assertEquals("elo there worl", t.toString());
+		assertEquals(4, t.pieceCount());
+	}
+
+	@Test
+	public void testAddAtEnd() {
+		PieceTable t = new PieceTable();
+		for (char c = 'a'; c <= 'z'; c++)
+			t.add(c);
+		assertEquals("abcdefghijklmnopqrstuvwxyz", t.toString());
+		assertEquals(1, t.pieceCount());
+		t.add('!', 0);
+		assertEquals(2, t.pieceCount());
+	}
+
+	@Test
+	public void testDeleteRange() {
+		PieceTable t = new PieceTable("abcdefghijklmnop");
+		PieceTable removed = t.delete(4, 7);
+		assertEquals("efghijk", removed.toString());
+		assertEquals("abcdlmnop", t.toString());
+		assertEquals(2, t.pieceCount());
+	}
+
+	@Test
+	public void testSplitAndConcatenate() {
+		PieceTable t = new PieceTable("abcdefghijklmnop");
+		t.add('x', 3);
+		PieceTable right = t.split(6);
+		assertEquals("abcxde", t.toString());
+		assertEquals("fghijklmnop", right.toString());
+		// each table adds to its own buffer, so neither disturbs the other.
+		right.add('y', 0);
+		t.add('z');
+		assertEquals("abcxdez", t.toString());
+		assertEquals("yfghijklmnop", right.toString());
+		t.concatenate(right);
+		assertEquals("abcxdezyfghijklmnop", t.toString());
+		assertEquals(0, right.size());
+	}
+
+	@Test
+	public void testFind() {
+		PieceTable t = new PieceTable(text(10000));
+		t.add('#', 5000);
+		t.add('#', 5001);
+		t.delete(20);
+		assertEquals(4999, t.find("##"));
+		assertEquals(4999, t.find("##", 4999));
+		assertEquals(-1, t.find("##", 5000));
+		assertEquals(4998, t.find("h##i"));
+		assertEquals(0, t.find(""));
+	}
+
+	@Test
+	public void testOutOfBounds() {
+		PieceTable t = new PieceTable("abc");
+		try {
+			t.get(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.add('x', 4);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.concatenate(t);
+			fail("did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+	}
+
+	@Test
+	public void testRandomEditsMatchStringBuilder() {
+		// counts the edits that may add pieces.
+		int[] count = new int[1];
+		RandomEditsTest.Add<PieceTable> add = (t, c, pos) -> {
+			t.add(c, pos);
+			count[0]++;
+		};
+		RandomEditsTest.Delete<PieceTable> delete = (t, pos) -> {
+			count[0]++;
+			return t.delete(pos);
+		};
+		RandomEditsTest.DeleteRange<PieceTable> deleteRange = (t, start, length) -> {
+			count[0]++;
+			return t.delete(start, length);
+		};
+		RandomEditsTest<PieceTable> edits = new RandomEditsTest<PieceTable>(new PieceTable(text(5000)), add, delete,
+				deleteRange, PieceTable::split, PieceTable::concatenate);
+		edits.run(20000);
+		PieceTable t = edits.tree;
+		StringBuilder expected = edits.expected;
+		assertEquals(expected.length(), t.size());
+		for (int i = 0; i < expected.length(); i += 7)
+			assertEquals(expected.charAt(i), t.get(i));
+		// at most two new pieces per edit, and a balanced tree of them.
+		assertTrue(t.pieceCount() <= 1 + 2 * count[0]);
+		assertTrue(t.height() <= 1.44 * Math.log(t.pieceCount() + 2) / Math.log(2));
+	}
+}
@@ -0,0 +1,173 @@
+package editortrees;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Random edits made to a tree and to a StringBuilder alike, for the tests of
+ * every kind of tree, and the text those tests start from. A test hands over
+ * its tree's operations as method references, and overrides check() with
+ * whatever its tree keeps; this class chooses the edits and checks the text.
+ * It is named like a test so that the build keeps it out of the library;
+ * having no tests, it is not run as one.
+ *
+ * @param <T>
+ *            the kind of tree edited
+ */
+class RandomEditsTest<T> {
+
+	interface Add<T> {
+		void add(T tree, char c, int pos);
+	}
+
+	interface Delete<T> {
+		char delete(T tree, int pos);
+	}
+
+	interface DeleteRange<T> {
+		T delete(T tree, int start, int length);
+	}
+
+	final Random random = new Random(230);
+	final T tree;
+	final StringBuilder expected;
+	private final Add<T> add;
+	private final Delete<T> delete;
+	private final DeleteRange<T> deleteRange;
+	private final BiFunction<T, Integer, T> split;
+	private final BiConsumer<T, T> concatenate;
+
+	/**
+	 * Edits tree, whose toString is the text the edits start from, through
+	 * the given operations.
+	 *
+	 * @param tree
+	 * @param add
+	 * @param delete
+	 * @param deleteRange
+	 * @param split
+	 * @param concatenate
+	 */
+	RandomEditsTest(T tree, Add<T> add, Delete<T> delete, DeleteRange<T> deleteRange, BiFunction<T, Integer, T> split,
+			BiConsumer<T, T> concatenate) {
+		this.tree = tree;
+		this.expected = new StringBuilder(tree.toString());
+		this.add = add;
+		this.delete = delete;
+		this.deleteRange = deleteRange;
+		this.split = split;
+		this.concatenate = concatenate;
+	}
+
+	/**
+	 * @param length
+	 * @return length characters of the alphabet, over and over
+	 */
+	static String text(int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++)
+			sb.append((char) ('a' + i % 26));
+		return sb.toString();
+	}
+
+	/**
+	 * @param s
+	 * @return an EditTree built from s by each of the ways to build one
+	 */
+	static EditTree[] builds(String s) {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			return new EditTree[] { new EditTree(s), new EditTree(s.toCharArray()), new EditTree(s, pool),
+					new EditTree(new EditTree(s)) };
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @param r
+	 * @return what to add next, added one character at a time: a letter,
+	 *         unless a test wants others.
+	 */
+	String next(Random r) {
+		return String.valueOf((char) ('a' + r.nextInt(26)));
+	}
+
+	/**
+	 * checks what t keeps, after every edit and of both halves of every split;
+	 * nothing, unless a test says what.
+	 *
+	 * @param t
+	 */
+	void check(T t) {
+		// nothing
+	}
+
+	/**
+	 * makes count edits: adds, deletes of one character, deletes of up to 10
+	 * and splits put straight back together, in a mix that lets the text
+	 * grow slowly.
+	 *
+	 * @param count
+	 */
+	final void run(int count) {
+		for (int i = 0; i < count; i++) {
+			int op = this.random.nextInt(20);
+			if (op < 12 || this.expected.length() < 2) {
+				int pos = this.random.nextInt(this.expected.length() + 1);
+				String s = this.next(this.random);
+				for (int j = 0; j < s.length(); j++)
+					this.add.add(this.tree, s.charAt(j), pos + j);
+				this.expected.insert(pos, s);
+			} else if (op < 17) {
+				int pos = this.random.nextInt(this.expected.length());
+				assertEquals(this.expected.charAt(pos), this.delete.delete(this.tree, pos));
+				this.expected.deleteCharAt(pos);
+			} else if (op < 18) {
+				int start = this.random.nextInt(this.expected.length() - 1);
+				int length = this.random.nextInt(Math.min(10, this.expected.length() - start));
+				T deleted = this.deleteRange.delete(this.tree, start, length);
+				this.check(deleted);
+				assertEquals(this.expected.substring(start, start + length), deleted.toString());
+				this.expected.delete(start, start + length);
+			} else {
+				int pos = this.random.nextInt(this.expected.length());
+				T right = this.split.apply(this.tree, pos);
+				this.check(this.tree);
+				this.check(right);
+				assertEquals(this.expected.substring(pos), right.toString());
+				this.concatenate.accept(this.tree, right);
+			}
+			this.check(this.tree);
+		}
+		assertEquals(this.expected.toString(), this.tree.toString());
+	}
+
+	/**
+	 * makes count adds and deletes through cursor, two adds to each delete,
+	 * moving it somewhere random after each.
+	 *
+	 * @param cursor
+	 *            a cursor on tree
+	 * @param count
+	 */
+	final void run(EditTreeCursor cursor, int count) {
+		for (int i = 0; i < count; i++) {
+			if (this.random.nextInt(3) > 0 || !cursor.hasNext()) {
+				String s = this.next(this.random);
+				this.expected.insert(cursor.position(), s);
+				for (int j = 0; j < s.length(); j++)
+					cursor.add(s.charAt(j));
+			} else {
+				this.expected.deleteCharAt(cursor.position());
+				cursor.delete();
+			}
+			cursor.moveTo(this.random.nextInt(this.expected.length() + 1));
+		}
+		assertEquals(this.expected.toString(), this.tree.toString());
+	}
+}
@@ -0,0 +1,108 @@
+package editortrees;
+
+/**
+ * Red-black balance for a BalancedEditTree: balance is the black height of
+ * the node, counting the node itself if it is black and 1 for the empty tree,
+ * shifted left once, with the low bit set for a red node. The root may be red.
+ *
+ */
+final class RedBlackStrategy extends BalancingStrategy {
+
+	RedBlackStrategy() {
+		super("red-black");
+	}
+
+	private static boolean isRed(BalancedNode n) {
+		return n != null && (n.balance & 1) == 1;
+	}
+
+	private static int blackHeight(BalancedNode n) {
+		return n == null ? 1 : n.balance >> 1;
+	}
+
+	private static void paint(BalancedNode n, boolean red) {
+		// both children have the same black height.
+		int blackHeight = blackHeight(n.left) + (red ? 0 : 1);
+		n.balance = blackHeight << 1 | (red ? 1 : 0);
+	}
+
+	@Override
+	void initialize(BalancedNode leaf, BalancedEditTree tree) {
+		paint(leaf, false);
+	}
+
+	@Override
+	void update(BalancedNode n) {
+		super.update(n);
+		paint(n, isRed(n));
+	}
+
+	@Override
+	BalancedNode join(BalancedNode left, BalancedNode middle, BalancedNode right, BalancedEditTree tree) {
+		if (blackHeight(left) > blackHeight(right)) {
+			BalancedNode joined = this.joinRight(left, middle, right, tree);
+			if (isRed(joined) && isRed(joined.right))
+				paint(joined, false);
+			return joined;
+		}
+		if (blackHeight(right) > blackHeight(left)) {
+			BalancedNode joined = this.joinLeft(left, middle, right, tree);
+			if (isRed(joined) && isRed(joined.left))
+				paint(joined, false);
+			return joined;
+		}
+		middle.left = left;
+		middle.right = right;
+		super.update(middle);
+		paint(middle, !isRed(left) && !isRed(right));
+		return middle;
+	}
+
+	/**
+	 *
+	 * joins down the right spine of left, the tree with more black height,
+	 * until it reaches a black subtree with the black height of right, which
+	 * becomes the left child of a red middle. A red node left with a red right
+	 * child on the way up is fixed with a recolouring and a rotation.
+	 *
+	 */
+	private BalancedNode joinRight(BalancedNode left, BalancedNode middle, BalancedNode right,
+			BalancedEditTree tree) {
+		tree.rotated();
+		if (!isRed(left) && blackHeight(left) == blackHeight(right)) {
+			middle.left = left;
+			middle.right = right;
+			super.update(middle);
+			paint(middle, true);
+			return middle;
+		}
+		BalancedNode joined = this.joinRight(left.right, middle, right, tree);
+		left.right = joined;
+		this.update(left);
+		if (!isRed(left) && isRed(joined) && isRed(joined.right)) {
+			paint(joined.right, false);
+			return this.rotateLeft(left, tree);
+		}
+		return left;
+	}
+
+	private BalancedNode joinLeft(BalancedNode left, BalancedNode middle, BalancedNode right,
+			BalancedEditTree tree) {
+		tree.rotated();
+		if (!isRed(right) && blackHeight(right) == blackHeight(left)) {
+			middle.left = left;
+			middle.right = right;
+			super.update(middle);
+			paint(middle, true);
+			return middle;
+		}
+		BalancedNode joined = this.joinLeft(left, middle, right.left, tree);
+		right.left = joined;
+		this.update(right);
+		if (!isRed(right) && isRed(joined) && isRed(joined.left)) {
+			paint(joined.left, false);
+			return this.rotateRight(right, tree);
+		}
+		return right;
+	}
+}
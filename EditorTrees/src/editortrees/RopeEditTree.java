@@ -0,0 +1,605 @@
+package editortrees;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ *
+ * A rope kept as a B-tree: leaves hold blocks of up to leafCapacity
+ * characters, and internal nodes hold up to fanout children, so a tree of
+ * N characters is only about log(N / leafCapacity) / log(fanout / 2) levels
+ * deep. With the defaults, 100M characters take 4 or 5 levels, where a binary
+ * tree of characters takes 27, and each level is a small array scan rather
+ * than a cache miss. It has the same operations as EditTree.
+ *
+ * Every node but the root is at least half full. Splitting cuts the tree
+ * along the path to the position and concatenates what is on either side;
+ * concatenating hangs the shorter tree off the side of the taller one.
+ *
+ */
+public class RopeEditTree {
+
+	/**
+	 * The number of characters a leaf holds unless another capacity is given.
+	 */
+	public static final int DEFAULT_LEAF_CAPACITY = 1024;
+
+	/**
+	 * The number of children an internal node holds unless another fanout is
+	 * given.
+	 */
+	public static final int DEFAULT_FANOUT = 32;
+
+	private RopeNode root;
+	private final int leafCapacity;
+	private final int fanout;
+	// receives the two halves from split().
+	private final RopeNode[] parts = new RopeNode[2];
+
+	/**
+	 * Construct an empty tree
+	 */
+	public RopeEditTree() {
+		this(DEFAULT_LEAF_CAPACITY, DEFAULT_FANOUT);
+	}
+
+	/**
+	 * Construct an empty tree whose leaves hold up to leafCapacity characters
+	 * and whose internal nodes hold up to fanout children.
+	 *
+	 * @param leafCapacity
+	 * @param fanout
+	 * @throws IllegalArgumentException
+	 *             if leafCapacity is less than 2 or fanout is less than 4
+	 */
+	public RopeEditTree(int leafCapacity, int fanout) {
+		if (leafCapacity < 2)
+			throw new IllegalArgumentException("leaf capacity must be at least 2");
+		if (fanout < 4)
+			throw new IllegalArgumentException("fanout must be at least 4");
+		this.root = null;
+		this.leafCapacity = leafCapacity;
+		this.fanout = fanout;
+	}
+
+	/**
+	 * Create a tree whose toString is s in O(N) time, with as few leaves and
+	 * levels as it takes.
+	 *
+	 * @param s
+	 */
+	public RopeEditTree(String s) {
+		this(s, DEFAULT_LEAF_CAPACITY, DEFAULT_FANOUT);
+	}
+
+	/**
+	 * Create a tree whose toString is s, whose leaves hold up to leafCapacity
+	 * characters and whose internal nodes hold up to fanout children.
+	 *
+	 * @param s
+	 * @param leafCapacity
+	 * @param fanout
+	 */
+	public RopeEditTree(String s, int leafCapacity, int fanout) {
+		this(leafCapacity, fanout);
+		if (s.isEmpty())
+			return;
+		// as many leaves as it takes, sharing the characters out evenly, so
+		// that each is at least half full.
+		int count = (s.length() + leafCapacity - 1) / leafCapacity;
+		RopeNode[] level = new RopeNode[count];
+		for (int i = 0; i < count; i++) {
+			int from = (int) ((long) s.length() * i / count);
+			int to = (int) ((long) s.length() * (i + 1) / count);
+			level[i] = RopeNode.leaf(leafCapacity);
+			s.getChars(from, to, level[i].chars, 0);
+			level[i].length = to - from;
+		}
+		// then the levels above, each sharing out the nodes below evenly.
+		while (count > 1) {
+			int parents = (count + fanout - 1) / fanout;
+			RopeNode[] above = new RopeNode[parents];
+			for (int i = 0; i < parents; i++) {
+				int from = (int) ((long) count * i / parents);
+				int to = (int) ((long) count * (i + 1) / parents);
+				above[i] = RopeNode.internal(level[0].height + 1, fanout);
+				System.arraycopy(level, from, above[i].children, 0, to - from);
+				above[i].count = to - from;
+				above[i].recount(0);
+			}
+			level = above;
+			count = parents;
+		}
+		this.root = level[0];
+	}
+
+	/**
+	 *
+	 * @return the height of this tree: 0 for a single leaf, -1 if it is empty.
+	 */
+	public int height() {
+		return RopeNode.height(this.root);
+	}
+
+	/**
+	 *
+	 * @return the number of characters in this tree
+	 */
+	public int size() {
+		return RopeNode.size(this.root);
+	}
+
+	/**
+	 * @return the number of characters a leaf of this tree can hold.
+	 */
+	public int leafCapacity() {
+		return this.leafCapacity;
+	}
+
+	/**
+	 * @return the number of children an internal node of this tree can hold.
+	 */
+	public int fanout() {
+		return this.fanout;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position in the tree
+	 * @return the character at that position
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char get(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		RopeNode n = this.root;
+		while (!n.isLeaf()) {
+			int i = n.childAt(pos);
+			pos -= n.start(i);
+			n = n.children[i];
+		}
+		return n.chars[pos];
+	}
+
+	/**
+	 * This method operates in O(length + log N), where N is the size of this
+	 * tree.
+	 *
+	 * @param pos
+	 *            location of the beginning of the string to retrieve
+	 * @param length
+	 *            length of the string to retrieve
+	 * @return string of length that starts in position pos
+	 * @throws IndexOutOfBoundsException
+	 *             unless both pos and pos+length-1 are legitimate indexes
+	 *             within this tree.
+	 */
+	public String get(int pos, int length) throws IndexOutOfBoundsException {
+		if (length == 0)
+			return "";
+		if (pos < 0 || length < 0 || pos + length > this.size())
+			throw new IndexOutOfBoundsException();
+		char[] result = new char[length];
+		RopeNode.getChars(this.root, pos, length, result, 0);
+		return new String(result);
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add to the end of this tree.
+	 */
+	public void add(char c) {
+		this.add(c, this.size());
+	}
+
+	/**
+	 *
+	 * @param c
+	 *            character to add
+	 * @param pos
+	 *            character added in this inorder position
+	 * @throws IndexOutOfBoundsException
+	 *             id pos is negative or too large for this tree
+	 */
+	public void add(char c, int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos > this.size())
+			throw new IndexOutOfBoundsException();
+		if (this.root == null)
+			this.root = RopeNode.leaf(this.leafCapacity);
+		RopeNode extra = this.add(this.root, c, pos);
+		if (extra != null)
+			this.root = this.join(this.root, extra);
+	}
+
+	/**
+	 *
+	 * inserts c at position pos of the subtree rooted at n.
+	 *
+	 * @param n
+	 * @param c
+	 * @param pos
+	 * @return the node split off the end of n if n overflowed, or null.
+	 */
+	private RopeNode add(RopeNode n, char c, int pos) {
+		if (n.isLeaf()) {
+			if (!n.isFull()) {
+				n.insert(c, pos);
+				return null;
+			}
+			RopeNode tail = n.cut(n.length / 2);
+			if (pos <= n.length)
+				n.insert(c, pos);
+			else
+				tail.insert(c, pos - n.length);
+			return tail;
+		}
+		int i = n.childBefore(pos);
+		RopeNode extra = this.add(n.children[i], c, pos - n.start(i));
+		if (extra == null) {
+			n.resize(i, 1);
+			return null;
+		}
+		n.recount(i);
+		n.insertChild(i + 1, extra);
+		return n.isFull() ? n.cut(n.count / 2) : null;
+	}
+
+	/**
+	 *
+	 * @param pos
+	 *            position of character to delete from this tree
+	 * @return the character that is deleted
+	 * @throws IndexOutOfBoundsException
+	 */
+	public char delete(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		char deleted = remove(this.root, pos);
+		this.root = shrink(this.root);
+		return deleted;
+	}
+
+	/**
+	 *
+	 * removes the character at position pos of the subtree rooted at n.
+	 *
+	 * @param n
+	 * @param pos
+	 * @return the removed character.
+	 */
+	private static char remove(RopeNode n, int pos) {
+		if (n.isLeaf())
+			return n.remove(pos);
+		int i = n.childAt(pos);
+		char removed = remove(n.children[i], pos - n.start(i));
+		n.resize(i, -1);
+		if (n.children[i].isUnderfull() && n.count > 1)
+			n.rebalanceChildren(i == n.count - 1 ? i - 1 : i);
+		return removed;
+	}
+
+	/**
+	 *
+	 * @param n
+	 *            a root
+	 * @return n without the levels that have a single child, or null if it
+	 *         holds no characters.
+	 */
+	private static RopeNode shrink(RopeNode n) {
+		while (n != null && !n.isLeaf() && n.count == 1)
+			n = n.children[0];
+		if (n != null && n.size() == 0)
+			return null;
+		return n;
+	}
+
+	/**
+	 * Runs in time proportional to the log of the size of this tree, by
+	 * splitting it twice and concatenating the outer parts.
+	 *
+	 * @param start
+	 *            position of beginning of string to delete
+	 *
+	 * @param length
+	 *            length of string to delete
+	 * @return a RopeEditTree containing the deleted string
+	 * @throws IndexOutOfBoundsException
+	 *             unless both start and start+length-1 are in range for this
+	 *             tree.
+	 */
+	public RopeEditTree delete(int start, int length) throws IndexOutOfBoundsException {
+		if (start < 0 || start + length >= this.size())
+			throw new IndexOutOfBoundsException(
+					(start < 0) ? "negative first argument to delete" : "delete range extends past end of string");
+		RopeEditTree t2 = this.split(start);
+		RopeEditTree t3 = t2.split(length);
+		this.concatenate(t3);
+		return t2;
+	}
+
+	/**
+	 * Append (in time proportional to the log of the size of the larger tree)
+	 * the contents of the other tree to this one. Other is made empty after
+	 * this operation.
+	 *
+	 * @param other
+	 * @throws IllegalArgumentException
+	 *             if this == other, or other has another leaf capacity or
+	 *             fanout
+	 */
+	public void concatenate(RopeEditTree other) throws IllegalArgumentException {
+		if (this == other || this.leafCapacity != other.leafCapacity || this.fanout != other.fanout)
+			throw new IllegalArgumentException();
+		this.root = this.concatenate(this.root, other.root);
+		other.root = null;
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @param b
+	 * @return the root of a tree holding a, then b.
+	 */
+	private RopeNode concatenate(RopeNode a, RopeNode b) {
+		if (a == null)
+			return b;
+		if (b == null)
+			return a;
+		if (a.height > b.height) {
+			RopeNode extra = this.append(a, b);
+			return extra == null ? a : this.join(a, extra);
+		}
+		if (a.height < b.height) {
+			RopeNode extra = this.prepend(b, a);
+			return extra == null ? b : this.join(b, extra);
+		}
+		// the two roots become siblings, or one node if they fit in it.
+		RopeNode joined = this.join(a, b);
+		joined.rebalanceChildren(0);
+		return shrink(joined);
+	}
+
+	/**
+	 *
+	 * @param a
+	 * @param b
+	 *            of the same height as a
+	 * @return a new root whose children are a and b.
+	 */
+	private RopeNode join(RopeNode a, RopeNode b) {
+		RopeNode joined = RopeNode.internal(a.height + 1, this.fanout);
+		joined.children[0] = a;
+		joined.children[1] = b;
+		joined.count = 2;
+		joined.recount(0);
+		return joined;
+	}
+
+	/**
+	 *
+	 * hangs t, a shorter tree, off the right edge of n, on the level where it
+	 * fits, and evens it out with its new left sibling.
+	 *
+	 * @param n
+	 * @param t
+	 * @return the node split off the end of n if n overflowed, or null.
+	 */
+	private RopeNode append(RopeNode n, RopeNode t) {
+		int last = n.count - 1;
+		if (n.height == t.height + 1) {
+			n.insertChild(n.count, t);
+			n.rebalanceChildren(last);
+		} else {
+			RopeNode extra = this.append(n.children[last], t);
+			n.recount(last);
+			if (extra != null)
+				n.insertChild(n.count, extra);
+		}
+		return n.isFull() ? n.cut(n.count / 2) : null;
+	}
+
+	/**
+	 *
+	 * hangs t, a shorter tree, off the left edge of n, on the level where it
+	 * fits, and evens it out with its new right sibling.
+	 *
+	 * @param n
+	 * @param t
+	 * @return the node split off the end of n if n overflowed, or null.
+	 */
+	private RopeNode prepend(RopeNode n, RopeNode t) {
+		if (n.height == t.height + 1) {
+			n.insertChild(0, t);
+			n.rebalanceChildren(0);
+		} else {
+			RopeNode extra = this.prepend(n.children[0], t);
+			n.recount(0);
+			if (extra != null)
+				n.insertChild(1, extra);
+		}
+		return n.isFull() ? n.cut(n.count / 2) : null;
+	}
+
+	/**
+	 * This operation is done in time proportional to the height of this tree.
+	 *
+	 * @param pos
+	 *            where to split this tree
+	 * @return a new tree containing all of the elements of this tree whose
+	 *         positions are >= position. Their nodes are removed from this
+	 *         tree.
+	 * @throws IndexOutOfBoundsException
+	 */
+	public RopeEditTree split(int pos) throws IndexOutOfBoundsException {
+		if (pos < 0 || pos >= this.size())
+			throw new IndexOutOfBoundsException();
+		this.split(this.root, pos, this.parts);
+		this.root = this.parts[0];
+		RopeEditTree rightTree = new RopeEditTree(this.leafCapacity, this.fanout);
+		rightTree.root = this.parts[1];
+		this.parts[0] = null;
+		this.parts[1] = null;
+		return rightTree;
+	}
+
+	/**
+	 *
+	 * splits the subtree rooted at n so that parts[0] holds the characters
+	 * before pos and parts[1] holds the rest. The children of n on either side
+	 * of the one holding pos become the roots of two trees, which are
+	 * concatenated with the two halves of that child.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param parts
+	 */
+	private void split(RopeNode n, int pos, RopeNode[] parts) {
+		if (n.isLeaf()) {
+			if (pos == 0) {
+				parts[0] = null;
+				parts[1] = n;
+			} else {
+				parts[0] = n;
+				parts[1] = pos == n.length ? null : n.cut(pos);
+			}
+			return;
+		}
+		int i = n.childAt(pos);
+		RopeNode child = n.children[i];
+		int offset = pos - n.start(i);
+		RopeNode after = this.group(n, i + 1, n.count);
+		RopeNode before = this.group(n, 0, i);
+		this.split(child, offset, parts);
+		RopeNode left = parts[0];
+		RopeNode right = parts[1];
+		parts[0] = this.concatenate(before, left);
+		parts[1] = this.concatenate(right, after);
+	}
+
+	/**
+	 *
+	 * @param n
+	 * @param from
+	 * @param to
+	 * @return the root of a tree holding children from up to, but not
+	 *         including, to of n; n itself is reused for the first children.
+	 */
+	private RopeNode group(RopeNode n, int from, int to) {
+		if (from == to)
+			return null;
+		if (to - from == 1)
+			return n.children[from];
+		if (from == 0) {
+			Arrays.fill(n.children, to, n.count, null);
+			n.count = to;
+			return n;
+		}
+		RopeNode group = RopeNode.internal(n.height, this.fanout);
+		System.arraycopy(n.children, from, group.children, 0, to - from);
+		group.count = to - from;
+		group.recount(0);
+		return group;
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to look for
+	 * @return the position in this tree of the first occurrence of s; -1 if s
+	 *         does not occur
+	 */
+	public int find(String s) {
+		return this.find(s, 0);
+	}
+
+	/**
+	 *
+	 * @param s
+	 *            the string to search for
+	 * @param pos
+	 *            the position in the tree to begin the search
+	 * @return the position in this tree of the first occurrence of s that does
+	 *         not occur before position pos; -1 if s does not occur
+	 */
+	public int find(String s, int pos) {
+		if (s.isEmpty())
+			return 0;
+		pos = Math.max(pos, 0);
+		if (pos >= this.size())
+			return -1;
+		return find(this.root, pos, 0, new KmpMatcher(s, false), s.length());
+	}
+
+	/**
+	 *
+	 * feeds matcher the characters of the subtree rooted at n from position pos
+	 * on, straight out of the leaves.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param first
+	 *            the position of the first character of n in the tree
+	 * @param matcher
+	 * @param length
+	 *            of the pattern
+	 * @return the position in the tree of the first occurrence, or -1.
+	 */
+	private static int find(RopeNode n, int pos, int first, KmpMatcher matcher, int length) {
+		if (n.isLeaf()) {
+			for (int i = pos; i < n.length; i++)
+				if (matcher.next(n.chars[i]))
+					return first + i - length + 1;
+			return -1;
+		}
+		for (int i = n.childAt(pos); i < n.count; i++) {
+			int start = n.start(i);
+			int found = find(n.children[i], Math.max(pos - start, 0), first + start, matcher, length);
+			if (found >= 0)
+				return found;
+		}
+		return -1;
+	}
+
+	/**
+	 * Encodes the contents of this tree in charset and writes them to out,
+	 * leaf by leaf, straight from the leaves through one reused buffer.
+	 * Characters that charset cannot encode are replaced, as String.getBytes()
+	 * does. out is left open.
+	 *
+	 * @param out
+	 * @param charset
+	 * @throws IOException
+	 *             if out does
+	 */
+	public void writeTo(WritableByteChannel out, Charset charset) throws IOException {
+		ChannelWriter writer = new ChannelWriter(out, charset);
+		if (this.root != null)
+			writeLeaves(this.root, writer);
+		writer.finish();
+	}
+
+	private static void writeLeaves(RopeNode n, ChannelWriter writer) throws IOException {
+		if (n.isLeaf()) {
+			writer.write(n.chars, 0, n.length);
+			return;
+		}
+		for (int i = 0; i < n.count; i++)
+			writeLeaves(n.children[i], writer);
+	}
+
+	/**
+	 * return the string produced by an inorder traversal of this tree
+	 */
+	@Override
+	public String toString() {
+		return this.get(0, this.size());
+	}
+
+	RopeNode getRoot() {
+		return this.root;
+	}
+}
@@ -0,0 +1,213 @@
+package editortrees;
+
+import static editortrees.RandomEditsTest.text;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for RopeEditTree. Small leaves and fanouts are used so that leaves
+ * and nodes split, merge and even out often.
+ *
+ */
+public class RopeEditTreeTest {
+
+	// checks ends, heights, and that every node but the root is at least half
+	// full and no node overflows.
+	private static void check(RopeEditTree t) {
+		RopeNode root = t.getRoot();
+		if (root == null)
+			return;
+		assertTrue(root.size() > 0);
+		assertTrue(root.isLeaf() || root.count > 1);
+		check(root, true);
+	}
+
+	private static int check(RopeNode n, boolean isRoot) {
+		if (n.isLeaf()) {
+			assertTrue(n.length <= n.chars.length);
+			assertTrue(isRoot || !n.isUnderfull());
+			return n.length;
+		}
+		assertTrue(n.count < n.children.length);
+		assertTrue(isRoot || !n.isUnderfull());
+		int end = 0;
+		for (int i = 0; i < n.count; i++) {
+			assertEquals(n.height - 1, n.children[i].height);
+			end += check(n.children[i], false);
+			assertEquals(end, n.ends[i]);
+		}
+		for (int i = n.count; i < n.children.length; i++)
+			assertEquals(null, n.children[i]);
+		return end;
+	}
+
+	@Test
+	public void testEmpty() {
+		RopeEditTree t = new RopeEditTree();
+		assertEquals("", t.toString());
+		assertEquals(0, t.size());
+		assertEquals(-1, t.height());
+		t.add('a');
+		assertEquals('a', t.delete(0));
+		assertEquals(-1, t.height());
+	}
+
+	@Test
+	public void testStringConstructor() {
+		for (int length = 0; length < 200; length++) {
+			RopeEditTree t = new RopeEditTree(text(length), 4, 4);
+			check(t);
+			assertEquals(text(length), t.toString());
+		}
+		RopeEditTree t = new RopeEditTree("the quick brown fox", 5, 4);
+		assertEquals('q', t.get(4));
+		assertEquals("brown", t.get(10, 5));
+		// four leaves under one node.
+		assertEquals(1, t.height());
+	}
+
+	@Test
+	public void testShallow() {
+		// a million characters in 1024-character leaves, 32 to a node.
+		RopeEditTree t = new RopeEditTree(text(1000000));
+		assertEquals(2, t.height());
+		Random random = new Random(230);
+		for (int i = 0; i < 100000; i++)
+			t.add('x', random.nextInt(t.size() + 1));
+		check(t);
+		assertTrue(t.height() <= 3);
+	}
+
+	@Test
+	public void testAddAtEndsAndDeleteAll() {
+		RopeEditTree t = new RopeEditTree(3, 4);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			char c = (char) ('a' + i % 26);
+			if (i % 2 == 0) {
+				t.add(c);
+				expected.append(c);
+			} else {
+				t.add(c, 0);
+				expected.insert(0, c);
+			}
+			check(t);
+		}
+		assertEquals(expected.toString(), t.toString());
+		while (t.size() > 0) {
+			int pos = t.size() / 3;
+			assertEquals(expected.charAt(pos), t.delete(pos));
+			expected.deleteCharAt(pos);
+			check(t);
+		}
+		assertEquals(-1, t.height());
+	}
+
+	@Test
+	public void testRandomEdits() {
+		RandomEditsTest<RopeEditTree> edits = new RandomEditsTest<RopeEditTree>(new RopeEditTree(4, 4),
+				RopeEditTree::add, RopeEditTree::delete, RopeEditTree::delete, RopeEditTree::split,
+				RopeEditTree::concatenate) {
+			@Override
+			void check(RopeEditTree t) {
+				RopeEditTreeTest.check(t);
+			}
+		};
+		edits.run(20000);
+		assertEquals(edits.expected.length(), edits.tree.size());
+	}
+
+	@Test
+	public void testConcatenateUnevenTrees() {
+		for (int small = 0; small < 60; small++) {
+			RopeEditTree big = new RopeEditTree(text(2000), 4, 4);
+			big.concatenate(new RopeEditTree(text(small), 4, 4));
+			check(big);
+			assertEquals(text(2000) + text(small), big.toString());
+			RopeEditTree little = new RopeEditTree(text(small), 4, 4);
+			little.concatenate(new RopeEditTree(text(2000), 4, 4));
+			check(little);
+			assertEquals(text(small) + text(2000), little.toString());
+		}
+	}
+
+	@Test
+	public void testSplitEverywhere() {
+		String s = text(300);
+		for (int pos = 0; pos < s.length(); pos++) {
+			RopeEditTree t = new RopeEditTree(s, 4, 5);
+			RopeEditTree right = t.split(pos);
+			check(t);
+			check(right);
+			assertEquals(s.substring(0, pos), t.toString());
+			assertEquals(s.substring(pos), right.toString());
+		}
+	}
+
+	@Test
+	public void testFind() {
+		RopeEditTree t = new RopeEditTree(text(10000) + "needle" + text(100), 16, 4);
+		assertEquals(10000, t.find("needle"));
+		assertEquals(10000, t.find("needle", 10000));
+		assertEquals(-1, t.find("needle", 10001));
+		assertEquals(27, t.find("bc", 2));
+		assertEquals(-1, t.find("x", 20000));
+		assertEquals(0, t.find(""));
+	}
+
+	@Test
+	public void testErrors() {
+		try {
+			new RopeEditTree(1, 32);
+			fail("did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		RopeEditTree t = new RopeEditTree("abc");
+		try {
+			t.concatenate(new RopeEditTree("def", 16, 4));
+			fail("did not throw IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// success
+		}
+		try {
+			t.get(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		try {
+			t.split(3);
+			fail("did not throw IndexOutOfBoundsException");
+		} catch (IndexOutOfBoundsException e) {
+			// success
+		}
+		assertEquals("abc", t.toString());
+	}
+
+	@Test
+	public void testWriteToChannel() throws IOException {
+		// a surrogate pair cut in two by the end of a leaf.
+		String s = "ab\u00E9\uD83D\uDE00\u20ACcd\uD83D\uDE00efg";
+		RopeEditTree t = new RopeEditTree(s, 4, 4);
+		t.add('x', 3);
+		t.delete(9);
+		String expected = t.toString();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		t.writeTo(Channels.newChannel(out), StandardCharsets.UTF_8);
+		assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+		out.reset();
+		new RopeEditTree().writeTo(Channels.newChannel(out), StandardCharsets.UTF_8);
+		assertEquals(0, out.size());
+	}
+}
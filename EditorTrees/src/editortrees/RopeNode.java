@@ -0,0 +1,330 @@
+package editortrees;
+
+import java.util.Arrays;
+
+/**
+ *
+ * A node in a RopeEditTree. A leaf holds a block of characters; an internal
+ * node holds its children and, for each child, the number of characters up to
+ * the end of that child, so finding the child that holds a position is a scan
+ * of one short array. Every leaf is at height 0 and every child of a node at
+ * height h is at height h - 1.
+ *
+ * Both arrays of an internal node have room for one child more than the
+ * fanout, so that a node can overflow before it is split.
+ *
+ */
+final class RopeNode {
+	final int height;
+	// for a leaf: its characters, of which the first length are in use.
+	char[] chars;
+	int length;
+	// for an internal node: its children, of which the first count are in use,
+	// and ends[i], the number of characters in children 0 to i.
+	RopeNode[] children;
+	int[] ends;
+	int count;
+
+	private RopeNode(int height) {
+		this.height = height;
+	}
+
+	static RopeNode leaf(int capacity) {
+		RopeNode n = new RopeNode(0);
+		n.chars = new char[capacity];
+		return n;
+	}
+
+	static RopeNode internal(int height, int fanout) {
+		RopeNode n = new RopeNode(height);
+		n.children = new RopeNode[fanout + 1];
+		n.ends = new int[fanout + 1];
+		return n;
+	}
+
+	static int size(RopeNode n) {
+		return n == null ? 0 : n.size();
+	}
+
+	static int height(RopeNode n) {
+		return n == null ? -1 : n.height;
+	}
+
+	boolean isLeaf() {
+		return this.height == 0;
+	}
+
+	int size() {
+		if (this.isLeaf())
+			return this.length;
+		return this.count == 0 ? 0 : this.ends[this.count - 1];
+	}
+
+	/**
+	 * @return true if this node has more than the fanout of children, or is a
+	 *         full leaf.
+	 */
+	boolean isFull() {
+		if (this.isLeaf())
+			return this.length == this.chars.length;
+		return this.count == this.children.length;
+	}
+
+	/**
+	 * @return true if this node is less than half full, which only the root
+	 *         may be.
+	 */
+	boolean isUnderfull() {
+		if (this.isLeaf())
+			return this.length < this.chars.length / 2;
+		return this.count < (this.children.length - 1) / 2;
+	}
+
+	/**
+	 * @param pos
+	 * @return the index of the child holding position pos.
+	 */
+	int childAt(int pos) {
+		int i = 0;
+		while (this.ends[i] <= pos)
+			i++;
+		return i;
+	}
+
+	/**
+	 * @param pos
+	 * @return the index of the child to add at position pos, which is the
+	 *         child before pos when pos is between two children.
+	 */
+	int childBefore(int pos) {
+		int i = 0;
+		while (this.ends[i] < pos)
+			i++;
+		return i;
+	}
+
+	/**
+	 * @param i
+	 * @return the position of the first character of child i.
+	 */
+	int start(int i) {
+		return i == 0 ? 0 : this.ends[i - 1];
+	}
+
+	/**
+	 *
+	 * recomputes ends from child i onwards.
+	 *
+	 * @param i
+	 */
+	void recount(int i) {
+		int end = this.start(i);
+		for (; i < this.count; i++) {
+			end += this.children[i].size();
+			this.ends[i] = end;
+		}
+	}
+
+	/**
+	 *
+	 * adds delta to ends from child i onwards, after child i grew or shrank.
+	 *
+	 * @param i
+	 * @param delta
+	 */
+	void resize(int i, int delta) {
+		for (; i < this.count; i++)
+			this.ends[i] += delta;
+	}
+
+	void insertChild(int i, RopeNode child) {
+		System.arraycopy(this.children, i, this.children, i + 1, this.count - i);
+		this.children[i] = child;
+		this.count++;
+		this.recount(i);
+	}
+
+	void removeChild(int i) {
+		System.arraycopy(this.children, i + 1, this.children, i, this.count - i - 1);
+		System.arraycopy(this.ends, i + 1, this.ends, i, this.count - i - 1);
+		this.count--;
+		this.children[this.count] = null;
+		this.recount(i);
+	}
+
+	/**
+	 *
+	 * inserts c at offset i within this leaf, which must not be full.
+	 *
+	 * @param c
+	 * @param i
+	 */
+	void insert(char c, int i) {
+		System.arraycopy(this.chars, i, this.chars, i + 1, this.length - i);
+		this.chars[i] = c;
+		this.length++;
+	}
+
+	/**
+	 *
+	 * removes the character at offset i within this leaf.
+	 *
+	 * @param i
+	 * @return the removed character.
+	 */
+	char remove(int i) {
+		char removed = this.chars[i];
+		System.arraycopy(this.chars, i + 1, this.chars, i, this.length - i - 1);
+		this.length--;
+		return removed;
+	}
+
+	/**
+	 *
+	 * moves the characters of this leaf from offset i onwards, or the children
+	 * of this node from index i onwards, into a new node, which is returned.
+	 *
+	 * @param i
+	 * @return the new node, which follows this one.
+	 */
+	RopeNode cut(int i) {
+		if (this.isLeaf()) {
+			RopeNode tail = leaf(this.chars.length);
+			System.arraycopy(this.chars, i, tail.chars, 0, this.length - i);
+			tail.length = this.length - i;
+			this.length = i;
+			return tail;
+		}
+		RopeNode tail = internal(this.height, this.children.length - 1);
+		tail.count = this.count - i;
+		System.arraycopy(this.children, i, tail.children, 0, tail.count);
+		Arrays.fill(this.children, i, this.count, null);
+		this.count = i;
+		tail.recount(0);
+		return tail;
+	}
+
+	/**
+	 *
+	 * moves everything in next, the node that follows this one, onto the end
+	 * of this one, when it fits.
+	 *
+	 * @param next
+	 */
+	private void absorb(RopeNode next) {
+		if (this.isLeaf()) {
+			System.arraycopy(next.chars, 0, this.chars, this.length, next.length);
+			this.length += next.length;
+			return;
+		}
+		System.arraycopy(next.children, 0, this.children, this.count, next.count);
+		int old = this.count;
+		this.count += next.count;
+		this.recount(old);
+	}
+
+	/**
+	 *
+	 * moves the first n characters or children of next, the node that follows
+	 * this one, onto the end of this one.
+	 *
+	 * @param next
+	 * @param n
+	 */
+	private void takeFirst(RopeNode next, int n) {
+		if (this.isLeaf()) {
+			System.arraycopy(next.chars, 0, this.chars, this.length, n);
+			System.arraycopy(next.chars, n, next.chars, 0, next.length - n);
+			this.length += n;
+			next.length -= n;
+			return;
+		}
+		System.arraycopy(next.children, 0, this.children, this.count, n);
+		System.arraycopy(next.children, n, next.children, 0, next.count - n);
+		Arrays.fill(next.children, next.count - n, next.count, null);
+		int old = this.count;
+		this.count += n;
+		next.count -= n;
+		this.recount(old);
+		next.recount(0);
+	}
+
+	/**
+	 *
+	 * moves the last n characters or children of this node onto the start of
+	 * next, the node that follows this one.
+	 *
+	 * @param next
+	 * @param n
+	 */
+	private void giveLast(RopeNode next, int n) {
+		if (this.isLeaf()) {
+			System.arraycopy(next.chars, 0, next.chars, n, next.length);
+			System.arraycopy(this.chars, this.length - n, next.chars, 0, n);
+			this.length -= n;
+			next.length += n;
+			return;
+		}
+		System.arraycopy(next.children, 0, next.children, n, next.count);
+		System.arraycopy(this.children, this.count - n, next.children, 0, n);
+		Arrays.fill(this.children, this.count - n, this.count, null);
+		this.count -= n;
+		next.count += n;
+		next.recount(0);
+	}
+
+	/**
+	 *
+	 * merges children i and i + 1 if they fit in one node, or evens them out
+	 * otherwise, when either is less than half full.
+	 *
+	 * @param i
+	 */
+	void rebalanceChildren(int i) {
+		RopeNode a = this.children[i];
+		RopeNode b = this.children[i + 1];
+		if (!a.isUnderfull() && !b.isUnderfull())
+			return;
+		int sizeA = a.isLeaf() ? a.length : a.count;
+		int sizeB = b.isLeaf() ? b.length : b.count;
+		int room = a.isLeaf() ? a.chars.length : a.children.length - 1;
+		if (sizeA + sizeB <= room) {
+			a.absorb(b);
+			this.removeChild(i + 1);
+			this.recount(i);
+			return;
+		}
+		int half = (sizeA + sizeB) / 2;
+		if (sizeA < half)
+			a.takeFirst(b, half - sizeA);
+		else
+			a.giveLast(b, sizeA - half);
+		this.recount(i);
+	}
+
+	/**
+	 *
+	 * copies the characters at positions pos to pos + length - 1 of n into dst,
+	 * starting at dstBegin.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param length
+	 * @param dst
+	 * @param dstBegin
+	 */
+	static void getChars(RopeNode n, int pos, int length, char[] dst, int dstBegin) {
+		if (n.isLeaf()) {
+			System.arraycopy(n.chars, pos, dst, dstBegin, length);
+			return;
+		}
+		for (int i = n.childAt(pos); length > 0; i++) {
+			int start = n.start(i);
+			int taken = Math.min(length, n.ends[i] - pos);
+			getChars(n.children[i], pos - start, taken, dst, dstBegin);
+			pos += taken;
+			dstBegin += taken;
+			length -= taken;
+		}
+	}
+}
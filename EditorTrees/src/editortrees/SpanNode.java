@@ -0,0 +1,58 @@
+package editortrees;
+
+/**
+ *
+ * A node that holds a run of characters instead of a single one: a ChunkNode
+ * or a PieceNode. rank and size count characters rather than nodes, and
+ * SpanTree keeps a tree of either kind balanced.
+ *
+ * @param <N>
+ *            the kind of node
+ */
+abstract class SpanNode<N extends SpanNode<N>> {
+	int length; // number of characters in this node.
+	N left, right;
+	int rank; // number of characters in the left subtree.
+	int size; // number of characters in this whole subtree.
+	int height;
+
+	static int height(SpanNode<?> n) {
+		return n == null ? -1 : n.height;
+	}
+
+	static int size(SpanNode<?> n) {
+		return n == null ? 0 : n.size;
+	}
+
+	/**
+	 *
+	 * shortens this node to its first i characters, and returns the rest as a
+	 * new node, detached from the tree.
+	 *
+	 * @param i
+	 * @return a node with the characters that used to follow offset i.
+	 */
+	abstract N cut(int i);
+
+	/**
+	 *
+	 * copies the characters in [from, to) of this node into dst.
+	 *
+	 * @param from
+	 * @param to
+	 * @param dst
+	 * @param dstBegin
+	 */
+	abstract void copyTo(int from, int to, char[] dst, int dstBegin);
+
+	/**
+	 *
+	 * recompute rank, size and height from the children.
+	 *
+	 */
+	final void update() {
+		this.rank = size(this.left);
+		this.size = this.rank + this.length + size(this.right);
+		this.height = Math.max(height(this.left), height(this.right)) + 1;
+	}
+}
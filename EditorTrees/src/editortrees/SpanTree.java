@@ -0,0 +1,213 @@
+package editortrees;
+
+/**
+ *
+ * The AVL operations that ChunkedEditTree and PieceTable share, on trees of
+ * SpanNodes. Every change is a join, or a split made of joins, so each runs
+ * in time proportional to the height of the tree.
+ *
+ */
+final class SpanTree {
+
+	private SpanTree() {
+	}
+
+	/**
+	 *
+	 * copies the characters in [from, to) of the subtree rooted at n into dst,
+	 * visiting only the nodes that overlap the range.
+	 *
+	 * @param n
+	 * @param from
+	 * @param to
+	 * @param dst
+	 * @param dstBegin
+	 */
+	static void copyRange(SpanNode<?> n, int from, int to, char[] dst, int dstBegin) {
+		while (n != null && from < to) {
+			int nodeStart = n.rank;
+			int nodeEnd = n.rank + n.length;
+			if (from < nodeStart) {
+				// part of the range lies in the left subtree.
+				copyRange(n.left, from, Math.min(to, nodeStart), dst, dstBegin);
+				dstBegin += Math.min(to, nodeStart) - from;
+				from = nodeStart;
+			}
+			if (from < to && from < nodeEnd) {
+				int end = Math.min(to, nodeEnd);
+				n.copyTo(from - nodeStart, end - nodeStart, dst, dstBegin);
+				dstBegin += end - from;
+				from = end;
+			}
+			// whatever is left lies in the right subtree.
+			from -= nodeEnd;
+			to -= nodeEnd;
+			n = n.right;
+		}
+	}
+
+	/**
+	 *
+	 * splits the subtree rooted at n so that parts[0] holds the characters
+	 * before pos and parts[1] holds the rest. A node that straddles pos is cut
+	 * in two.
+	 *
+	 * @param n
+	 * @param pos
+	 * @param parts
+	 */
+	static <N extends SpanNode<N>> void split(N n, int pos, N[] parts) {
+		N l = n.left;
+		N r = n.right;
+		int nodeEnd = n.rank + n.length;
+		if (pos < n.rank) {
+			split(l, pos, parts);
+			parts[1] = join(parts[1], n, r);
+		} else if (pos == n.rank) {
+			parts[0] = l;
+			parts[1] = join(null, n, r);
+		} else if (pos < nodeEnd) {
+			N tail = n.cut(pos - n.rank);
+			parts[0] = join(l, n, null);
+			parts[1] = join(null, tail, r);
+		} else if (pos == nodeEnd) {
+			parts[0] = join(l, n, null);
+			parts[1] = r;
+		} else {
+			split(r, pos - nodeEnd, parts);
+			parts[0] = join(l, n, parts[0]);
+		}
+	}
+
+	/**
+	 *
+	 * joins l, the node k and r (in that order) into one balanced tree. It
+	 * descends the taller tree until it reaches a subtree whose height is
+	 * within one of the other tree, so it runs in time proportional to the
+	 * difference in heights.
+	 *
+	 * @param l
+	 * @param k
+	 * @param r
+	 * @return the root of the joined tree.
+	 */
+	static <N extends SpanNode<N>> N join(N l, N k, N r) {
+		int hl = SpanNode.height(l);
+		int hr = SpanNode.height(r);
+		if (hl > hr + 1) {
+			l.right = join(l.right, k, r);
+			return rebalance(l);
+		}
+		if (hr > hl + 1) {
+			r.left = join(l, k, r.left);
+			return rebalance(r);
+		}
+		k.left = l;
+		k.right = r;
+		k.update();
+		return k;
+	}
+
+	/**
+	 *
+	 * adds k as the first node of the subtree rooted at n.
+	 *
+	 * @param n
+	 * @param k
+	 * @return the root of the subtree after rebalancing.
+	 */
+	static <N extends SpanNode<N>> N insertFirst(N n, N k) {
+		return join(null, k, n);
+	}
+
+	/**
+	 *
+	 * removes the first node of the subtree rooted at n.
+	 *
+	 * @param n
+	 * @return the root of the subtree after rebalancing.
+	 */
+	static <N extends SpanNode<N>> N removeFirst(N n) {
+		if (n.left == null)
+			return n.right;
+		n.left = removeFirst(n.left);
+		return rebalance(n);
+	}
+
+	/**
+	 *
+	 * removes the last node of the subtree rooted at n.
+	 *
+	 * @param n
+	 * @return the root of the subtree after rebalancing.
+	 */
+	static <N extends SpanNode<N>> N removeLast(N n) {
+		if (n.right == null)
+			return n.left;
+		n.right = removeLast(n.right);
+		return rebalance(n);
+	}
+
+	/**
+	 *
+	 * removes n from its subtree, replacing it with its successor when it has
+	 * two children.
+	 *
+	 * @param n
+	 * @return the root of the subtree without n.
+	 */
+	static <N extends SpanNode<N>> N unlink(N n) {
+		if (n.left == null)
+			return n.right;
+		if (n.right == null)
+			return n.left;
+		N successor = n.right;
+		while (successor.left != null)
+			successor = successor.left;
+		successor.right = removeFirst(n.right);
+		successor.left = n.left;
+		return rebalance(successor);
+	}
+
+	/**
+	 *
+	 * updates the fields of n and does a single or double rotation if its
+	 * children's heights differ by more than one.
+	 *
+	 * @param n
+	 * @return the root of the subtree after rebalancing.
+	 */
+	static <N extends SpanNode<N>> N rebalance(N n) {
+		n.update();
+		int diff = SpanNode.height(n.left) - SpanNode.height(n.right);
+		if (diff > 1) {
+			if (SpanNode.height(n.left.left) < SpanNode.height(n.left.right))
+				n.left = rotateLeft(n.left);
+			return rotateRight(n);
+		}
+		if (diff < -1) {
+			if (SpanNode.height(n.right.right) < SpanNode.height(n.right.left))
+				n.right = rotateRight(n.right);
+			return rotateLeft(n);
+		}
+		return n;
+	}
+
+	private static <N extends SpanNode<N>> N rotateLeft(N p) {
+		N child = p.right;
+		p.right = child.left;
+		p.update();
+		child.left = p;
+		child.update();
+		return child;
+	}
+
+	private static <N extends SpanNode<N>> N rotateRight(N p) {
+		N child = p.left;
+		p.left = child.right;
+		p.update();
+		child.right = p;
+		child.update();
+		return child;
+	}
+}
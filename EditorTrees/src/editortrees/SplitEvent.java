@@ -0,0 +1,20 @@
+package editortrees;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded by EditTree.split().
+ *
+ */
+@Name("editortrees.Split")
+@Label("Split")
+@Threshold("20 ms")
+final class SplitEvent extends EditTreeEvent {
+	@Label("Position")
+	int position;
+
+	@Label("Size Split Off")
+	int splitOff;
+}
@@ -0,0 +1,41 @@
+package editortrees;
+
+/**
+ * Treap balance for a BalancedEditTree: balance is a random priority, and no
+ * node has a higher priority than its parent.
+ *
+ */
+final class TreapStrategy extends BalancingStrategy {
+
+	TreapStrategy() {
+		super("treap");
+	}
+
+	private static int priority(BalancedNode n) {
+		return n == null ? Integer.MIN_VALUE : n.balance;
+	}
+
+	@Override
+	void initialize(BalancedNode leaf, BalancedEditTree tree) {
+		leaf.balance = tree.random().nextInt();
+	}
+
+	@Override
+	BalancedNode join(BalancedNode left, BalancedNode middle, BalancedNode right, BalancedEditTree tree) {
+		if (priority(middle) >= priority(left) && priority(middle) >= priority(right)) {
+			middle.left = left;
+			middle.right = right;
+			this.update(middle);
+			return middle;
+		}
+		tree.rotated();
+		if (priority(left) > priority(right)) {
+			left.right = this.join(left.right, middle, right, tree);
+			this.update(left);
+			return left;
+		}
+		right.left = this.join(left, middle, right.left, tree);
+		this.update(right);
+		return right;
+	}
+}
@@ -0,0 +1,93 @@
+package editortrees;
+
+/**
+ * Weight balance for a BalancedEditTree: the weight of a subtree is its size
+ * plus one, and each side of a node holds at least ALPHA of the weight of the
+ * node. balance is not used.
+ *
+ */
+final class WeightBalancedStrategy extends BalancingStrategy {
+	// at most 1 - 1 / sqrt(2), so that one or two rotations rebalance a join.
+	private static final double ALPHA = 0.29;
+
+	WeightBalancedStrategy() {
+		super("weight-balanced");
+	}
+
+	private static long weight(BalancedNode n) {
+		return BalancedNode.size(n) + 1L;
+	}
+
+	private static boolean balanced(long left, long right) {
+		double least = ALPHA * (left + right);
+		return left >= least && right >= least;
+	}
+
+	@Override
+	void initialize(BalancedNode leaf, BalancedEditTree tree) {
+		leaf.balance = 0;
+	}
+
+	@Override
+	BalancedNode join(BalancedNode left, BalancedNode middle, BalancedNode right, BalancedEditTree tree) {
+		if (!balanced(weight(left), weight(right))) {
+			if (weight(left) > weight(right))
+				return this.joinRight(left, middle, right, tree);
+			return this.joinLeft(left, middle, right, tree);
+		}
+		middle.left = left;
+		middle.right = right;
+		this.update(middle);
+		return middle;
+	}
+
+	/**
+	 *
+	 * joins down the right spine of left, the heavier tree, until it reaches a
+	 * subtree that balances with right.
+	 *
+	 */
+	private BalancedNode joinRight(BalancedNode left, BalancedNode middle, BalancedNode right,
+			BalancedEditTree tree) {
+		tree.rotated();
+		if (balanced(weight(left), weight(right))) {
+			middle.left = left;
+			middle.right = right;
+			this.update(middle);
+			return middle;
+		}
+		BalancedNode joined = this.joinRight(left.right, middle, right, tree);
+		left.right = joined;
+		if (balanced(weight(left.left), weight(joined))) {
+			this.update(left);
+			return left;
+		}
+		if (balanced(weight(left.left), weight(joined.left))
+				&& balanced(weight(left.left) + weight(joined.left), weight(joined.right)))
+			return this.rotateLeft(left, tree);
+		left.right = this.rotateRight(joined, tree);
+		return this.rotateLeft(left, tree);
+	}
+
+	private BalancedNode joinLeft(BalancedNode left, BalancedNode middle, BalancedNode right,
+			BalancedEditTree tree) {
+		tree.rotated();
+		if (balanced(weight(left), weight(right))) {
+			middle.left = left;
+			middle.right = right;
+			this.update(middle);
+			return middle;
+		}
+		BalancedNode joined = this.joinLeft(left, middle, right.left, tree);
+		right.left = joined;
+		if (balanced(weight(joined), weight(right.right))) {
+			this.update(right);
+			return right;
+		}
+		if (balanced(weight(joined.right), weight(right.right))
+				&& balanced(weight(joined.left), weight(joined.right) + weight(right.right)))
+			return this.rotateRight(right, tree);
+		right.left = this.rotateLeft(joined, tree);
+		return this.rotateRight(right, tree);
+	}
+}
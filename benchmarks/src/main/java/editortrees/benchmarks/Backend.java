@@ -0,0 +1,212 @@
+package editortrees.benchmarks;
+
+import editortrees.ArenaEditTree;
+import editortrees.ChunkedEditTree;
+import editortrees.EditTree;
+import editortrees.PieceTable;
+import editortrees.RopeEditTree;
+
+/**
+ * The operations the backends have in common, so one benchmark can be run
+ * against each of them. A document is built with open().
+ *
+ */
+public enum Backend {
+	EDIT_TREE {
+		@Override
+		Document open(String text) {
+			final EditTree tree = new EditTree(text);
+			return new Document() {
+				public int size() {
+					return tree.size();
+				}
+
+				public char get(int pos) {
+					return tree.get(pos);
+				}
+
+				public String get(int pos, int length) {
+					return tree.get(pos, length);
+				}
+
+				public void add(char c, int pos) {
+					tree.add(c, pos);
+				}
+
+				public char delete(int pos) {
+					return tree.delete(pos);
+				}
+
+				public void splitAndConcatenate(int pos) {
+					tree.concatenate(tree.split(pos));
+				}
+
+				public int find(String s) {
+					return tree.find(s);
+				}
+			};
+		}
+	},
+	CHUNKED_EDIT_TREE {
+		@Override
+		Document open(String text) {
+			final ChunkedEditTree tree = new ChunkedEditTree(text);
+			return new Document() {
+				public int size() {
+					return tree.size();
+				}
+
+				public char get(int pos) {
+					return tree.get(pos);
+				}
+
+				public String get(int pos, int length) {
+					return tree.get(pos, length);
+				}
+
+				public void add(char c, int pos) {
+					tree.add(c, pos);
+				}
+
+				public char delete(int pos) {
+					return tree.delete(pos);
+				}
+
+				public void splitAndConcatenate(int pos) {
+					tree.concatenate(tree.split(pos));
+				}
+
+				public int find(String s) {
+					return tree.find(s);
+				}
+			};
+		}
+	},
+	ARENA_EDIT_TREE {
+		@Override
+		Document open(String text) {
+			final ArenaEditTree tree = new ArenaEditTree(text);
+			return new Document() {
+				public int size() {
+					return tree.size();
+				}
+
+				public char get(int pos) {
+					return tree.get(pos);
+				}
+
+				public String get(int pos, int length) {
+					return tree.get(pos, length);
+				}
+
+				public void add(char c, int pos) {
+					tree.add(c, pos);
+				}
+
+				public char delete(int pos) {
+					return tree.delete(pos);
+				}
+
+				public void splitAndConcatenate(int pos) {
+					tree.concatenate(tree.split(pos));
+				}
+
+				public int find(String s) {
+					return tree.find(s);
+				}
+			};
+		}
+	},
+	ROPE_EDIT_TREE {
+		@Override
+		Document open(String text) {
+			final RopeEditTree tree = new RopeEditTree(text);
+			return new Document() {
+				public int size() {
+					return tree.size();
+				}
+
+				public char get(int pos) {
+					return tree.get(pos);
+				}
+
+				public String get(int pos, int length) {
+					return tree.get(pos, length);
+				}
+
+				public void add(char c, int pos) {
+					tree.add(c, pos);
+				}
+
+				public char delete(int pos) {
+					return tree.delete(pos);
+				}
+
+				public void splitAndConcatenate(int pos) {
+					tree.concatenate(tree.split(pos));
+				}
+
+				public int find(String s) {
+					return tree.find(s);
+				}
+			};
+		}
+	},
+	PIECE_TABLE {
+		@Override
+		Document open(String text) {
+			final PieceTable tree = new PieceTable(text);
+			return new Document() {
+				public int size() {
+					return tree.size();
+				}
+
+				public char get(int pos) {
+					return tree.get(pos);
+				}
+
+				public String get(int pos, int length) {
+					return tree.get(pos, length);
+				}
+
+				public void add(char c, int pos) {
+					tree.add(c, pos);
+				}
+
+				public char delete(int pos) {
+					return tree.delete(pos);
+				}
+
+				public void splitAndConcatenate(int pos) {
+					tree.concatenate(tree.split(pos));
+				}
+
+				public int find(String s) {
+					return tree.find(s);
+				}
+			};
+		}
+	};
+
+	/**
+	 * @param text
+	 * @return a document of this backend holding text.
+	 */
+	abstract Document open(String text);
+
+	public interface Document {
+		int size();
+
+		char get(int pos);
+
+		String get(int pos, int length);
+
+		void add(char c, int pos);
+
+		char delete(int pos);
+
+		void splitAndConcatenate(int pos);
+
+		int find(String s);
+	}
+}
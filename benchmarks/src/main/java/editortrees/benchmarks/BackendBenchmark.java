@@ -0,0 +1,97 @@
+package editortrees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of EditTree, ChunkedEditTree, ArenaEditTree, RopeEditTree and
+ * PieceTable side by side. Their memory per character is reported by
+ * Footprint.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx12g" })
+public class BackendBenchmark {
+	private static final int RANGE_LENGTH = 4096;
+	private static final int BURST = 16;
+	// a character Documents.text() never uses, so find() reads everything.
+	private static final String MISSING = "#";
+
+	@Param({ "EDIT_TREE", "CHUNKED_EDIT_TREE", "ARENA_EDIT_TREE", "ROPE_EDIT_TREE", "PIECE_TABLE" })
+	public Backend backend;
+
+	@Param({ "10000000" })
+	public int size;
+
+	private Backend.Document document;
+	private int[] positions;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.document = this.backend.open(Documents.text(this.size));
+		this.positions = Documents.positions();
+	}
+
+	// a random position in [0, bound).
+	private int position(int bound) {
+		return this.positions[this.next++ & (Documents.POSITIONS - 1)] % bound;
+	}
+
+	@Benchmark
+	public char get() {
+		return this.document.get(this.position(this.document.size()));
+	}
+
+	@Benchmark
+	public String getRange() {
+		int length = Math.min(RANGE_LENGTH, this.document.size());
+		return this.document.get(this.position(this.document.size() - length + 1), length);
+	}
+
+	// an add at a random position and a delete there, so the size stays put.
+	@Benchmark
+	public char addAndDelete() {
+		int pos = this.position(this.document.size() + 1);
+		this.document.add('x', pos);
+		return this.document.delete(pos);
+	}
+
+	// a word typed at a random position and backspaced away again.
+	@Benchmark
+	public int typeAndBackspace() {
+		int pos = this.position(this.document.size() + 1);
+		for (int i = 0; i < BURST; i++)
+			this.document.add('x', pos + i);
+		for (int i = BURST; i > 0; i--)
+			this.document.delete(pos + i - 1);
+		return this.document.size();
+	}
+
+	@Benchmark
+	public void splitAndConcatenate() {
+		this.document.splitAndConcatenate(this.position(this.document.size()));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int find() {
+		return this.document.find(MISSING);
+	}
+}
@@ -0,0 +1,43 @@
+package editortrees.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Inputs shared by the benchmarks: random documents, and random positions to
+ * edit them at, so that every run and every backend sees the same data.
+ *
+ */
+final class Documents {
+	// positions are cycled through with a mask, so this must be a power of 2.
+	static final int POSITIONS = 1 << 12;
+	private static final long SEED = 230;
+
+	private Documents() {
+	}
+
+	/**
+	 * @param length
+	 * @return a document of length random lowercase letters and spaces.
+	 */
+	static String text(int length) {
+		Random random = new Random(SEED);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			int r = random.nextInt(32);
+			chars[i] = r < 26 ? (char) ('a' + r) : ' ';
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return POSITIONS random non-negative ints, to be reduced modulo the
+	 *         current size of a document.
+	 */
+	static int[] positions() {
+		Random random = new Random(SEED + 1);
+		int[] positions = new int[POSITIONS];
+		for (int i = 0; i < POSITIONS; i++)
+			positions[i] = random.nextInt(Integer.MAX_VALUE);
+		return positions;
+	}
+}
@@ -0,0 +1,95 @@
+package editortrees.benchmarks;
+
+import java.util.Random;
+
+/**
+ * A replayable editing session, made up from a seeded model of someone typing
+ * rather than recorded: runs of typing and backspacing around a caret that
+ * mostly moves a little, sometimes jumps, and now and then moves a block of
+ * text elsewhere. Positions are worked out against the size the document has
+ * at each step, and the trace ends with deletes that take the document back to
+ * the size it started at, so it can be replayed on the same document again and
+ * again.
+ *
+ */
+final class EditTrace {
+	static final int TYPE = 0;
+	static final int BACKSPACE = 1;
+	static final int MOVE_BLOCK = 2;
+	private static final long SEED = 230;
+	private static final int MAX_BLOCK = 256;
+
+	// for each step: what it does, and where.
+	final int[] ops;
+	final int[] positions;
+	// for MOVE_BLOCK: how long the block is, and where it goes once removed.
+	final int[] lengths;
+	final int[] targets;
+
+	private EditTrace(int steps) {
+		this.ops = new int[steps];
+		this.positions = new int[steps];
+		this.lengths = new int[steps];
+		this.targets = new int[steps];
+	}
+
+	/**
+	 * @param size
+	 *            of the document the trace is replayed on; at least MAX_BLOCK
+	 * @param steps
+	 *            how many edits to make before setting the size back
+	 * @return the trace.
+	 */
+	static EditTrace generate(int size, int steps) {
+		Random random = new Random(SEED);
+		EditTrace trace = new EditTrace(steps);
+		int length = size;
+		int caret = random.nextInt(size);
+		for (int i = 0; i < steps; i++) {
+			int r = random.nextInt(1000);
+			if (r < 700) {
+				trace.ops[i] = TYPE;
+				trace.positions[i] = caret++;
+				length++;
+			} else if (r < 900 && caret > 0 && length > MAX_BLOCK) {
+				trace.ops[i] = BACKSPACE;
+				trace.positions[i] = --caret;
+				length--;
+			} else if (r < 995) {
+				// a move of the caret, which costs nothing by itself: the step
+				// types at the new caret.
+				caret = r < 980 ? Math.max(0, Math.min(length, caret + random.nextInt(161) - 80))
+						: random.nextInt(length + 1);
+				trace.ops[i] = TYPE;
+				trace.positions[i] = caret++;
+				length++;
+			} else {
+				int block = 1 + random.nextInt(MAX_BLOCK);
+				int start = random.nextInt(length - block);
+				trace.ops[i] = MOVE_BLOCK;
+				trace.positions[i] = start;
+				trace.lengths[i] = block;
+				trace.targets[i] = random.nextInt(length - block);
+				caret = Math.min(caret, length);
+			}
+		}
+		// deletes at the caret, like selecting what was typed and removing it.
+		int extra = length - size;
+		EditTrace balanced = new EditTrace(steps + extra);
+		System.arraycopy(trace.ops, 0, balanced.ops, 0, steps);
+		System.arraycopy(trace.positions, 0, balanced.positions, 0, steps);
+		System.arraycopy(trace.lengths, 0, balanced.lengths, 0, steps);
+		System.arraycopy(trace.targets, 0, balanced.targets, 0, steps);
+		for (int i = steps; i < steps + extra; i++) {
+			caret = Math.min(caret, length - 1);
+			balanced.ops[i] = BACKSPACE;
+			balanced.positions[i] = caret;
+			length--;
+		}
+		return balanced;
+	}
+
+	int steps() {
+		return this.ops.length;
+	}
+}
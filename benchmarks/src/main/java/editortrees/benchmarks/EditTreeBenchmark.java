@@ -0,0 +1,195 @@
+package editortrees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import editortrees.EditTree;
+import editortrees.EditTreeCursor;
+
+/**
+ * Every EditTree operation on documents of 1K to 100M characters.
+ *
+ * The document keeps its size while it is edited:
+ * <ul>
+ * <li>the add benchmarks cut the document back with one split once it has
+ * doubled, which is O(log N) per N adds;</li>
+ * <li>the delete benchmarks put back what they removed, so they measure
+ * delete(int) plus add(char, int), and delete(int, int) plus the split and
+ * two concatenations that splice the removed tree back in. Subtract addRandom
+ * and splitAndConcatenate to get the delete alone.</li>
+ * </ul>
+ *
+ * 100M characters needs a heap of several GB; pick sizes with -p size=...
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx12g" })
+public class EditTreeBenchmark {
+	private static final int RANGE_LENGTH = 4096;
+	private static final int DELETE_LENGTH = 64;
+	// how far the add benchmarks let the document grow past size before
+	// cutting it back, so that even the largest size fits in the fork's heap.
+	private static final int SLACK = 4096;
+	// does not occur in the documents, so find() reads all of them.
+	private static final String MISSING = "#";
+	private static final Pattern MISSING_PATTERN = Pattern.compile(MISSING);
+
+	@Param({ "1000", "100000", "10000000", "100000000" })
+	public int size;
+
+	private String text;
+	private EditTree tree;
+	private int[] positions;
+	private int next;
+	private EditTreeCursor cursor;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.text = Documents.text(this.size);
+		this.tree = new EditTree(this.text);
+		this.positions = Documents.positions();
+	}
+
+	// the add and delete benchmarks invalidate the cursor, so each
+	// iteration of the cursor benchmarks starts with a fresh one.
+	@Setup(Level.Iteration)
+	public void setUpCursor() {
+		this.cursor = this.tree.cursor(this.tree.size() / 2);
+	}
+
+	// a random position in [0, bound).
+	private int position(int bound) {
+		return this.positions[this.next++ & (Documents.POSITIONS - 1)] % bound;
+	}
+
+	private void trim() {
+		if (this.tree.size() >= this.size + SLACK)
+			this.tree.split(this.size);
+	}
+
+	@Benchmark
+	public void addAppend() {
+		this.tree.add('x');
+		this.trim();
+	}
+
+	@Benchmark
+	public void addRandom() {
+		this.tree.add('x', this.position(this.tree.size() + 1));
+		this.trim();
+	}
+
+	@Benchmark
+	public void addFront() {
+		this.tree.add('x', 0);
+		this.trim();
+	}
+
+	@Benchmark
+	public void addBack() {
+		this.tree.add('x', this.tree.size());
+		this.trim();
+	}
+
+	@Benchmark
+	public char deleteRandom() {
+		int pos = this.position(this.tree.size());
+		char c = this.tree.delete(pos);
+		this.tree.add(c, pos);
+		return c;
+	}
+
+	@Benchmark
+	public EditTree deleteRange() {
+		int pos = this.position(this.tree.size() - DELETE_LENGTH);
+		EditTree removed = this.tree.delete(pos, DELETE_LENGTH);
+		EditTree rest = this.tree.split(pos);
+		this.tree.concatenate(removed);
+		this.tree.concatenate(rest);
+		return removed;
+	}
+
+	@Benchmark
+	public char getRandom() {
+		return this.tree.get(this.position(this.tree.size()));
+	}
+
+	@Benchmark
+	public String getRange() {
+		int length = Math.min(RANGE_LENGTH, this.tree.size());
+		return this.tree.get(this.position(this.tree.size() - length + 1), length);
+	}
+
+	// reading on from a caret, wrapping around at the end.
+	@Benchmark
+	public char cursorNext() {
+		if (!this.cursor.hasNext())
+			this.cursor.moveTo(0);
+		return this.cursor.next();
+	}
+
+	// typing at a caret, then deleting it all again once a line is typed.
+	@Benchmark
+	public void cursorType() {
+		this.cursor.add('x');
+		if (this.next++ % 80 == 79) {
+			for (int i = 0; i < 80; i++) {
+				this.cursor.previous();
+				this.cursor.delete();
+			}
+		}
+	}
+
+	@Benchmark
+	public EditTree splitAndConcatenate() {
+		EditTree right = this.tree.split(this.position(this.tree.size()));
+		this.tree.concatenate(right);
+		return right;
+	}
+
+	@Benchmark
+	public int find() {
+		return this.tree.find(MISSING);
+	}
+
+	// the same search through java.util.regex, on a view of the tree.
+	@Benchmark
+	public boolean regexFind() {
+		return MISSING_PATTERN.matcher(this.tree.asCharSequence()).find();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public String toStringWhole() {
+		return this.tree.toString();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public EditTree buildFromString() {
+		return new EditTree(this.text);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public EditTree copy() {
+		return new EditTree(this.tree);
+	}
+}
@@ -0,0 +1,37 @@
+package editortrees.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Prints the heap each backend retains per character of a document. Run it
+ * with enough heap for the document, e.g.
+ *
+ * java -Xmx12g -cp benchmarks/target/benchmarks.jar
+ * editortrees.benchmarks.Footprint 10000000
+ *
+ */
+public final class Footprint {
+
+	private Footprint() {
+	}
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		String text = Documents.text(size);
+		for (Backend backend : Backend.values()) {
+			long before = usedAfterGc();
+			Backend.Document document = backend.open(text);
+			long after = usedAfterGc();
+			System.out.printf("%-18s %10d chars %8.2f bytes/char%n", backend, document.size(),
+					(after - before) / (double) size);
+		}
+	}
+
+	private static long usedAfterGc() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
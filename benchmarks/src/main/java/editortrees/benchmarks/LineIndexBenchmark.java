@@ -0,0 +1,97 @@
+package editortrees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import editortrees.EditTree;
+
+/**
+ * Going to a line of an EditTree through its newline counts, against finding
+ * it by scanning the text, and translating UTF-8 byte offsets through its
+ * UTF-8 lengths, on documents of lines of 64 characters with an accented
+ * letter every 16.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx12g" })
+public class LineIndexBenchmark {
+	private static final int LINE_LENGTH = 64;
+
+	@Param({ "1000000", "100000000" })
+	public int size;
+
+	private EditTree tree;
+	private int[] positions;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		char[] chars = Documents.text(this.size).toCharArray();
+		for (int i = 15; i < chars.length; i += 16)
+			chars[i] = '\u00E9';
+		for (int i = LINE_LENGTH - 1; i < chars.length; i += LINE_LENGTH)
+			chars[i] = '\n';
+		this.tree = new EditTree(chars);
+		this.positions = Documents.positions();
+	}
+
+	// a random int in [0, bound).
+	private int random(int bound) {
+		return this.positions[this.next++ & (Documents.POSITIONS - 1)] % bound;
+	}
+
+	@Benchmark
+	public int lineStartOffset() {
+		return this.tree.lineStartOffset(this.random(this.tree.lineCount()));
+	}
+
+	@Benchmark
+	public int lineOf() {
+		return this.tree.lineOf(this.random(this.tree.size() + 1));
+	}
+
+	@Benchmark
+	public String getLine() {
+		return this.tree.getLine(this.random(this.tree.lineCount()));
+	}
+
+	@Benchmark
+	public long charIndexToByteOffset() {
+		return this.tree.charIndexToByteOffset(this.random(this.tree.size() + 1));
+	}
+
+	// a line start is always the start of a character.
+	@Benchmark
+	public int byteOffsetToCharIndex() {
+		return this.tree.byteOffsetToCharIndex(this.tree.charIndexToByteOffset(this.tree.lineStartOffset(
+				this.random(this.tree.lineCount()))));
+	}
+
+	// what going to a line took without the counts: a pass over the text.
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int lineStartOffsetByScan() {
+		int line = this.random(this.tree.lineCount());
+		String text = this.tree.toString();
+		int pos = 0;
+		for (int i = 0; i < line; i++)
+			pos = text.indexOf('\n', pos) + 1;
+		return pos;
+	}
+}
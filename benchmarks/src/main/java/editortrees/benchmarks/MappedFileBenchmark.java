@@ -0,0 +1,77 @@
+package editortrees.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import editortrees.EditTree;
+import editortrees.PieceTable;
+
+/**
+ * Time to first render: from a file on disk to the first screenful of its
+ * text, by memory-mapping it into a PieceTable, and by reading it into an
+ * EditTree.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx12g" })
+public class MappedFileBenchmark {
+	private static final int SCREEN = 80 * 50;
+
+	@Param({ "10000000" })
+	public int size;
+
+	private Path file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.file = Files.createTempFile("editortrees", ".txt");
+		Files.write(this.file, Documents.text(this.size).getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.delete(this.file);
+	}
+
+	private String render(Charset charset) throws IOException {
+		return PieceTable.map(this.file, charset).get(0, SCREEN);
+	}
+
+	@Benchmark
+	public String mapLatin1() throws IOException {
+		return this.render(StandardCharsets.ISO_8859_1);
+	}
+
+	// UTF-8 is counted through once when the file is opened.
+	@Benchmark
+	public String mapUtf8() throws IOException {
+		return this.render(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String readIntoEditTree() throws IOException {
+		return new EditTree(Files.readString(this.file, StandardCharsets.ISO_8859_1)).get(0, SCREEN);
+	}
+}
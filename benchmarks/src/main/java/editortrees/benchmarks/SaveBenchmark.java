@@ -0,0 +1,100 @@
+package editortrees.benchmarks;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import editortrees.EditTree;
+import editortrees.PieceTable;
+
+/**
+ * Saving a document to a file: as one String encoded whole, and through
+ * writeTo(WritableByteChannel, Charset), from an EditTree and from a
+ * PieceTable over a mapped file with a few edits, whose unedited pieces are
+ * written from the mapping when the charset stays the same.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx12g" })
+public class SaveBenchmark {
+	private static final int EDITS = 100;
+
+	@Param({ "10000000" })
+	public int size;
+
+	private Path source;
+	private Path target;
+	private EditTree tree;
+	private PieceTable mapped;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		this.source = Files.createTempFile("editortrees", ".txt");
+		this.target = Files.createTempFile("editortrees", ".txt");
+		Files.write(this.source, Documents.text(this.size).getBytes(StandardCharsets.UTF_8));
+		this.tree = new EditTree(Files.readString(this.source, StandardCharsets.UTF_8));
+		this.mapped = PieceTable.map(this.source, StandardCharsets.UTF_8);
+		int[] positions = Documents.positions();
+		for (int i = 0; i < EDITS; i++)
+			this.mapped.add('#', positions[i] % this.mapped.size());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.delete(this.source);
+		Files.delete(this.target);
+	}
+
+	private FileChannel open() throws IOException {
+		return FileChannel.open(this.target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+
+	@Benchmark
+	public void editTreeString() throws IOException {
+		Files.write(this.target, this.tree.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public void editTreeChannel() throws IOException {
+		try (FileChannel out = this.open()) {
+			this.tree.writeTo(out, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Benchmark
+	public void mappedChannel() throws IOException {
+		try (FileChannel out = this.open()) {
+			this.mapped.writeTo(out, StandardCharsets.UTF_8);
+		}
+	}
+
+	// another charset, so every piece is encoded.
+	@Benchmark
+	public void mappedChannelReencoded() throws IOException {
+		try (FileChannel out = this.open()) {
+			this.mapped.writeTo(out, StandardCharsets.UTF_16LE);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package editortrees.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import editortrees.BalancedEditTree;
+import editortrees.BalancingStrategy;
+import editortrees.EditTree;
+
+/**
+ * The balancing strategies of BalancedEditTree replaying the same EditTrace,
+ * with EditTree, the hand-tuned AVL tree, as the baseline. Each invocation is
+ * one whole replay, which leaves the document its starting size. EditTree
+ * cannot take a strategy, so its row is always AVL, and there is no splay
+ * row; the trace is synthetic, not recorded.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx12g" })
+public class StrategyBenchmark {
+	private static final int STEPS = 10000;
+
+	@Param({ "EDIT_TREE", "AVL", "RED_BLACK", "WEIGHT_BALANCED", "TREAP" })
+	public String strategy;
+
+	@Param({ "1000000" })
+	public int size;
+
+	private EditTrace trace;
+	private EditTree editTree;
+	private BalancedEditTree balancedTree;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		String text = Documents.text(this.size);
+		this.trace = EditTrace.generate(this.size, STEPS);
+		switch (this.strategy) {
+		case "EDIT_TREE":
+			this.editTree = new EditTree(text);
+			break;
+		case "AVL":
+			this.balancedTree = new BalancedEditTree(text, BalancingStrategy.AVL);
+			break;
+		case "RED_BLACK":
+			this.balancedTree = new BalancedEditTree(text, BalancingStrategy.RED_BLACK);
+			break;
+		case "WEIGHT_BALANCED":
+			this.balancedTree = new BalancedEditTree(text, BalancingStrategy.WEIGHT_BALANCED);
+			break;
+		case "TREAP":
+			this.balancedTree = new BalancedEditTree(text, BalancingStrategy.TREAP);
+			break;
+		default:
+			throw new IllegalArgumentException(this.strategy);
+		}
+	}
+
+	@Benchmark
+	public int replay() {
+		EditTrace trace = this.trace;
+		if (this.editTree != null) {
+			EditTree t = this.editTree;
+			for (int i = 0; i < trace.steps(); i++) {
+				int pos = trace.positions[i];
+				if (trace.ops[i] == EditTrace.TYPE) {
+					t.add('x', pos);
+				} else if (trace.ops[i] == EditTrace.BACKSPACE) {
+					t.delete(pos);
+				} else {
+					EditTree block = t.delete(pos, trace.lengths[i]);
+					EditTree rest = t.split(trace.targets[i]);
+					t.concatenate(block);
+					t.concatenate(rest);
+				}
+			}
+			return t.size();
+		}
+		BalancedEditTree t = this.balancedTree;
+		for (int i = 0; i < trace.steps(); i++) {
+			int pos = trace.positions[i];
+			if (trace.ops[i] == EditTrace.TYPE) {
+				t.add('x', pos);
+			} else if (trace.ops[i] == EditTrace.BACKSPACE) {
+				t.delete(pos);
+			} else {
+				BalancedEditTree block = t.delete(pos, trace.lengths[i]);
+				BalancedEditTree rest = t.split(trace.targets[i]);
+				t.concatenate(block);
+				t.concatenate(rest);
+			}
+		}
+		return t.size();
+	}
+}